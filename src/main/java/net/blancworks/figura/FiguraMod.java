@@ -2,6 +2,7 @@ package net.blancworks.figura;
 
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
+import net.blancworks.figura.avatar.AvatarTelemetry;
 import net.blancworks.figura.avatar.EntityAvatarData;
 import net.blancworks.figura.avatar.LocalAvatarManager;
 import net.blancworks.figura.config.ConfigManager;
@@ -9,8 +10,13 @@ import net.blancworks.figura.config.ConfigManager.Config;
 import net.blancworks.figura.config.ConfigManager.ConfigKeyBind;
 import net.blancworks.figura.gui.FiguraToast;
 import net.blancworks.figura.lua.FiguraLuaManager;
+import net.blancworks.figura.lua.GameStateSnapshot;
 import net.blancworks.figura.lua.api.FiguraAPI;
+import net.blancworks.figura.lua.api.RaycastService;
+import net.blancworks.figura.lua.api.entity.EntityAPI;
+import net.blancworks.figura.lua.api.item.ItemStackAPI;
 import net.blancworks.figura.lua.api.sound.FiguraSoundManager;
+import net.blancworks.figura.network.PingRecorder;
 import net.blancworks.figura.network.IFiguraNetwork;
 import net.blancworks.figura.network.NewFiguraNetworkManager;
 import net.blancworks.figura.trust.PlayerTrustManager;
@@ -71,6 +77,9 @@ public class FiguraMod implements ClientModInitializer {
     public static final ConfigKeyBind ACTION_WHEEL_BUTTON = new ConfigKeyBind("figura.config.action_wheel_button", GLFW.GLFW_KEY_B, ConfigManager.MOD_NAME, Config.ACTION_WHEEL_BUTTON);
     public static final ConfigKeyBind PLAYER_POPUP_BUTTON = new ConfigKeyBind("figura.config.player_popup_button", GLFW.GLFW_KEY_R, ConfigManager.MOD_NAME, Config.PLAYER_POPUP_BUTTON);
     public static final ConfigKeyBind PANIC_BUTTON = new ConfigKeyBind("figura.config.panic_button", GLFW.GLFW_KEY_UNKNOWN, ConfigManager.MOD_NAME, Config.PANIC_BUTTON);
+    public static final ConfigKeyBind PERFORMANCE_EXPORT_BUTTON = new ConfigKeyBind("figura.config.performance_export_button", GLFW.GLFW_KEY_UNKNOWN, ConfigManager.MOD_NAME, Config.PERFORMANCE_EXPORT_BUTTON);
+    public static final ConfigKeyBind PING_REPLAY_BUTTON = new ConfigKeyBind("figura.config.ping_replay_button", GLFW.GLFW_KEY_UNKNOWN, ConfigManager.MOD_NAME, Config.PING_REPLAY_BUTTON);
+    public static final ConfigKeyBind BENCHMARK_BUTTON = new ConfigKeyBind("figura.config.benchmark_button", GLFW.GLFW_KEY_UNKNOWN, ConfigManager.MOD_NAME, Config.BENCHMARK_BUTTON);
 
     public static int ticksElapsed;
 
@@ -113,14 +122,23 @@ public class FiguraMod implements ClientModInitializer {
         PlayerTrustManager.init();
         LocalAvatarManager.init();
 
+        if ((boolean) Config.RECORD_PINGS.value)
+            PingRecorder.start();
+
         //set keybinds based on config
         ACTION_WHEEL_BUTTON.setBoundKey(InputUtil.Type.KEYSYM.createFromCode((int) Config.ACTION_WHEEL_BUTTON.value));
         PLAYER_POPUP_BUTTON.setBoundKey(InputUtil.Type.KEYSYM.createFromCode((int) Config.PLAYER_POPUP_BUTTON.value));
         PANIC_BUTTON.setBoundKey(InputUtil.Type.KEYSYM.createFromCode((int) Config.PANIC_BUTTON.value));
+        PERFORMANCE_EXPORT_BUTTON.setBoundKey(InputUtil.Type.KEYSYM.createFromCode((int) Config.PERFORMANCE_EXPORT_BUTTON.value));
+        PING_REPLAY_BUTTON.setBoundKey(InputUtil.Type.KEYSYM.createFromCode((int) Config.PING_REPLAY_BUTTON.value));
+        BENCHMARK_BUTTON.setBoundKey(InputUtil.Type.KEYSYM.createFromCode((int) Config.BENCHMARK_BUTTON.value));
 
         KeyBindingRegistryImpl.registerKeyBinding(ACTION_WHEEL_BUTTON);
         KeyBindingRegistryImpl.registerKeyBinding(PLAYER_POPUP_BUTTON);
         KeyBindingRegistryImpl.registerKeyBinding(PANIC_BUTTON);
+        KeyBindingRegistryImpl.registerKeyBinding(PERFORMANCE_EXPORT_BUTTON);
+        KeyBindingRegistryImpl.registerKeyBinding(PING_REPLAY_BUTTON);
+        KeyBindingRegistryImpl.registerKeyBinding(BENCHMARK_BUTTON);
 
         //Set up network
         newNetworkManager = new NewFiguraNetworkManager();
@@ -133,7 +151,11 @@ public class FiguraMod implements ClientModInitializer {
             if (data != null && data.model != null && !context.camera().isThirdPerson())
                 data.model.renderFirstPersonWorldParts(context.matrixStack(), context.camera(), context.tickDelta());
         });
-        ClientLifecycleEvents.CLIENT_STOPPING.register((v) -> networkManager.onClose());
+        ClientLifecycleEvents.CLIENT_STOPPING.register((v) -> {
+            networkManager.onClose();
+            PlayerTrustManager.flushSave();
+            PingRecorder.shutdown();
+        });
 
         ResourceManagerHelper.get(ResourceType.CLIENT_RESOURCES).registerReloadListener(new SimpleSynchronousResourceReloadListener() {
             @Override
@@ -162,7 +184,13 @@ public class FiguraMod implements ClientModInitializer {
     //Client-side ticks.
     public static void ClientEndTick(MinecraftClient client) {
         try {
+            EntityAPI.clearTickCache();
+            ItemStackAPI.clearTickCache();
+            RaycastService.clearTickCache();
+            GameStateSnapshot.capture(client);
+
             AvatarDataManager.tick();
+            AvatarTelemetry.tick();
             FiguraSoundManager.tick();
 
             networkManager = newNetworkManager;
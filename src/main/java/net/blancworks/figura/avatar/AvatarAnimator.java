@@ -0,0 +1,199 @@
+package net.blancworks.figura.avatar;
+
+import net.blancworks.figura.config.ConfigManager.Config;
+import net.blancworks.figura.models.CustomModel;
+import net.blancworks.figura.trust.TrustContainer;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.Entity;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Evaluates the animations of every loaded avatar once per frame, spread over a small pool of worker threads.
+ * Each avatar only writes the animation accumulators of its own groups, which then are its pose for the frame,
+ * so avatars are evaluated independently and the render thread reads their poses without locking once the frame's batch is done.
+ * Culled avatars are left in their rest pose, avatars past the animation LOD distance keep their last pose between less frequent updates.
+ */
+public class AvatarAnimator {
+
+    //avatars past the LOD distance are only evaluated once every this many frames
+    public static final int LOD_FRAME_INTERVAL = 4;
+
+    //batches this small are cheaper to run on the render thread than to hand out
+    public static final int MIN_PARALLEL_BATCH = 2;
+
+    public static final int WORKER_COUNT = Math.max(1, Math.min(Runtime.getRuntime().availableProcessors() - 1, 8));
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+    private static final ExecutorService WORKERS = Executors.newFixedThreadPool(WORKER_COUNT, runnable -> {
+        Thread thread = new Thread(runnable, "Figura Animator #" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //the frame's batch, only changed by the render thread once the previous batch is done
+    private static final Object LOCK = new Object();
+    private static AvatarData[] batch = new AvatarData[16];
+    //the animation limit of each avatar, resolved while building the batch as trust lookups aren't thread safe
+    private static int[] batchLimits = new int[16];
+    private static int batchSize = 0;
+    private static int next = 0;
+    private static int finished = 0;
+    private static ObjIntConsumer<AvatarData> evaluator;
+
+    //workers handed out and not yet returned, so a stalled pool doesn't pile up tasks
+    private static final AtomicInteger ACTIVE_WORKERS = new AtomicInteger();
+    private static final Runnable WORKER = () -> {
+        try {
+            work();
+        } finally {
+            ACTIVE_WORKERS.decrementAndGet();
+        }
+    };
+
+    private static long frame = 0;
+
+    //called by the render thread before every frame, returns once every avatar of the batch has its pose
+    public static void animate() {
+        frame++;
+        animate(AvatarDataManager.LOADED_PLAYER_DATA.values(), AvatarAnimator::isCulled, AvatarAnimator::isLodSkipped, AvatarAnimator::getAnimationLimit, AvatarAnimator::animate);
+    }
+
+    /**
+     * Evaluates every animated avatar which is neither culled nor skipped by the LOD this frame, spread over the workers.
+     * The checks and the animation limit run on the calling thread, the evaluation on any thread taking part in the batch.
+     */
+    static void animate(Collection<AvatarData> avatars, Predicate<AvatarData> culled, Predicate<AvatarData> lodSkipped, ToIntFunction<AvatarData> limit, ObjIntConsumer<AvatarData> evaluate) {
+        int size = 0;
+        synchronized (LOCK) {
+            for (AvatarData data : avatars) {
+                if (data == null || data.model == null || !data.model.isDone || data.model.animations.isEmpty())
+                    continue;
+
+                //far away or offscreen avatars skip their animations
+                if (culled.test(data)) {
+                    data.model.clearAnimations();
+                    continue;
+                }
+
+                if (lodSkipped.test(data))
+                    continue;
+
+                if (size == batch.length) {
+                    AvatarData[] grown = new AvatarData[size * 2];
+                    System.arraycopy(batch, 0, grown, 0, size);
+                    batch = grown;
+                    batchLimits = Arrays.copyOf(batchLimits, size * 2);
+                }
+                batchLimits[size] = limit.applyAsInt(data);
+                batch[size++] = data;
+            }
+
+            batchSize = size;
+            next = 0;
+            finished = 0;
+            evaluator = evaluate;
+        }
+
+        if (size == 0)
+            return;
+
+        //the render thread takes part too, so one less worker is needed
+        if (size >= MIN_PARALLEL_BATCH) {
+            int workers = Math.min(size - 1, WORKER_COUNT);
+            while (workers-- > 0 && ACTIVE_WORKERS.get() < WORKER_COUNT) {
+                ACTIVE_WORKERS.incrementAndGet();
+                WORKERS.execute(WORKER);
+            }
+        }
+
+        work();
+
+        boolean interrupted = false;
+        synchronized (LOCK) {
+            while (finished < batchSize) {
+                try {
+                    LOCK.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            //don't keep avatars alive through the batch
+            Arrays.fill(batch, 0, batchSize, null);
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    //claims avatars from the batch until none are left
+    private static void work() {
+        while (true) {
+            AvatarData data;
+            int limit;
+            ObjIntConsumer<AvatarData> evaluate;
+            synchronized (LOCK) {
+                if (next >= batchSize)
+                    return;
+                limit = batchLimits[next];
+                data = batch[next++];
+                evaluate = evaluator;
+            }
+
+            try {
+                evaluate.accept(data, limit);
+            } catch (Exception e) {
+                e.printStackTrace();
+            } finally {
+                //counted even if an error escapes, so the render thread never waits on it forever
+                synchronized (LOCK) {
+                    if (++finished == batchSize)
+                        LOCK.notifyAll();
+                }
+            }
+        }
+    }
+
+    private static boolean isCulled(AvatarData data) {
+        return AvatarCulling.isCulled(data, data.lastEntity);
+    }
+
+    private static boolean isLodSkipped(AvatarData data) {
+        return isLodSkipped(data, data.lastEntity);
+    }
+
+    private static int getAnimationLimit(AvatarData data) {
+        return data.getTrustContainer().getTrust(TrustContainer.Trust.BB_ANIMATIONS);
+    }
+
+    private static void animate(AvatarData data, int maxRender) {
+        CustomModel model = data.model;
+
+        long start = System.nanoTime();
+        model.clearAnimations();
+        model.renderAnimations(maxRender);
+        if (maxRender > 0)
+            data.telemetry.animationTime.add(System.nanoTime() - start);
+    }
+
+    //avatars past the LOD distance update on staggered frames, so they don't all land on the same one
+    public static boolean isLodSkipped(AvatarData data, Entity entity) {
+        int distance = (int) Config.ANIMATION_LOD_DISTANCE.value;
+        if (distance <= 0 || entity == null || data == AvatarDataManager.localPlayer)
+            return false;
+
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (entity.squaredDistanceTo(client.gameRenderer.getCamera().getPos()) <= (double) distance * distance)
+            return false;
+
+        return (frame + (data.entityId.hashCode() & Integer.MAX_VALUE)) % LOD_FRAME_INTERVAL != 0;
+    }
+}
@@ -0,0 +1,40 @@
+package net.blancworks.figura.avatar;
+
+import net.blancworks.figura.config.ConfigManager.Config;
+import net.blancworks.figura.trust.TrustContainer;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.Frustum;
+import net.minecraft.entity.Entity;
+
+/**
+ * Decides if an avatar can skip its per frame work (world_render event, animations),
+ * for being too far from the camera or out of the view.
+ */
+public class AvatarCulling {
+    //frustum of the last rendered frame, set by the world renderer
+    public static Frustum frustum;
+
+    public static boolean isCulled(AvatarData data, Entity entity) {
+        if (data == null || entity == null)
+            return false;
+
+        MinecraftClient client = MinecraftClient.getInstance();
+        if (data == AvatarDataManager.localPlayer || entity == client.getCameraEntity())
+            return false;
+
+        //scripts can opt out of culling
+        if (data.script != null && data.script.ignoreCulling)
+            return false;
+
+        //distance
+        int distance = (int) Config.EVENT_CULL_DISTANCE.value;
+        if (distance > 0 && entity.squaredDistanceTo(client.gameRenderer.getCamera().getPos()) > (double) distance * distance)
+            return true;
+
+        //offscreen, unless the avatar is allowed to render offscreen
+        if (frustum == null || data.getTrustContainer().getTrust(TrustContainer.Trust.OFFSCREEN_RENDERING) == 1)
+            return false;
+
+        return !frustum.isVisible(entity.getVisibilityBoundingBox());
+    }
+}
@@ -2,11 +2,16 @@ package net.blancworks.figura.avatar;
 
 import net.blancworks.figura.FiguraMod;
 import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.lua.LuaEventRegistry;
+import net.blancworks.figura.lua.api.ParticleBudget;
 import net.blancworks.figura.lua.api.sound.FiguraSoundManager;
 import net.blancworks.figura.models.CustomModel;
 import net.blancworks.figura.models.CustomModelPart;
 import net.blancworks.figura.models.FiguraTexture;
+import net.blancworks.figura.models.TextureRegistry;
+import net.blancworks.figura.models.shaders.BatchedVertexConsumerProvider;
 import net.blancworks.figura.network.NewFiguraNetworkManager;
+import net.blancworks.figura.parsers.FiguraAvatarContainer;
 import net.blancworks.figura.trust.PlayerTrustManager;
 import net.blancworks.figura.trust.TrustContainer;
 import net.minecraft.client.MinecraftClient;
@@ -24,7 +29,6 @@ import net.minecraft.util.Identifier;
 
 import java.io.ByteArrayOutputStream;
 import java.io.DataOutputStream;
-import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.SimpleDateFormat;
@@ -72,6 +76,8 @@ public class AvatarData {
 
     public boolean hasPopup = false;
 
+    public final AvatarTelemetry telemetry = new AvatarTelemetry(this);
+
     //used during rendering
     public VertexConsumerProvider vertexConsumerProvider;
     public VertexConsumerProvider.Immediate immediate;
@@ -87,8 +93,8 @@ public class AvatarData {
 
     public VertexConsumerProvider getVCP() {
         if (script != null && script.customVCP != null) return script.customVCP;
-        else if (vertexConsumerProvider != null) return vertexConsumerProvider;
-        else return MinecraftClient.getInstance().getBufferBuilders().getEntityVertexConsumers();
+        else if (vertexConsumerProvider != null) return BatchedVertexConsumerProvider.route(vertexConsumerProvider);
+        else return BatchedVertexConsumerProvider.route(MinecraftClient.getInstance().getBufferBuilders().getEntityVertexConsumers());
     }
 
     public VertexConsumerProvider tryGetImmediate() {
@@ -200,10 +206,15 @@ public class AvatarData {
      */
     private void readNbt(NbtCompound nbt) {
         model = null;
-        texture = null;
+        releaseTextures();
+        if (script != null) {
+            script.clearShaders();
+            LuaEventRegistry.removeAll(script);
+        }
         script = null;
 
-        extraTextures.clear();
+        telemetry.clearLoadStages();
+        ParticleBudget.clear(entityId);
 
         try {
             //Create model on main thread.
@@ -213,7 +224,9 @@ public class AvatarData {
             if (modelNbt != null) {
                 FiguraMod.doTask(() -> {
                     try {
+                        long start = System.nanoTime();
                         model = new CustomModel(modelNbt, this);
+                        telemetry.recordLoadStage("model", start);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
@@ -227,28 +240,58 @@ public class AvatarData {
             //Create texture on main thread
             NbtCompound textureNbt = (NbtCompound) nbt.get("texture");
 
-            //Load texture, if any
-            if (textureNbt != null) {
-                texture = new FiguraTexture();
-                texture.id = new Identifier("figura", entityId.toString());
-                getTextureManager().registerTexture(texture.id, texture);
-                FiguraMod.doTask(() -> texture.readNbt(textureNbt));
+            //Load texture, if any, shared with every avatar using the same image
+            byte[] textureData = textureNbt == null ? null : FiguraTexture.readData(textureNbt);
+            if (textureData != null) {
+                long start = System.nanoTime();
+                texture = TextureRegistry.acquire(textureData, FiguraTexture.TextureType.color);
+                telemetry.recordLoadStage("texture", start);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
 
+        loadScript(nbt);
+
+        try {
+            if (nbt.contains("exTexs")) {
+                NbtList textureList = (NbtList) nbt.get("exTexs");
+
+                if (textureList != null) {
+                    for (NbtElement element : textureList) {
+                        byte[] data = FiguraTexture.readData((NbtCompound) element);
+                        if (data != null)
+                            extraTextures.add(TextureRegistry.acquire(data, FiguraTexture.readType((NbtCompound) element)));
+                    }
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //Returns the file size, in bytes.
+    /**
+     * Loads the script and its sounds from the avatar NBT, queued after the loading tasks already started.
+     *
+     * @param nbt the avatar nbt, only its script and sounds are read
+     */
+    protected void loadScript(NbtCompound nbt) {
         try {
             if (nbt.contains("script")) {
                 NbtCompound scriptNbt = (NbtCompound) nbt.get("script");
 
                 if (scriptNbt != null) FiguraMod.doTask(() -> {
                     try {
+                        long start = System.nanoTime();
                         script = new CustomScript();
                         script.fromNBT(this, scriptNbt);
+                        telemetry.recordLoadStage("script", start);
 
                         if (nbt.contains("sounds")) {
+                            start = System.nanoTime();
                             readCustomSoundsNBT(nbt.getCompound("sounds"));
+                            telemetry.recordLoadStage("sounds", start);
                         }
                     } catch (Exception e) {
                         e.printStackTrace();
@@ -258,28 +301,8 @@ public class AvatarData {
         } catch (Exception e) {
             e.printStackTrace();
         }
-
-        try {
-            if (nbt.contains("exTexs")) {
-                NbtList textureList = (NbtList) nbt.get("exTexs");
-
-                if (textureList != null) {
-                    for (NbtElement element : textureList) {
-                        FiguraTexture newTexture = new FiguraTexture();
-                        newTexture.id = new Identifier("figura", entityId.toString() + newTexture.type.toString());
-                        getTextureManager().registerTexture(newTexture.id, newTexture);
-                        extraTextures.add(newTexture);
-
-                        FiguraMod.doTask(() -> newTexture.readNbt((NbtCompound) element));
-                    }
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
     }
 
-    //Returns the file size, in bytes.
     public long getFileSize() {
         try {
             NbtCompound writtenNbt = new NbtCompound();
@@ -339,7 +362,7 @@ public class AvatarData {
         FiguraMod.doTask(() -> {
             String id = "cache-" + new SimpleDateFormat("yyyy_MM_dd-HH_mm_ss").format(new Date());
             Path rootFolder = FiguraMod.getModContentDirectory().resolve("model_files/[§9Figura§r] Cached Avatars");
-            Path dest = rootFolder.resolve(Path.of(id + ".moon"));
+            Path dest = rootFolder.resolve(Path.of(id + FiguraAvatarContainer.EXTENSION));
 
             try {
                 if (!Files.exists(rootFolder))
@@ -348,7 +371,7 @@ public class AvatarData {
                 NbtCompound targetTag = new NbtCompound();
                 this.writeNbt(targetTag);
 
-                NbtIo.writeCompressed(targetTag, new FileOutputStream(dest.toFile()));
+                FiguraAvatarContainer.write(targetTag, dest);
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -377,11 +400,24 @@ public class AvatarData {
         nbt.getKeys().forEach(key -> FiguraSoundManager.registerCustomSound(script, key, nbt.getByteArray(key), false));
     }
 
-    public void clearData() {
+    //gives the textures back to the registry, they are destroyed once no other avatar uses them
+    public void releaseTextures() {
+        if (texture != null)
+            TextureRegistry.release(texture);
+        texture = null;
+
+        extraTextures.forEach(TextureRegistry::release);
         extraTextures.clear();
+    }
+
+    public void clearData() {
+        releaseTextures();
+        telemetry.clearLoadStages();
 
         if (script != null) {
             script.clearSounds();
+            script.clearShaders();
+            LuaEventRegistry.removeAll(script);
             //script.clearPings();
         } else {
             FiguraSoundManager.getChannel().stopSound(entityId);
@@ -2,7 +2,9 @@ package net.blancworks.figura.avatar;
 
 import com.mojang.authlib.GameProfile;
 import net.blancworks.figura.FiguraMod;
+import net.blancworks.figura.lua.LuaEventRegistry;
 import net.blancworks.figura.lua.api.sound.FiguraSoundManager;
+import net.blancworks.figura.models.TextureRegistry;
 import net.minecraft.block.entity.SkullBlockEntity;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.PlayerListEntry;
@@ -232,6 +234,14 @@ public final class AvatarDataManager {
 
     public static void clearCache() {
         FiguraSoundManager.getChannel().stopAllSounds();
+        for (AvatarData data : LOADED_PLAYER_DATA.values()) {
+            data.releaseTextures();
+            if (data.script != null) {
+                data.script.clearShaders();
+                LuaEventRegistry.removeAll(data.script);
+            }
+        }
+        AvatarHeadCache.clear();
         LOADED_PLAYER_DATA.clear();
         localPlayer = null;
         didInitLocalPlayer = false;
@@ -278,17 +288,10 @@ public final class AvatarDataManager {
 
     //Reloads all textures, used for asset reloads in vanilla.
     public static void reloadAssets() {
+        AvatarDataManager.LOADED_ENTITY_DATA.values().forEach(AvatarData::releaseTextures);
         AvatarDataManager.LOADED_ENTITY_DATA.clear();
-        LOADED_PLAYER_DATA.values().forEach(data -> {
-            if (data.texture != null) {
-                data.texture.registerTexture();
-                data.texture.uploadUsingData();
-            }
 
-            data.extraTextures.forEach(figuraTexture -> {
-                figuraTexture.registerTexture();
-                figuraTexture.uploadUsingData();
-            });
-        });
+        //textures are shared between avatars, so each one is uploaded once
+        TextureRegistry.reloadAll();
     }
 }
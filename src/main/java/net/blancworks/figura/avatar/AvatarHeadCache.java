@@ -0,0 +1,234 @@
+package net.blancworks.figura.avatar;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import net.blancworks.figura.models.animations.Animation;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.gl.SimpleFramebuffer;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.BufferRenderer;
+import net.minecraft.client.render.DiffuseLighting;
+import net.minecraft.client.render.GameRenderer;
+import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.render.Tessellator;
+import net.minecraft.client.render.VertexConsumerProvider;
+import net.minecraft.client.render.VertexFormat;
+import net.minecraft.client.render.VertexFormats;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.util.Identifier;
+import net.minecraft.util.math.Matrix4f;
+import net.minecraft.util.math.Vec3f;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Avatar heads drawn in the player list, rendered once into a small texture and reused every frame the list is open.
+ * A head is rendered again when its model, texture, animations or the gui scale change,
+ * and otherwise only at a capped rate, faster for heads a script or an animation can move.
+ * Must only be used on the render thread.
+ */
+public class AvatarHeadCache {
+
+    //size of a player list head, in gui units
+    public static final int HEAD_SIZE = 8;
+
+    //how many heads can be rendered again in a single frame, the others keep their last texture
+    public static final int MAX_REFRESHES_PER_FRAME = 8;
+    public static final long DYNAMIC_REFRESH_MS = 50;
+    public static final long STATIC_REFRESH_MS = 1000;
+
+    //heads not drawn for this long are deleted
+    public static final long EXPIRE_MS = 5000;
+
+    private static final Map<UUID, Entry> ENTRIES = new HashMap<>();
+
+    private static int refreshesThisFrame = 0;
+
+    public static class Entry {
+        private SimpleFramebuffer framebuffer;
+        private long signature;
+        private long lastRefresh;
+        private long lastUsed;
+        private boolean rendered;
+    }
+
+    /**
+     * Draws the cached head of the avatar, refreshing it first if needed.
+     * Avatars without skull parts get the vanilla head rendered into the cache with their own parts, depth tested against them,
+     * so it's drawn by {@code drawVanilla} at the origin using the {@code skin} texture.
+     */
+    public static void drawHead(AvatarData data, MatrixStack matrices, int x, int y, Identifier skin, Consumer<MatrixStack> drawVanilla) {
+        MinecraftClient client = MinecraftClient.getInstance();
+        double guiScale = client.getWindow().getScaleFactor();
+        long now = System.currentTimeMillis();
+
+        Entry entry = ENTRIES.computeIfAbsent(data.entityId, k -> new Entry());
+        entry.lastUsed = now;
+
+        //the skin is part of the cached head too, and it changes once it's downloaded
+        long signature = computeSignature(data, guiScale) * 31 + skin.hashCode();
+        if (shouldRender(entry, signature, isDynamic(data), now))
+            render(entry, data, (int) Math.ceil(HEAD_SIZE * guiScale), skin, drawVanilla);
+
+        blit(entry.framebuffer, matrices, x, y);
+    }
+
+    //decides if the head is rendered again this frame, and if so counts it as rendered now
+    static boolean shouldRender(Entry entry, long signature, boolean dynamic, long now) {
+        boolean changed = !entry.rendered || entry.signature != signature;
+        if (!needsRefresh(changed, dynamic, now - entry.lastRefresh))
+            return false;
+
+        //a head never rendered has nothing to draw yet, so it doesn't wait for a later frame
+        if (entry.rendered && refreshesThisFrame >= MAX_REFRESHES_PER_FRAME)
+            return false;
+
+        refreshesThisFrame++;
+        entry.rendered = true;
+        entry.signature = signature;
+        entry.lastRefresh = now;
+        return true;
+    }
+
+    //changes to any of these mean the cached head is wrong, no matter how recent it is
+    public static long computeSignature(AvatarData data, double guiScale) {
+        return computeSignature(data.model, data.texture, data.extraTextures.size(), data.model.animations.values(), guiScale);
+    }
+
+    static long computeSignature(Object model, Object texture, int extraTextures, Collection<Animation> animations, double guiScale) {
+        long hash = System.identityHashCode(model);
+        hash = hash * 31 + System.identityHashCode(texture);
+        hash = hash * 31 + extraTextures;
+        hash = hash * 31 + Double.hashCode(guiScale);
+
+        for (Animation anim : animations)
+            hash = hash * 31 + anim.playState.ordinal();
+
+        return hash;
+    }
+
+    //heads a script or a playing animation may move every frame
+    public static boolean isDynamic(AvatarData data) {
+        if (data.script != null && data.script.hasFrameEvents())
+            return true;
+
+        for (Animation anim : data.model.animations.values()) {
+            if (anim.playState != Animation.PlayState.STOPPED && anim.playState != Animation.PlayState.ENDED)
+                return true;
+        }
+
+        return false;
+    }
+
+    public static boolean needsRefresh(boolean changed, boolean dynamic, long sinceLastRefresh) {
+        return changed || sinceLastRefresh >= (dynamic ? DYNAMIC_REFRESH_MS : STATIC_REFRESH_MS);
+    }
+
+    private static void render(Entry entry, AvatarData data, int pixels, Identifier skin, Consumer<MatrixStack> drawVanilla) {
+        MinecraftClient client = MinecraftClient.getInstance();
+
+        if (entry.framebuffer != null && entry.framebuffer.textureWidth != pixels) {
+            entry.framebuffer.delete();
+            entry.framebuffer = null;
+        }
+        if (entry.framebuffer == null)
+            entry.framebuffer = new SimpleFramebuffer(pixels, pixels, true, MinecraftClient.IS_SYSTEM_MAC);
+
+        SimpleFramebuffer framebuffer = entry.framebuffer;
+        framebuffer.setClearColor(0f, 0f, 0f, 0f);
+        framebuffer.clear(MinecraftClient.IS_SYSTEM_MAC);
+        framebuffer.beginWrite(true);
+
+        //same projection as the gui, only covering the head
+        Matrix4f projection = RenderSystem.getProjectionMatrix();
+        RenderSystem.setProjectionMatrix(Matrix4f.projectionMatrix(0f, HEAD_SIZE, 0f, HEAD_SIZE, 1000f, 3000f));
+        MatrixStack modelView = RenderSystem.getModelViewStack();
+        modelView.push();
+        modelView.loadIdentity();
+        modelView.translate(0f, 0f, -2000f);
+        RenderSystem.applyModelViewMatrix();
+        DiffuseLighting.disableGuiDepthLighting();
+
+        MatrixStack stack = new MatrixStack();
+        stack.translate(4f, 8f, 0f);
+        stack.scale(-16f, 16f, 16f);
+        stack.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(180));
+
+        VertexConsumerProvider vcp = data.tryGetImmediate();
+        boolean vanilla;
+        try {
+            vanilla = !data.model.renderSkull(stack, vcp, LightmapTextureManager.MAX_LIGHT_COORDINATE);
+            if (vcp instanceof VertexConsumerProvider.Immediate immediate)
+                immediate.draw();
+        } catch (Exception e) {
+            vanilla = true;
+            e.printStackTrace();
+        }
+
+        //same as drawing it over the list, slightly in front so only the parts sticking out of the face stay visible
+        if (vanilla) {
+            MatrixStack vanillaStack = new MatrixStack();
+            vanillaStack.translate(0f, 0f, 4f);
+
+            RenderSystem.enableDepthTest();
+            RenderSystem.setShaderTexture(0, skin);
+            drawVanilla.accept(vanillaStack);
+        }
+
+        modelView.pop();
+        RenderSystem.applyModelViewMatrix();
+        RenderSystem.setProjectionMatrix(projection);
+        DiffuseLighting.enableGuiDepthLighting();
+
+        client.getFramebuffer().beginWrite(true);
+    }
+
+    private static void blit(SimpleFramebuffer framebuffer, MatrixStack matrices, int x, int y) {
+        RenderSystem.setShader(GameRenderer::getPositionTexShader);
+        RenderSystem.setShaderTexture(0, framebuffer.getColorAttachment());
+        RenderSystem.enableBlend();
+        RenderSystem.defaultBlendFunc();
+
+        //framebuffers are upside down
+        Matrix4f matrix = matrices.peek().getPositionMatrix();
+        BufferBuilder buffer = Tessellator.getInstance().getBuffer();
+        buffer.begin(VertexFormat.DrawMode.QUADS, VertexFormats.POSITION_TEXTURE);
+        buffer.vertex(matrix, x, y + HEAD_SIZE, 0f).texture(0f, 0f).next();
+        buffer.vertex(matrix, x + HEAD_SIZE, y + HEAD_SIZE, 0f).texture(1f, 0f).next();
+        buffer.vertex(matrix, x + HEAD_SIZE, y, 0f).texture(1f, 1f).next();
+        buffer.vertex(matrix, x, y, 0f).texture(0f, 1f).next();
+        buffer.end();
+        BufferRenderer.draw(buffer);
+
+        RenderSystem.disableBlend();
+    }
+
+    //called by the render thread before every frame
+    public static void beginFrame() {
+        refreshesThisFrame = 0;
+
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = ENTRIES.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (now - entry.lastUsed < EXPIRE_MS)
+                continue;
+
+            if (entry.framebuffer != null)
+                entry.framebuffer.delete();
+            iterator.remove();
+        }
+    }
+
+    public static void clear() {
+        for (Entry entry : ENTRIES.values()) {
+            if (entry.framebuffer != null)
+                entry.framebuffer.delete();
+        }
+        ENTRIES.clear();
+    }
+}
@@ -0,0 +1,399 @@
+package net.blancworks.figura.avatar;
+
+import net.blancworks.figura.FiguraMod;
+import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.models.CustomModel;
+import net.blancworks.figura.models.animations.Animation;
+import net.blancworks.figura.models.shaders.CountingVertexConsumerProvider;
+import net.blancworks.figura.models.shaders.FiguraVertexConsumerProvider;
+import net.blancworks.figura.trust.PlayerTrustManager;
+import net.blancworks.figura.trust.TrustContainer;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.network.AbstractClientPlayerEntity;
+import net.minecraft.client.render.LightmapTextureManager;
+import net.minecraft.client.render.OverlayTexture;
+import net.minecraft.client.render.entity.model.EntityModelLayers;
+import net.minecraft.client.render.entity.model.PlayerEntityModel;
+import net.minecraft.client.util.math.MatrixStack;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.text.LiteralText;
+import net.minecraft.util.Identifier;
+
+import java.io.BufferedWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.LongSupplier;
+
+/**
+ * Loads an avatar through the usual {@link LocalAvatarData} paths and renders it into a {@link CountingVertexConsumerProvider},
+ * on a simulated clock, so the render path can be measured without drawing anything.
+ * One harness frame is rendered per game frame, so the client never stops while it runs.
+ * Script events only run when there is a player in the world to stand in as the avatar entity.
+ */
+public class AvatarRenderHarness {
+    public static final long LOAD_TIMEOUT_MS = 30000;
+    public static final long SCRIPT_TIMEOUT_MS = 10000;
+    public static final float TICK_MS = 50f;
+
+    private static volatile boolean running = false;
+
+    //the run in progress, only used on the render thread
+    private static Session session;
+
+    public record FrameStats(long animationNanos, long bodyNanos, long armNanos, long skullNanos, long worldNanos, long hudNanos,
+                             long allocatedBytes, int vertices, int layers, int drawCalls, int tickInstructions, int renderInstructions) {
+        public long totalNanos() {
+            return animationNanos + bodyNanos + armNanos + skullNanos + worldNanos + hudNanos;
+        }
+    }
+
+    public static class Report {
+        public final String name;
+        public final List<FrameStats> frames = new ArrayList<>();
+        public long loadNanos = 0;
+        public boolean scriptEvents = false;
+
+        public Report(String name) {
+            this.name = name;
+        }
+
+        public void log() {
+            if (frames.isEmpty()) {
+                FiguraMod.LOGGER.warn("Render harness for " + name + " rendered no frames");
+                return;
+            }
+
+            double total = 0, animation = 0, allocated = 0, vertices = 0, drawCalls = 0;
+            long worst = 0;
+            for (FrameStats frame : frames) {
+                total += frame.totalNanos();
+                animation += frame.animationNanos();
+                allocated += frame.allocatedBytes();
+                vertices += frame.vertices();
+                drawCalls += frame.drawCalls();
+                worst = Math.max(worst, frame.totalNanos());
+            }
+
+            int count = frames.size();
+            FiguraMod.LOGGER.info(String.format("Render harness for %s: loaded in %.1fms, %d frames, script events %s", name, loadNanos / 1e6, count, scriptEvents ? "on" : "off"));
+            FiguraMod.LOGGER.info(String.format("Per frame: %.1fµs (worst %.1fµs), animations %.1fµs, %.0f bytes allocated", total / 1e3 / count, worst / 1e3, animation / 1e3 / count, allocated / count));
+            FiguraMod.LOGGER.info(String.format("Per frame: %.0f vertices, %.1f draw calls", vertices / count, drawCalls / count));
+        }
+
+        public Path write() throws Exception {
+            Path folder = FiguraMod.getModContentDirectory().resolve("benchmarks");
+            if (!Files.exists(folder))
+                Files.createDirectories(folder);
+
+            Path file = folder.resolve(name.replaceAll("[^\\w.-]", "_") + "-" + new SimpleDateFormat("yyyy_MM_dd-HH_mm_ss").format(new Date()) + ".csv");
+            try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+                writer.write("frame,animation_ns,body_ns,arm_ns,skull_ns,world_ns,hud_ns,total_ns,allocated_bytes,vertices,layers,draw_calls,tick_instructions,render_instructions\n");
+                for (int i = 0; i < frames.size(); i++) {
+                    FrameStats f = frames.get(i);
+                    writer.write(i + "," + f.animationNanos() + "," + f.bodyNanos() + "," + f.armNanos() + "," + f.skullNanos() + "," + f.worldNanos() + "," + f.hudNanos() + "," + f.totalNanos()
+                            + "," + f.allocatedBytes() + "," + f.vertices() + "," + f.layers() + "," + f.drawCalls() + "," + f.tickInstructions() + "," + f.renderInstructions() + "\n");
+                }
+            }
+
+            return file;
+        }
+    }
+
+    //benchmarks the avatar currently selected in the wardrobe
+    public static void runSelected() {
+        String path = AvatarDataManager.localPlayerPath;
+        if (path == null || path.isBlank()) {
+            FiguraMod.LOGGER.warn("Render harness needs a local avatar to be selected");
+            return;
+        }
+
+        run(Path.of(path), 600, 60f).thenAccept(report -> {
+            report.log();
+            try {
+                Path file = report.write();
+                MinecraftClient.getInstance().execute(() -> FiguraMod.sendToast("figura.toast.benchmark.title", new LiteralText(file.getFileName().toString())));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Loads the avatar at the path (folder, zip, .moon or container), then renders it for some frames on the client thread.
+     *
+     * @param path the avatar to load
+     * @param frameCount how many frames to render
+     * @param fps the simulated frame rate
+     * @return the report, completed after the last frame
+     */
+    public static CompletableFuture<Report> run(Path path, int frameCount, float fps) {
+        CompletableFuture<Report> result = new CompletableFuture<>();
+        if (running || !Files.exists(path)) {
+            result.completeExceptionally(new IllegalStateException(running ? "The render harness is already running" : "No avatar at " + path));
+            return result;
+        }
+
+        running = true;
+        Thread thread = new Thread(() -> {
+            try {
+                Report report = new Report(path.getFileName().toString());
+                LocalAvatarData data = load(path, report);
+                if (data == null) {
+                    running = false;
+                    result.completeExceptionally(new IllegalStateException("Failed to load avatar " + path));
+                    return;
+                }
+
+                //rendering has to happen on the client thread, as it does in game, one frame at a time
+                MinecraftClient.getInstance().execute(() -> {
+                    try {
+                        session = new Session(data, frameCount, fps, report, result);
+                    } catch (Exception e) {
+                        e.printStackTrace();
+                        finish(data, null, e, result);
+                    }
+                });
+            } catch (Exception e) {
+                e.printStackTrace();
+                running = false;
+                result.completeExceptionally(e);
+            }
+        }, "Figura Render Harness");
+        thread.setDaemon(true);
+        thread.start();
+
+        return result;
+    }
+
+    private static LocalAvatarData load(Path path, Report report) throws Exception {
+        //harness avatars always use the local trust, and never show up in the trust list
+        LocalAvatarData data = new LocalAvatarData(UUID.randomUUID()) {
+            @Override
+            public TrustContainer getTrustContainer() {
+                TrustContainer local = PlayerTrustManager.groups.get(new Identifier("group", "local"));
+                return local != null ? local : super.getTrustContainer();
+            }
+        };
+
+        //loading a file also sets what the local player has loaded, which the harness shouldn't change
+        String localPath = AvatarDataManager.localPlayerPath;
+        NbtCompound localNbt = AvatarDataManager.localPlayerNbt;
+
+        long start = System.nanoTime();
+        try {
+            data.loadModelFile(path.toString());
+        } finally {
+            AvatarDataManager.localPlayerPath = localPath;
+            AvatarDataManager.localPlayerNbt = localNbt;
+        }
+
+        //wait for the queued load tasks, and then for the script init
+        CompletableFuture<?> loadTasks = FiguraMod.doTask(() -> {});
+        if (loadTasks != null)
+            loadTasks.get();
+
+        long timeout = System.currentTimeMillis() + LOAD_TIMEOUT_MS;
+        while (!data.isAvatarLoaded()) {
+            if (System.currentTimeMillis() > timeout)
+                return null;
+            Thread.sleep(5);
+        }
+
+        report.loadNanos = System.nanoTime() - start;
+        return data.hasAvatar() ? data : null;
+    }
+
+    //called by the render thread before every frame, renders the next harness frame if one is running
+    public static void onFrame() {
+        Session current = session;
+        if (current == null)
+            return;
+
+        try {
+            if (current.step())
+                finish(current.data, current, null, current.result);
+        } catch (Exception e) {
+            e.printStackTrace();
+            finish(current.data, current, e, current.result);
+        }
+    }
+
+    private static void finish(LocalAvatarData data, Session current, Exception error, CompletableFuture<Report> result) {
+        session = null;
+
+        try {
+            if (current != null && data.script != null)
+                data.script.customVCP = current.customVCP;
+
+            //gives the shared textures back, avatars using the same ones keep them
+            data.clearData();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            running = false;
+        }
+
+        if (error != null)
+            result.completeExceptionally(error);
+        else
+            result.complete(current.report);
+    }
+
+    private static class Session {
+        private final LocalAvatarData data;
+        private final CustomModel model;
+        private final CustomScript script;
+        private final int frameCount;
+        private final double frameMs;
+        private final Report report;
+        private final CompletableFuture<Report> result;
+
+        private final PlayerEntityModel<AbstractClientPlayerEntity> playerModel;
+        private final CountingVertexConsumerProvider vcp = new CountingVertexConsumerProvider();
+        private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        private final long threadId = Thread.currentThread().getId();
+        private final FiguraVertexConsumerProvider customVCP;
+
+        //simulated clock, in ms
+        private double now;
+        private final LongSupplier clock = () -> (long) now;
+        private double nextTick;
+        private int frame = 0;
+        private int tickInstructions = 0;
+
+        //the script tick the next frame waits for
+        private CompletableFuture<Void> pendingTick;
+        private long pendingSince;
+
+        private Session(LocalAvatarData data, int frameCount, float fps, Report report, CompletableFuture<Report> result) {
+            MinecraftClient client = MinecraftClient.getInstance();
+
+            this.data = data;
+            this.model = data.model;
+            this.script = data.script;
+            this.frameCount = frameCount;
+            this.frameMs = 1000d / fps;
+            this.report = report;
+            this.result = result;
+            this.playerModel = new PlayerEntityModel<>(client.getEntityModelLoader().getModelPart(EntityModelLayers.PLAYER), false);
+
+            //the avatar renders with the local player as its entity, if there is one
+            data.lastEntity = client.player;
+            data.vanillaModel = playerModel;
+            data.vertexConsumerProvider = vcp;
+            report.scriptEvents = script != null && data.lastEntity != null;
+
+            this.customVCP = script != null ? script.customVCP : null;
+            if (script != null)
+                script.customVCP = null;
+
+            this.now = Animation.clock.getAsLong();
+            this.nextTick = now;
+        }
+
+        //runs one step, a script tick or a frame, returns true once every frame is rendered
+        private boolean step() throws Exception {
+            //the script runs the tick on its own thread, the client keeps going until it is done
+            if (pendingTick != null) {
+                if (!pendingTick.isDone()) {
+                    if (System.currentTimeMillis() - pendingSince > SCRIPT_TIMEOUT_MS)
+                        throw new TimeoutException("The script took too long to tick");
+                    return false;
+                }
+
+                pendingTick = null;
+                tickInstructions = script.tickInstructionCount;
+            }
+
+            //only the harness sees the simulated clock
+            LongSupplier realClock = Animation.clock;
+            Animation.clock = clock;
+            try {
+                if (now >= nextTick) {
+                    nextTick += TICK_MS;
+
+                    if (report.scriptEvents) {
+                        script.setPlayerEntity();
+                        script.tick();
+                        pendingTick = script.queueTask(() -> {});
+                        pendingSince = System.currentTimeMillis();
+                        return false;
+                    }
+
+                    while (now >= nextTick)
+                        nextTick += TICK_MS;
+                }
+
+                renderFrame();
+            } finally {
+                Animation.clock = realClock;
+            }
+
+            now += frameMs;
+            return ++frame >= frameCount;
+        }
+
+        private void renderFrame() {
+            data.deltaTime = (float) (1d - (nextTick - now) / TICK_MS);
+            vcp.reset();
+            long allocated = getAllocatedBytes(threads, threadId);
+
+            //animations
+            long start = System.nanoTime();
+            if (model != null)
+                model.renderAnimations(data.getTrustContainer().getTrust(TrustContainer.Trust.BB_ANIMATIONS));
+            long animation = System.nanoTime() - start;
+
+            long body = 0, arm = 0, skull = 0, world = 0, hud = 0;
+            if (model != null) {
+                int light = LightmapTextureManager.MAX_LIGHT_COORDINATE;
+                MatrixStack matrices = new MatrixStack();
+
+                start = System.nanoTime();
+                model.render(playerModel, matrices, new MatrixStack(), vcp, light, OverlayTexture.DEFAULT_UV, 1f);
+                body = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                model.renderArm(matrices, vcp, light, playerModel.rightArm, playerModel, 1f);
+                arm = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                model.renderSkull(matrices, vcp, light);
+                skull = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                model.renderWorldParts(0d, 0d, 0d, matrices, vcp, light, OverlayTexture.DEFAULT_UV, 1f);
+                world = System.nanoTime() - start;
+
+                start = System.nanoTime();
+                model.renderHudParts(matrices);
+                hud = System.nanoTime() - start;
+
+                model.clearAnimations();
+            }
+
+            vcp.draw();
+            allocated = allocated < 0 ? -1 : getAllocatedBytes(threads, threadId) - allocated;
+            int renderInstructions = script != null ? script.renderInstructionCount : 0;
+
+            report.frames.add(new FrameStats(animation, body, arm, skull, world, hud, allocated, vcp.vertices, vcp.getLayerCount(), vcp.drawCalls, tickInstructions, renderInstructions));
+            tickInstructions = 0;
+        }
+    }
+
+    //bytes allocated by the thread so far, or -1 if the jvm can't tell
+    private static long getAllocatedBytes(ThreadMXBean threads, long threadId) {
+        if (threads instanceof com.sun.management.ThreadMXBean sun && sun.isThreadAllocatedMemorySupported())
+            return sun.getThreadAllocatedBytes(threadId);
+        return -1;
+    }
+}
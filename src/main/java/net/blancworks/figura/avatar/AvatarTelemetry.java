@@ -0,0 +1,288 @@
+package net.blancworks.figura.avatar;
+
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import net.blancworks.figura.FiguraMod;
+import net.blancworks.figura.config.ConfigManager.Config;
+import net.blancworks.figura.lua.api.sound.FiguraSound;
+import net.blancworks.figura.models.FiguraTexture;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.text.LiteralText;
+
+import java.io.BufferedWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Rolling performance numbers for one avatar, so we can tell which avatar is eating the frame budget.
+ * Frame metrics are summed over a frame and committed at the end of it, tick metrics once per tick and network metrics once per second.
+ */
+public class AvatarTelemetry {
+    //how many samples each metric keeps
+    public static final int WINDOW = 60;
+    //how many avatars the debug overlay lists
+    public static final int OVERLAY_SIZE = 5;
+
+    public enum Metric {
+        RENDER_TIME("Render", "µs", t -> t.renderTime.average() / 1000),
+        VERTICES("Vertices", "", t -> t.vertices.average()),
+        ANIMATION_TIME("Animation", "µs", t -> t.animationTime.average() / 1000),
+        TICK_INSTRUCTIONS("Tick inst", "", t -> t.tickInstructions.average()),
+        RENDER_INSTRUCTIONS("Render inst", "", t -> t.renderInstructions.average()),
+        PING_IN("Ping in", "B/s", t -> t.pingBytesIn.average()),
+        PING_OUT("Ping out", "B/s", t -> t.pingBytesOut.average()),
+        TEXTURE_MEMORY("Textures", "KiB", t -> t.textureMemory / 1024d),
+        SOUND_MEMORY("Sounds", "KiB", t -> t.soundMemory / 1024d),
+        SCRIPT_MEMORY("Script", "KiB", t -> t.scriptMemory / 1024d);
+
+        public final String title;
+        public final String unit;
+        public final Function<AvatarTelemetry, Double> getter;
+
+        Metric(String title, String unit, Function<AvatarTelemetry, Double> getter) {
+            this.title = title;
+            this.unit = unit;
+            this.getter = getter;
+        }
+
+        public double get(AvatarTelemetry telemetry) {
+            return getter.apply(telemetry);
+        }
+    }
+
+    public static class RollingMetric {
+        private final long[] samples = new long[WINDOW];
+        private int index = 0;
+        private int count = 0;
+        private long current = 0;
+
+        //adds to the current sample
+        public synchronized void add(long value) {
+            current += value;
+        }
+
+        //commits the current sample into the window
+        public synchronized void push() {
+            samples[index] = current;
+            index = (index + 1) % WINDOW;
+            count = Math.min(count + 1, WINDOW);
+            current = 0;
+        }
+
+        public synchronized void push(long value) {
+            current = value;
+            push();
+        }
+
+        public synchronized double average() {
+            if (count == 0) return 0d;
+
+            long sum = 0;
+            for (int i = 0; i < count; i++)
+                sum += samples[i];
+            return (double) sum / count;
+        }
+
+        public synchronized long max() {
+            long max = 0;
+            for (int i = 0; i < count; i++)
+                max = Math.max(max, samples[i]);
+            return max;
+        }
+    }
+
+    public final AvatarData owner;
+
+    public final RollingMetric renderTime = new RollingMetric();
+    public final RollingMetric vertices = new RollingMetric();
+    public final RollingMetric animationTime = new RollingMetric();
+    public final RollingMetric tickInstructions = new RollingMetric();
+    public final RollingMetric renderInstructions = new RollingMetric();
+    public final RollingMetric pingBytesIn = new RollingMetric();
+    public final RollingMetric pingBytesOut = new RollingMetric();
+
+    //instructions used by the last call of each event, by event name
+    public final Map<String, Integer> eventInstructions = new ConcurrentHashMap<>();
+    //how long each load stage took, in milliseconds
+    public final Map<String, Long> loadStages = new ConcurrentHashMap<>();
+
+    public long textureMemory = 0;
+    public long soundMemory = 0;
+    //measured by the script itself, see LuaMemoryTracker
+    public volatile long scriptMemory = 0;
+
+    private static List<String> overlayLines = List.of();
+
+    public AvatarTelemetry(AvatarData owner) {
+        this.owner = owner;
+    }
+
+    public void recordLoadStage(String stage, long startNanos) {
+        loadStages.put(stage, (System.nanoTime() - startNanos) / 1000000);
+    }
+
+    public void clearLoadStages() {
+        loadStages.clear();
+        eventInstructions.clear();
+    }
+
+    private void updateMemory() {
+        long textures = 0;
+        if (owner.texture != null)
+            textures += owner.texture.gpuSize;
+        for (FiguraTexture texture : owner.extraTextures)
+            textures += texture.gpuSize;
+        textureMemory = textures;
+
+        //sounds are registered from the script threads, so just try again next time if they change
+        try {
+            long sounds = 0;
+            if (owner.script != null) {
+                for (FiguraSound sound : owner.script.customSounds.values())
+                    sounds += sound.sample().length;
+            }
+            soundMemory = sounds;
+        } catch (ConcurrentModificationException ignored) {}
+    }
+
+    public String getName() {
+        return owner.name != null ? owner.name.getString() : owner.entityId.toString();
+    }
+
+    // -- global -- //
+
+    //called by the render thread after every frame
+    public static void endFrame() {
+        for (AvatarData data : AvatarDataManager.LOADED_PLAYER_DATA.values()) {
+            data.telemetry.renderTime.push();
+            data.telemetry.vertices.push();
+            data.telemetry.animationTime.push();
+        }
+    }
+
+    //called on the client thread every tick
+    public static void tick() {
+        boolean second = FiguraMod.ticksElapsed % 20 == 0;
+        boolean overlay = FiguraMod.ticksElapsed % 10 == 0;
+
+        if (second) {
+            for (AvatarData data : AvatarDataManager.LOADED_PLAYER_DATA.values()) {
+                data.telemetry.pingBytesIn.push();
+                data.telemetry.pingBytesOut.push();
+                data.telemetry.updateMemory();
+            }
+        }
+
+        //the overlay is only rebuilt a couple times per second, instead of every frame
+        if (overlay)
+            overlayLines = buildOverlay();
+    }
+
+    public static Metric getSortMetric() {
+        int sort = (int) Config.PERFORMANCE_OVERLAY.value;
+        return sort <= 0 ? null : Metric.values()[Math.min(sort - 1, Metric.values().length - 1)];
+    }
+
+    public static List<String> getOverlayLines() {
+        return overlayLines;
+    }
+
+    private static List<String> buildOverlay() {
+        Metric metric = getSortMetric();
+        if (metric == null)
+            return List.of();
+
+        List<AvatarTelemetry> sorted = getSorted(metric);
+        List<String> lines = new ArrayList<>();
+        lines.add(String.format("Worst avatars by %s:", metric.title));
+
+        for (int i = 0; i < Math.min(OVERLAY_SIZE, sorted.size()); i++) {
+            AvatarTelemetry telemetry = sorted.get(i);
+            lines.add(String.format("%s: %.1f%s", telemetry.getName(), metric.get(telemetry), metric.unit));
+        }
+
+        return lines;
+    }
+
+    public static List<AvatarTelemetry> getSorted(Metric metric) {
+        List<AvatarTelemetry> list = new ArrayList<>();
+        for (AvatarData data : AvatarDataManager.LOADED_PLAYER_DATA.values()) {
+            if (data.hasAvatar())
+                list.add(data.telemetry);
+        }
+
+        list.sort(Comparator.comparingDouble(metric::get).reversed());
+        return list;
+    }
+
+    // -- export -- //
+
+    public static void export() {
+        //collect on the calling thread, write off it
+        List<AvatarTelemetry> list = getSorted(Metric.RENDER_TIME);
+        JsonArray json = new JsonArray();
+        StringBuilder csv = new StringBuilder("uuid,name");
+        for (Metric metric : Metric.values())
+            csv.append(',').append(metric.name().toLowerCase()).append(metric.unit.isEmpty() ? "" : "_" + metric.unit.replace("µ", "u").replace("/", "_per_"));
+        csv.append(",load_stages_ms\n");
+
+        for (AvatarTelemetry telemetry : list) {
+            JsonObject obj = new JsonObject();
+            obj.addProperty("uuid", telemetry.owner.entityId.toString());
+            obj.addProperty("name", telemetry.getName());
+            csv.append(telemetry.owner.entityId).append(',').append(telemetry.getName().replace(",", ""));
+
+            for (Metric metric : Metric.values()) {
+                double value = metric.get(telemetry);
+                obj.addProperty(metric.name().toLowerCase(), value);
+                csv.append(',').append(String.format(Locale.ROOT, "%.2f", value));
+            }
+
+            JsonObject events = new JsonObject();
+            telemetry.eventInstructions.forEach(events::addProperty);
+            obj.add("event_instructions", events);
+
+            JsonObject stages = new JsonObject();
+            StringJoiner stagesCsv = new StringJoiner(";");
+            telemetry.loadStages.forEach((stage, time) -> {
+                stages.addProperty(stage, time);
+                stagesCsv.add(stage + "=" + time);
+            });
+            obj.add("load_stages_ms", stages);
+            csv.append(',').append(stagesCsv).append('\n');
+
+            json.add(obj);
+        }
+
+        String jsonString = new GsonBuilder().setPrettyPrinting().create().toJson(json);
+        String csvString = csv.toString();
+
+        FiguraMod.doTask(() -> {
+            try {
+                Path folder = FiguraMod.getModContentDirectory().resolve("telemetry");
+                if (!Files.exists(folder))
+                    Files.createDirectories(folder);
+
+                String name = "telemetry-" + new SimpleDateFormat("yyyy_MM_dd-HH_mm_ss").format(new Date());
+                Path csvPath = folder.resolve(name + ".csv");
+
+                try (BufferedWriter writer = Files.newBufferedWriter(csvPath)) {
+                    writer.write(csvString);
+                }
+                try (BufferedWriter writer = Files.newBufferedWriter(folder.resolve(name + ".json"))) {
+                    writer.write(jsonString);
+                }
+
+                FiguraMod.LOGGER.info("Exported avatar telemetry to " + csvPath.getParent());
+                MinecraftClient.getInstance().execute(() -> FiguraMod.sendToast("figura.toast.telemetry.export.title", new LiteralText(name)));
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+}
@@ -1,19 +1,20 @@
 package net.blancworks.figura.avatar;
 
-import com.google.common.io.CharStreams;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
 import it.unimi.dsi.fastutil.objects.Object2ObjectOpenHashMap;
 import net.blancworks.figura.FiguraMod;
 import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.lua.LuaEventRegistry;
 import net.blancworks.figura.lua.api.sound.FiguraSoundManager;
 import net.blancworks.figura.models.CustomModel;
 import net.blancworks.figura.models.FiguraTexture;
+import net.blancworks.figura.models.TextureRegistry;
 import net.blancworks.figura.parsers.BlockbenchModelDeserializer;
+import net.blancworks.figura.parsers.FiguraAvatarContainer;
 import net.minecraft.nbt.NbtCompound;
 import net.minecraft.nbt.NbtIo;
-import net.minecraft.util.Identifier;
 
 import java.io.*;
 import java.nio.charset.StandardCharsets;
@@ -59,6 +60,36 @@ public class LocalAvatarData extends AvatarData {
         super.loadFromNbt(tag);
     }
 
+    //the model and texture load first, the script and sounds are only read from the file once those are done
+    private void loadContainer(FiguraAvatarContainer container) throws IOException {
+        NbtCompound tag;
+        try {
+            tag = container.readAvatar(name -> !FiguraAvatarContainer.isDeferred(name));
+        } catch (IOException e) {
+            container.close();
+            throw e;
+        }
+
+        loadFromNbt(tag);
+
+        FiguraMod.doTask(() -> {
+            try (container) {
+                //another avatar was loaded meanwhile
+                if (AvatarDataManager.localPlayerNbt != tag)
+                    return;
+
+                //completes the avatar nbt too, which is the one uploaded
+                NbtCompound deferred = container.readAvatar(FiguraAvatarContainer::isDeferred);
+                for (String key : deferred.getKeys())
+                    tag.put(key, deferred.get(key));
+
+                loadScript(tag);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
     public static Path getContentDirectory() {
         return FiguraMod.getModContentDirectory().resolve("model_files");
     }
@@ -71,7 +102,11 @@ public class LocalAvatarData extends AvatarData {
     public void loadModelFile(String path) {
         //clear current data
         this.model = null;
-        this.texture = null;
+        releaseTextures();
+        if (this.script != null) {
+            this.script.clearShaders();
+            LuaEventRegistry.removeAll(this.script);
+        }
         this.script = null;
         AvatarDataManager.localPlayerNbt = null;
 
@@ -98,6 +133,7 @@ public class LocalAvatarData extends AvatarData {
         //1 - model | 2 - player model | 4 - texture | 8 - script
         byte data = 0;
         HashMap<String, Path> avatarPaths = new HashMap<>();
+        ZipFile modelZip = null;
 
         //figura avatar data
         if (path.endsWith(".moon")) {
@@ -115,19 +151,31 @@ public class LocalAvatarData extends AvatarData {
                 e.printStackTrace();
             }
         }
+        //figura avatar container
+        else if (path.endsWith(FiguraAvatarContainer.EXTENSION)) {
+            watchedFiles.add(file.toString());
+
+            try {
+                loadContainer(FiguraAvatarContainer.open(file.toPath()));
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
         //zip
         else if (isZip) {
             //add zip to watched files, even if you cant edit opened zip files, you might be able to
             watchedFiles.add(file.toString());
 
+            //the zip is opened once, and used for all the loading below
             try {
-                ZipFile zipFile = new ZipFile(file.getPath());
+                modelZip = new ZipFile(file);
 
-                if (zipFile.getEntry("model.bbmodel") != null) data = (byte) (data | 1);
-                if (zipFile.getEntry("player_model.bbmodel") != null) data = (byte) (data | 2);
-                if (zipFile.getEntry("texture.png") != null) data = (byte) (data | 4);
-                if (zipFile.getEntry("script.lua") != null) data = (byte) (data | 8);
-                if (zipFile.getEntry("sounds.json") != null) data = (byte) (data | 16);
+                if (modelZip.getEntry("model.bbmodel") != null) data = (byte) (data | 1);
+                if (modelZip.getEntry("player_model.bbmodel") != null) data = (byte) (data | 2);
+                if (modelZip.getEntry("texture.png") != null) data = (byte) (data | 4);
+                if (modelZip.getEntry("script.lua") != null) data = (byte) (data | 8);
+                if (modelZip.getEntry("sounds.json") != null) data = (byte) (data | 16);
 
             } catch (Exception e) {
                 e.printStackTrace();
@@ -172,7 +220,16 @@ public class LocalAvatarData extends AvatarData {
         //log and clear player model
         if (data == 0 || data == 4) {
             FiguraMod.LOGGER.warn("Failed to load model " + path);
-            AvatarDataManager.clearLocalPlayer();
+            if (this == AvatarDataManager.localPlayer)
+                AvatarDataManager.clearLocalPlayer();
+
+            if (modelZip != null) {
+                try {
+                    modelZip.close();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
             return;
         }
 
@@ -185,17 +242,6 @@ public class LocalAvatarData extends AvatarData {
             }
         }
 
-        //Set up ZIP file.
-        ZipFile modelZip = null;
-
-        try {
-            if (isZip)
-                modelZip = new ZipFile(file);
-        } catch (Exception e) {
-            e.printStackTrace();
-            return;
-        }
-
         //try to load JSON model
         if ((data & 1) == 1 || (data & 2) == 2) loadModel((data & 1) == 1, avatarPaths, isZip, modelZip);
 
@@ -227,76 +273,27 @@ public class LocalAvatarData extends AvatarData {
     }
 
     public void loadModel(boolean model, HashMap<String, Path> paths, boolean isZip, ZipFile modelZip) {
-        InputStream inputStream = null;
-
-        try {
-            boolean overrideAsPlayerModel = false;
+        boolean overrideAsPlayerModel = !model;
+        String entryName = model ? "model.bbmodel" : "player_model.bbmodel";
+        Path modelPath = paths.get(model ? "model" : "player_model");
 
+        //stream the model from GSON in off-thread, the zip is only closed after this task
+        FiguraMod.doTask(() -> {
             //get input stream, either from zip, or directory
-            if (isZip) {
-                ZipEntry modelEntry;
-                if (model)
-                    modelEntry = modelZip.getEntry("model.bbmodel");
-                else {
-                    modelEntry = modelZip.getEntry("player_model.bbmodel");
-                    overrideAsPlayerModel = true;
-                }
-
-                inputStream = modelZip.getInputStream(modelEntry);
-            } else {
-                if (model)
-                    inputStream = new FileInputStream(paths.get("model").toFile());
-                else {
-                    inputStream = new FileInputStream(paths.get("player_model").toFile());
-                    overrideAsPlayerModel = true;
-                }
-            }
-
-            //try to read from input stream
-            String modelJsonText;
-            try (final Reader reader = new InputStreamReader(inputStream)) {
-                modelJsonText = CharStreams.toString(reader);
-            }
-
-            //finalize variables for lambda
-            String finalModelJsonText = modelJsonText;
-            boolean finalOverrideAsPlayerModel = overrideAsPlayerModel;
-
-            //load model from GSON in off-thread
-            FiguraMod.doTask(() -> {
-                try {
-                    this.model = new CustomModel(BlockbenchModelDeserializer.deserialize(finalModelJsonText, finalOverrideAsPlayerModel), this);
-                    FiguraMod.LOGGER.info("Model Loading Finished");
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            });
-        } catch (Exception e) {
-            e.printStackTrace();
-        }
-
-        //Close previously used stream, regardless of what it was (zip or filestream)
-        if (inputStream != null) {
-            try {
-                inputStream.close();
+            try (InputStream inputStream = isZip ? modelZip.getInputStream(modelZip.getEntry(entryName)) : new FileInputStream(modelPath.toFile());
+                 Reader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+                long start = System.nanoTime();
+                this.model = new CustomModel(BlockbenchModelDeserializer.deserialize(reader, overrideAsPlayerModel), this);
+                telemetry.recordLoadStage("model", start);
+                FiguraMod.LOGGER.info("Model Loading Finished");
             } catch (Exception e) {
                 e.printStackTrace();
             }
-        }
+        });
     }
 
     public void loadTexture(Path texturePath, boolean isZip, ZipFile modelZip) {
         try {
-            //Generate Identifier for texture.
-            Identifier id = new Identifier("figura", entityId.toString());
-
-            //Create new texture, and register it.
-            this.texture = new FiguraTexture();
-
-            //load texture, if any
-            this.texture.id = id;
-            getTextureManager().registerTexture(id, texture);
-
             //Get input stream, either from file, or from zip.
             InputStream inputStream;
             if (isZip)
@@ -304,8 +301,10 @@ public class LocalAvatarData extends AvatarData {
             else
                 inputStream = new FileInputStream(texturePath.toFile());
 
-            //Load texture (tasks are managed by the texture itself)
-            texture.loadFromStream(inputStream);
+            //Load texture (tasks are managed by the texture itself), shared with every avatar using the same image
+            try (inputStream) {
+                this.texture = TextureRegistry.acquire(inputStream.readAllBytes(), FiguraTexture.TextureType.color);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -338,8 +337,10 @@ public class LocalAvatarData extends AvatarData {
                 FiguraMod.doTask(() -> {
                     try {
                         //Create script.
+                        long start = System.nanoTime();
                         this.script = new CustomScript();
                         this.script.load(this, finalScriptSource);
+                        telemetry.recordLoadStage("script", start);
                     } catch (Exception e) {
                         e.printStackTrace();
                     }
@@ -415,15 +416,11 @@ public class LocalAvatarData extends AvatarData {
 
                 //If there IS a stream for this extra texture
                 if (inputStream != null) {
-                    FiguraTexture extraTexture = new FiguraTexture();
-                    extraTexture.id = new Identifier("figura", entityId.toString() + textureType);
-                    extraTexture.filePath = location;
-                    getTextureManager().registerTexture(extraTexture.id, extraTexture);
-                    extraTexture.type = textureType;
-
-                    extraTextures.add(extraTexture);
-
-                    extraTexture.loadFromStream(inputStream);
+                    try (InputStream stream = inputStream) {
+                        FiguraTexture extraTexture = TextureRegistry.acquire(stream.readAllBytes(), textureType);
+                        extraTexture.filePath = location;
+                        extraTextures.add(extraTexture);
+                    }
                 }
             }
         } catch (Exception e) {
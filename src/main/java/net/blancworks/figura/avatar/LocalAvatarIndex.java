@@ -0,0 +1,257 @@
+package net.blancworks.figura.avatar;
+
+import net.blancworks.figura.FiguraMod;
+import net.blancworks.figura.parsers.FiguraAvatarContainer;
+import net.minecraft.nbt.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipFile;
+
+/**
+ * Persistent index of the local avatar folder, keeping the modification time, size and avatar type of every scanned file.
+ * Files are only opened again when they changed, and a background watcher tells when the folder needs to be scanned again.
+ */
+public class LocalAvatarIndex {
+
+    public enum AvatarType {
+        NONE,
+        FOLDER,
+        ZIP,
+        MOON,
+        CONTAINER
+    }
+
+    private record Entry(long modified, long size, AvatarType type) {}
+
+    private static final Map<String, Entry> ENTRIES = new HashMap<>();
+    private static final Set<String> SCANNED = new HashSet<>();
+    private static boolean loaded = false;
+    private static boolean changed = false;
+
+    //set by the watcher when something changed inside the avatar folder
+    private static volatile boolean dirty = true;
+
+    private static Path watchedRoot;
+    private static WatchService watchService;
+    private static final Map<WatchKey, Path> WATCH_KEYS = new HashMap<>();
+
+    //scanning
+
+    public static boolean isDirty() {
+        return dirty;
+    }
+
+    public static void markDirty() {
+        dirty = true;
+    }
+
+    public static void startScan() {
+        if (!loaded) {
+            load();
+            loaded = true;
+        }
+
+        dirty = false;
+        SCANNED.clear();
+    }
+
+    public static void finishScan() {
+        //remove entries of deleted files
+        if (ENTRIES.keySet().retainAll(SCANNED))
+            changed = true;
+
+        SCANNED.clear();
+
+        if (changed) {
+            save();
+            changed = false;
+        }
+    }
+
+    public static boolean hasAvatar(File file) {
+        return getType(file) != AvatarType.NONE;
+    }
+
+    public static AvatarType getType(File file) {
+        String path = file.getAbsolutePath();
+        SCANNED.add(path);
+
+        //directories have their modified time updated when their listing changes
+        boolean directory = file.isDirectory();
+        long modified = file.lastModified();
+        long size = directory ? 0 : file.length();
+
+        Entry entry = ENTRIES.get(path);
+        if (entry != null && entry.modified == modified && entry.size == size)
+            return entry.type;
+
+        AvatarType type = detectType(file, directory);
+        ENTRIES.put(path, new Entry(modified, size, type));
+        changed = true;
+
+        return type;
+    }
+
+    private static AvatarType detectType(File file, boolean directory) {
+        String name = file.getName();
+
+        try {
+            //moon (figura avatar data) load
+            if (name.endsWith(".moon"))
+                return AvatarType.MOON;
+            if (name.endsWith(FiguraAvatarContainer.EXTENSION))
+                return AvatarType.CONTAINER;
+
+            //zip load
+            if (name.endsWith(".zip")) {
+                try (ZipFile zipFile = new ZipFile(file)) {
+                    if (zipFile.getEntry("model.bbmodel") != null || zipFile.getEntry("player_model.bbmodel") != null || zipFile.getEntry("script.lua") != null)
+                        return AvatarType.ZIP;
+                }
+            }
+            //directory load
+            else if (directory) {
+                Path dir = file.toPath();
+                if (Files.exists(dir.resolve("model.bbmodel")) || Files.exists(dir.resolve("player_model.bbmodel")) || Files.exists(dir.resolve("script.lua")))
+                    return AvatarType.FOLDER;
+            }
+        } catch (Exception e) {
+            FiguraMod.LOGGER.warn("Failed to load avatar " + name);
+            e.printStackTrace();
+        }
+
+        return AvatarType.NONE;
+    }
+
+    //persistence
+
+    private static Path getIndexPath() {
+        return FiguraMod.getModContentDirectory().resolve("avatar_index.nbt");
+    }
+
+    private static void load() {
+        Path targetPath = getIndexPath();
+        if (!Files.exists(targetPath))
+            return;
+
+        try (FileInputStream fis = new FileInputStream(targetPath.toFile())) {
+            NbtCompound nbt = NbtIo.readCompressed(fis);
+
+            NbtList entries = nbt.getList("entries", NbtElement.COMPOUND_TYPE);
+            AvatarType[] types = AvatarType.values();
+            for (NbtElement value : entries) {
+                NbtCompound compound = (NbtCompound) value;
+
+                int type = compound.getByte("type");
+                if (type < 0 || type >= types.length)
+                    continue;
+
+                ENTRIES.put(compound.getString("path"), new Entry(compound.getLong("mod"), compound.getLong("size"), types[type]));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void save() {
+        NbtCompound nbt = new NbtCompound();
+        NbtList entries = new NbtList();
+
+        ENTRIES.forEach((path, entry) -> {
+            NbtCompound compound = new NbtCompound();
+            compound.putString("path", path);
+            compound.putLong("mod", entry.modified);
+            compound.putLong("size", entry.size);
+            compound.putByte("type", (byte) entry.type.ordinal());
+            entries.add(compound);
+        });
+
+        nbt.put("entries", entries);
+
+        try (FileOutputStream fs = new FileOutputStream(getIndexPath().toFile())) {
+            NbtIo.writeCompressed(nbt, fs);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //watcher
+
+    /**
+     * Starts watching the avatar folder and its sub folders, marking the index dirty on any change.
+     */
+    public static synchronized void watch(Path root) {
+        if (root.equals(watchedRoot))
+            return;
+
+        try {
+            if (watchService != null)
+                watchService.close();
+
+            watchService = FileSystems.getDefault().newWatchService();
+            watchedRoot = root;
+            dirty = true;
+
+            synchronized (WATCH_KEYS) {
+                WATCH_KEYS.clear();
+                registerAll(watchService, root);
+            }
+
+            Thread thread = new Thread(() -> runWatcher(watchService), "Figura Avatar Watcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void registerAll(WatchService service, Path root) throws IOException {
+        Files.walkFileTree(root, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WATCH_KEYS.put(dir.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private static void runWatcher(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+
+                synchronized (WATCH_KEYS) {
+                    Path dir = WATCH_KEYS.get(key);
+
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        dirty = true;
+
+                        //start watching new sub folders
+                        if (dir != null && event.kind() == StandardWatchEventKinds.ENTRY_CREATE) {
+                            Path child = dir.resolve((Path) event.context());
+                            if (Files.isDirectory(child))
+                                registerAll(service, child);
+                        }
+                    }
+
+                    if (!key.reset())
+                        WATCH_KEYS.remove(key);
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException ignored) {
+            //watcher replaced or game closing
+        } catch (Exception e) {
+            dirty = true;
+            e.printStackTrace();
+        }
+    }
+}
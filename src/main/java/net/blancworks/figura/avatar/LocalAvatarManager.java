@@ -1,6 +1,7 @@
 package net.blancworks.figura.avatar;
 
 import net.blancworks.figura.FiguraMod;
+import net.blancworks.figura.parsers.FiguraAvatarContainer;
 import net.minecraft.nbt.*;
 import net.minecraft.resource.Resource;
 import net.minecraft.resource.ResourceManager;
@@ -12,7 +13,6 @@ import java.io.FileOutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
-import java.util.zip.ZipFile;
 
 public class LocalAvatarManager {
 
@@ -103,8 +103,15 @@ public class LocalAvatarManager {
                 e.printStackTrace();
             }
 
+            //only rescan when the watcher saw something change
+            LocalAvatarIndex.watch(contentDirectory);
+            if (init && !LocalAvatarIndex.isDirty())
+                return;
+
             try {
+                LocalAvatarIndex.startScan();
                 loadAvatars(contentDirectory.toFile(), AVATARS);
+                LocalAvatarIndex.finishScan();
                 init = true;
             } catch (Exception e) {
                 e.printStackTrace();
@@ -163,36 +170,7 @@ public class LocalAvatarManager {
     }
 
     private static boolean hasAvatar(File file) {
-        try {
-            byte load = 0;
-
-            //moon (figura avatar data) load
-            if (file.getName().endsWith(".moon")) {
-                return true;
-            }
-            //zip load
-            else if (file.getName().endsWith(".zip")) {
-                ZipFile zipFile = new ZipFile(file.getPath());
-
-                if (zipFile.getEntry("model.bbmodel") != null) load = (byte) (load | 1);
-                else if (zipFile.getEntry("player_model.bbmodel") != null) load = (byte) (load | 2);
-                else if (zipFile.getEntry("script.lua") != null) load = (byte) (load | 4);
-            }
-            //directory load
-            else if (file.isDirectory()) {
-                if (Files.exists(file.toPath().resolve("model.bbmodel"))) load = (byte) (load | 1);
-                else if (Files.exists(file.toPath().resolve("player_model.bbmodel"))) load = (byte) (load | 2);
-                else if (Files.exists(file.toPath().resolve("script.lua"))) load = (byte) (load | 4);
-            }
-
-            //add to list if valid
-            if (load > 0) return true;
-        } catch (Exception e) {
-            FiguraMod.LOGGER.warn("Failed to load avatar " + file.getName());
-            e.printStackTrace();
-        }
-
-        return false;
+        return LocalAvatarIndex.hasAvatar(file);
     }
 
     public static void sortFolders(Map<String, LocalAvatar> toSort, Map<String, LocalAvatar> target) {
@@ -211,14 +189,15 @@ public class LocalAvatarManager {
         RESOURCE_FOLDER.children.clear();
 
         //find all moon files inside the avatar folder
-        Collection<Identifier> resources = manager.findResources("avatars", s -> s.endsWith(".moon"));
+        Collection<Identifier> resources = manager.findResources("avatars", s -> s.endsWith(".moon") || s.endsWith(FiguraAvatarContainer.EXTENSION));
 
         for (Identifier id : resources) {
             try {
                 //get name and its upper-folders
                 String[] split = id.getPath().split("/");
                 String name = split[split.length - 1];
-                name = name.substring(0, name.length() - 5);
+                boolean container = name.endsWith(FiguraAvatarContainer.EXTENSION);
+                name = name.substring(0, name.length() - (container ? FiguraAvatarContainer.EXTENSION.length() : 5));
 
                 Resource res = manager.getResource(id);
 
@@ -252,7 +231,8 @@ public class LocalAvatarManager {
                 }
 
                 //add avatar
-                ResourceAvatar resourceAvatar = new ResourceAvatar(name, NbtIo.readCompressed(res.getInputStream()));
+                NbtCompound nbt = container ? FiguraAvatarContainer.read(res.getInputStream().readAllBytes()).readAvatar() : NbtIo.readCompressed(res.getInputStream());
+                ResourceAvatar resourceAvatar = new ResourceAvatar(name, nbt);
                 folderAvatar.children.put(name, resourceAvatar);
 
                 FiguraMod.LOGGER.info("Loaded avatar: [" + res.getResourcePackName() + "] -> " + id.getPath().split("/", 2)[1]);
@@ -263,6 +243,9 @@ public class LocalAvatarManager {
         }
 
         updateResourceExpanded(RESOURCE_FOLDER);
+
+        //the resource folder is only added to the list on a scan
+        LocalAvatarIndex.markDirty();
     }
 
     public static void updateResourceExpanded(LocalAvatarFolder folder) {
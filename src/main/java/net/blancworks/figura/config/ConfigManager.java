@@ -6,6 +6,7 @@ import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
 import net.blancworks.figura.FiguraMod;
 import net.blancworks.figura.avatar.AvatarDataManager;
+import net.blancworks.figura.network.PingRecorder;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.option.KeyBinding;
 import net.minecraft.client.util.InputUtil;
@@ -75,6 +76,10 @@ public final class ConfigManager {
         },
         CUSTOM_PLAYER_HEADS(true),
         FIX_HANDS(true),
+        EVENT_CULL_DISTANCE(128, InputType.INT),
+        PARTICLE_BUDGET(1024, InputType.INT),
+        ANIMATION_LOD_DISTANCE(48, InputType.INT),
+        SOUND_VOICE_LIMIT(16, InputType.INT),
 
         ActionWheel,
 
@@ -112,7 +117,20 @@ public final class ConfigManager {
                     new TranslatableText(path + "3"),
                     new TranslatableText(path + "4")
             );
-        }};
+        }},
+        PERFORMANCE_OVERLAY(0, 11),
+        PERFORMANCE_EXPORT_BUTTON(GLFW.GLFW_KEY_UNKNOWN, FiguraMod.PERFORMANCE_EXPORT_BUTTON),
+        RECORD_PINGS(false) {
+            @Override
+            public void runOnChange() {
+                if ((boolean) this.value)
+                    PingRecorder.start();
+                else
+                    PingRecorder.stop();
+            }
+        },
+        PING_REPLAY_BUTTON(GLFW.GLFW_KEY_UNKNOWN, FiguraMod.PING_REPLAY_BUTTON),
+        BENCHMARK_BUTTON(GLFW.GLFW_KEY_UNKNOWN, FiguraMod.BENCHMARK_BUTTON);
 
         //config data
         public Object value;
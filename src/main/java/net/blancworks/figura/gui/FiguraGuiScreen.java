@@ -13,6 +13,7 @@ import net.blancworks.figura.gui.widgets.CustomTextFieldWidget;
 import net.blancworks.figura.gui.widgets.ModelFileListWidget;
 import net.blancworks.figura.gui.widgets.TexturedButtonWidget;
 import net.blancworks.figura.network.NewFiguraNetworkManager;
+import net.blancworks.figura.parsers.FiguraAvatarContainer;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.gui.screen.ConfirmChatLinkScreen;
 import net.minecraft.client.gui.screen.ConfirmScreen;
@@ -204,7 +205,7 @@ public class FiguraGuiScreen extends Screen {
                     String path = AvatarDataManager.localPlayerPath;
                     modelDir = Path.of(path);
 
-                    if (path.endsWith(".zip") || path.endsWith(".moon"))
+                    if (path.endsWith(".zip") || path.endsWith(".moon") || path.endsWith(FiguraAvatarContainer.EXTENSION))
                         modelDir = modelDir.getParent();
                 }
 
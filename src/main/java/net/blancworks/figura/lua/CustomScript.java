@@ -3,6 +3,7 @@ package net.blancworks.figura.lua;
 import com.google.common.base.Splitter;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
+import com.mojang.blaze3d.systems.RenderSystem;
 import net.blancworks.figura.FiguraMod;
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
@@ -19,7 +20,8 @@ import net.blancworks.figura.lua.api.nameplate.NamePlateCustomization;
 import net.blancworks.figura.lua.api.sound.FiguraSound;
 import net.blancworks.figura.lua.api.sound.FiguraSoundManager;
 import net.blancworks.figura.models.shaders.FiguraRenderLayer;
-import net.blancworks.figura.models.shaders.FiguraShader;
+import net.blancworks.figura.models.shaders.AvatarShader;
+import net.blancworks.figura.models.shaders.ShaderRegistry;
 import net.blancworks.figura.models.shaders.FiguraVertexConsumerProvider;
 import net.blancworks.figura.network.NewFiguraNetworkManager;
 import net.blancworks.figura.trust.TrustContainer;
@@ -71,6 +73,11 @@ public class CustomScript extends FiguraAsset {
     public int renderInstructionCount = 0;
     public int worldRenderInstructionCount = 0;
 
+    //Estimates the heap held by this script, checked against the memory trust.
+    public LuaMemoryTracker memoryTracker;
+    //How many ticks between each memory check
+    public static final int MEMORY_CHECK_INTERVAL = 20;
+
     public static int pingSent = 0;
     public static int pingReceived = 0;
 
@@ -84,6 +91,7 @@ public class CustomScript extends FiguraAsset {
 
     //Vanilla model part customizations made via this script
     public Map<String, VanillaModelPartCustomization> allCustomizations = new HashMap<>();
+    private volatile VanillaModelPartCustomization[] bodyPartCustomizations;
 
     //Nameplate customizations
     public Map<String, NamePlateCustomization> nameplateCustomizations = new HashMap<>();
@@ -121,6 +129,9 @@ public class CustomScript extends FiguraAsset {
 
     public boolean renderPlayerHead = true;
 
+    // If the world_render event and animations should still run when the avatar is far away or offscreen
+    public boolean ignoreCulling = false;
+
     public boolean hasPlayer = false;
 
     public DamageSource lastDamageSource;
@@ -139,7 +150,9 @@ public class CustomScript extends FiguraAsset {
 
     //Custom Rendering
     public static final int maxShaders = 16;
-    public Map<String, FiguraShader> shaders = new HashMap<>();
+    //shaders are shared between avatars, only touched on the render thread
+    public Map<String, AvatarShader> shaders = new HashMap<>();
+    public boolean shadersReleased = false;
     public FiguraVertexConsumerProvider customVCP = null;
 
     //----PINGS!----
@@ -228,6 +241,10 @@ public class CustomScript extends FiguraAsset {
             }
         });
 
+        //everything set up so far belongs to the environment, not to the script
+        memoryTracker = new LuaMemoryTracker(scriptGlobals);
+        memoryTracker.captureBaseline();
+
         try {
             //Load the script source, name defaults to "main" for scripts for other players.
             LuaValue chunk = FiguraLuaManager.modGlobals.load(source, scriptName, scriptGlobals);
@@ -260,6 +277,7 @@ public class CustomScript extends FiguraAsset {
             //Queue up a new task.
             currTask = CompletableFuture.runAsync(
                     () -> {
+                        long start = System.nanoTime();
                         initInstructionCount = 0;
                         setInstructionLimitPermission(TrustContainer.Trust.INIT_INST, 0);
                         try {
@@ -269,6 +287,12 @@ public class CustomScript extends FiguraAsset {
                             handleError(error);
                         }
                         initInstructionCount += scriptGlobals.running.state.bytecodes;
+                        checkMemory();
+
+                        if (data != null) {
+                            data.telemetry.recordLoadStage("script_init", start);
+                            data.telemetry.eventInstructions.put("init", initInstructionCount);
+                        }
 
                         isDone = true;
                         currTask = null;
@@ -396,7 +420,9 @@ public class CustomScript extends FiguraAsset {
         //Foreach event
         for (Map.Entry<String, Function<String, LuaEvent>> entry : FiguraLuaManager.registeredEvents.entrySet()) {
             //Add a new event created from the name here
-            allEvents.put(entry.getKey(), entry.getValue().apply(entry.getKey()));
+            LuaEvent event = entry.getValue().apply(entry.getKey());
+            event.owner = this;
+            allEvents.put(entry.getKey(), event);
         }
 
         tickLuaEvent = allEvents.get("tick");
@@ -533,6 +559,28 @@ public class CustomScript extends FiguraAsset {
         }));
     }
 
+    //--Memory Limit--
+
+    //Limit in bytes from the memory permission, or -1 if unlimited
+    public long getMemoryLimit() {
+        int trust = avatarData.getTrustContainer().getTrust(TrustContainer.Trust.MEMORY);
+        return trust >= TrustContainer.Trust.MEMORY.max ? -1 : trust * 1024L;
+    }
+
+    //Measures the memory held by the script and stops it if it went over the limit
+    //Must run on the script task chain
+    public void checkMemory() {
+        if (memoryTracker == null || scriptError || avatarData == null)
+            return;
+
+        long limit = getMemoryLimit();
+        long size = memoryTracker.measure(limit == -1 ? Long.MAX_VALUE : limit);
+        avatarData.telemetry.scriptMemory = size;
+
+        if (limit != -1 && size > limit)
+            handleError(new LuaError("Script overran memory limit (" + (limit / 1024) + " KiB)"));
+    }
+
     //--Events--
 
     //Called whenever the global tick event happens
@@ -549,9 +597,17 @@ public class CustomScript extends FiguraAsset {
             if (lastTickFunction != null && !lastTickFunction.isDone())
                 return;
             lastTickFunction = queueTask(this::onTick);
+        } else if (isDone && !scriptError && FiguraMod.ticksElapsed % MEMORY_CHECK_INTERVAL == 0) {
+            //scripts without a tick event can still grow from other events
+            queueTask(this::checkMemory);
         }
     }
 
+    //if this script can change the avatar every tick or frame
+    public boolean hasFrameEvents() {
+        return tickLuaEvent != null || renderLuaEvent != null;
+    }
+
     //Called whenever the game renders a new frame with this avatar in view
     public void render(float deltaTime) {
         //Don't render if the script is doing something else still
@@ -597,6 +653,10 @@ public class CustomScript extends FiguraAsset {
             error.printStackTrace();
         }
         tickInstructionCount += scriptGlobals.running.state.bytecodes;
+        avatarData.telemetry.tickInstructions.push(tickInstructionCount);
+
+        if (FiguraMod.ticksElapsed % MEMORY_CHECK_INTERVAL == 0)
+            checkMemory();
     }
 
     public void onRender(float deltaTime) {
@@ -608,6 +668,7 @@ public class CustomScript extends FiguraAsset {
             handleError(error);
         }
         renderInstructionCount += scriptGlobals.running.state.bytecodes;
+        avatarData.telemetry.renderInstructions.push(renderInstructionCount);
     }
 
     public void handleError(Exception error) {
@@ -615,6 +676,8 @@ public class CustomScript extends FiguraAsset {
 
         tickLuaEvent = null;
         renderLuaEvent = null;
+        //an errored script never runs again, so it doesn't need to hear about any event
+        LuaEventRegistry.removeAll(this);
         if (error instanceof LuaError err)
             logLuaError(err);
         else
@@ -894,10 +957,23 @@ public class CustomScript extends FiguraAsset {
         if (currCustomization == null) {
             currCustomization = new VanillaModelPartCustomization();
             allCustomizations.put(accessor, currCustomization);
+            bodyPartCustomizations = null;
         }
         return currCustomization;
     }
 
+    //customizations of VanillaModelAPI.BODY_PARTS by index, so renders don't look them up by name
+    public VanillaModelPartCustomization[] getBodyPartCustomizations() {
+        VanillaModelPartCustomization[] customizations = bodyPartCustomizations;
+        if (customizations == null) {
+            customizations = new VanillaModelPartCustomization[VanillaModelAPI.BODY_PARTS.length];
+            for (int i = 0; i < customizations.length; i++)
+                customizations[i] = allCustomizations.get(VanillaModelAPI.BODY_PARTS[i]);
+            bodyPartCustomizations = customizations;
+        }
+        return customizations;
+    }
+
     public VanillaModelPartCustomization getPartCustomization(String accessor) {
         return allCustomizations.get(accessor);
     }
@@ -962,15 +1038,23 @@ public class CustomScript extends FiguraAsset {
     }
 
     public LuaPing handlePing(short id, LuaValue args, Integer size) {
+        LuaPing p = resolvePing(id, args, size);
+        if (p != null)
+            incomingPingQueue.add(p);
+        return p;
+    }
+
+    //finds the function of a ping id, without queueing it
+    public LuaPing resolvePing(short id, LuaValue args, Integer size) {
         try {
             String functionName = oldFunctionIDMap.get(id);
             LuaTable function = functionMap.get(id);
 
             if (function != null) {
-                return addPing(function.get("value"), args, id, function.get("key").tojstring(), size);
+                return new LuaPing(id, function.get("value"), args, function.get("key").tojstring(), size);
             } else if (functionName != null) {
                 LuaValue func = scriptGlobals.get(functionName);
-                return addPing(func, args, id, functionName, size);
+                return new LuaPing(id, func, args, functionName, size);
             }
         } catch (Exception error) {
             if (error instanceof LuaError err)
@@ -1000,6 +1084,16 @@ public class CustomScript extends FiguraAsset {
         //customSounds.clear();
     }
 
+    //gives the shared shaders back to the registry, any shader finishing its compile afterwards is released right away
+    public void clearShaders() {
+        RenderSystem.recordRenderCall(() -> {
+            shadersReleased = true;
+            for (AvatarShader shader : shaders.values())
+                ShaderRegistry.release(shader.key);
+            shaders.clear();
+        });
+    }
+
     public FiguraRenderLayer getCustomLayer(LuaValue arg) {
         if (!arg.isnil() && !RenderLayerAPI.areIrisShadersEnabled()) {
             if (customVCP != null) {
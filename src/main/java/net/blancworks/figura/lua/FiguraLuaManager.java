@@ -27,9 +27,11 @@ import net.minecraft.util.Identifier;
 import org.luaj.vm2.Globals;
 import org.luaj.vm2.LoadState;
 import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
 import org.luaj.vm2.compiler.LuaC;
 import org.luaj.vm2.lib.PackageLib;
 import org.luaj.vm2.lib.StringLib;
+import org.luaj.vm2.lib.TwoArgFunction;
 import org.luaj.vm2.lib.jse.JseBaseLib;
 import org.luaj.vm2.lib.jse.JseMathLib;
 
@@ -103,15 +105,43 @@ public class FiguraLuaManager {
         registerEvent("onDamage");
     }
 
+    //api tables are only built the first time the script reads them, as most scripts only use a few of them
     public static void setupScriptAPI(CustomScript script) {
+        LuaValue metatable = script.scriptGlobals.getmetatable();
+        metatable.set("__index", new TwoArgFunction() {
+            @Override
+            public LuaValue call(LuaValue table, LuaValue key) {
+                if (!key.isstring())
+                    return NIL;
+
+                LuaTable api = getScriptAPI(script, key.tojstring());
+                if (api == null)
+                    return NIL;
+
+                //the api is part of the environment, not memory used by the script
+                if (script.memoryTracker != null)
+                    script.memoryTracker.addToBaseline(api);
+
+                table.rawset(key, api);
+                return api;
+            }
+        });
+    }
+
+    public static LuaTable getScriptAPI(CustomScript script, String name) {
         for (Map.Entry<Identifier, Function<CustomScript, ? extends LuaTable>> entry : apiSuppliers.entrySet()) {
+            if (!entry.getKey().getPath().equals(name))
+                continue;
+
             try {
-                script.scriptGlobals.set(entry.getKey().getPath(), entry.getValue().apply(script));
+                return entry.getValue().apply(script);
             } catch (Exception e) {
                 System.out.println("Failed to initialize script global " + entry.getKey().toString());
                 e.printStackTrace();
             }
         }
+
+        return null;
     }
 
     public static void registerEvent(String name) {
@@ -0,0 +1,147 @@
+package net.blancworks.figura.lua;
+
+import net.blancworks.figura.utils.MathUtils;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.Camera;
+import net.minecraft.client.util.Window;
+import net.minecraft.client.world.ClientWorld;
+import net.minecraft.entity.Entity;
+import net.minecraft.entity.EntityPose;
+import net.minecraft.entity.player.PlayerEntity;
+import net.minecraft.item.ItemStack;
+import net.minecraft.util.math.MathHelper;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.util.math.Vec3f;
+
+import java.util.*;
+
+/**
+ * Read only copy of the game state scripts usually query, captured once per tick on the client thread.
+ * Script tasks run on worker threads, so they read from here instead of the live client and world.
+ */
+public class GameStateSnapshot {
+    //entities further than this from the camera are not captured, players are always captured
+    public static final double ENTITY_RADIUS = 64d;
+
+    private static volatile GameStateSnapshot current;
+
+    //world
+    public final boolean hasWorld;
+    public final long time;
+    public final long timeOfDay;
+    public final int moonPhase;
+    public final long lunarTime;
+    public final float prevRainGradient;
+    public final float rainGradient;
+    public final boolean thundering;
+    public final List<PlayerEntity> players;
+    public final Map<Entity, EntityState> entities;
+
+    //camera
+    public final Vec3d cameraPos;
+    public final Vec3f cameraRot;
+    public final boolean firstPerson;
+    public final boolean frontView;
+
+    //client
+    public final int windowWidth;
+    public final int windowHeight;
+    public final int scaledWidth;
+    public final int scaledHeight;
+    public final double scaleFactor;
+    public final int guiScale;
+    public final double fov;
+
+    public record EntityState(Vec3d pos, Vec3d prevPos, float pitch, float yaw, float prevPitch, float prevYaw, Vec3d lookDir, EntityPose pose, boolean onGround, ItemStack mainHand, ItemStack offHand) {
+        public Vec3d getLerpedPos(float delta) {
+            return new Vec3d(MathHelper.lerp(delta, prevPos.x, pos.x), MathHelper.lerp(delta, prevPos.y, pos.y), MathHelper.lerp(delta, prevPos.z, pos.z));
+        }
+    }
+
+    private GameStateSnapshot(MinecraftClient client) {
+        ClientWorld world = client.world;
+        Camera camera = client.gameRenderer.getCamera();
+        Window window = client.getWindow();
+
+        this.hasWorld = world != null;
+        if (world != null) {
+            this.time = world.getTime();
+            this.timeOfDay = world.getTimeOfDay();
+            this.moonPhase = world.getMoonPhase();
+            this.lunarTime = world.getLunarTime();
+            this.prevRainGradient = world.getRainGradient(0f);
+            this.rainGradient = world.getRainGradient(1f);
+            this.thundering = world.isThundering();
+            this.players = List.copyOf(world.getPlayers());
+
+            Map<Entity, EntityState> entities = new HashMap<>();
+            Vec3d center = camera.getPos();
+            double radius = ENTITY_RADIUS * ENTITY_RADIUS;
+            for (Entity entity : world.getEntities()) {
+                if (entity instanceof PlayerEntity || entity.squaredDistanceTo(center) <= radius)
+                    entities.put(entity, capture(entity));
+            }
+            this.entities = Collections.unmodifiableMap(entities);
+        } else {
+            this.time = 0;
+            this.timeOfDay = 0;
+            this.moonPhase = 0;
+            this.lunarTime = 0;
+            this.prevRainGradient = 0f;
+            this.rainGradient = 0f;
+            this.thundering = false;
+            this.players = List.of();
+            this.entities = Map.of();
+        }
+
+        this.cameraPos = camera.getPos();
+        this.cameraRot = MathUtils.quaternionToEulerXYZ(camera.getRotation());
+        this.firstPerson = client.options.getPerspective().isFirstPerson();
+        this.frontView = client.options.getPerspective().isFrontView();
+
+        this.windowWidth = window.getWidth();
+        this.windowHeight = window.getHeight();
+        this.scaledWidth = window.getScaledWidth();
+        this.scaledHeight = window.getScaledHeight();
+        this.scaleFactor = window.getScaleFactor();
+        this.guiScale = client.options.guiScale;
+        this.fov = client.options.fov;
+    }
+
+    private static EntityState capture(Entity entity) {
+        //only players have their held items copied, as that's what scripts read
+        ItemStack mainHand = null, offHand = null;
+        if (entity instanceof PlayerEntity player) {
+            mainHand = player.getMainHandStack().copy();
+            offHand = player.getOffHandStack().copy();
+        }
+
+        return new EntityState(
+                entity.getPos(), new Vec3d(entity.prevX, entity.prevY, entity.prevZ),
+                entity.getPitch(), entity.getYaw(), entity.prevPitch, entity.prevYaw,
+                entity.getRotationVector(), entity.getPose(), entity.isOnGround(),
+                mainHand, offHand
+        );
+    }
+
+    //called on the client thread, before the scripts tick
+    public static void capture(MinecraftClient client) {
+        current = new GameStateSnapshot(client);
+    }
+
+    /**
+     * Gets the snapshot when called outside the client thread, or null when the live game state can be read instead.
+     */
+    public static GameStateSnapshot get() {
+        GameStateSnapshot snapshot = current;
+        if (snapshot == null || MinecraftClient.getInstance().isOnThread())
+            return null;
+
+        return snapshot;
+    }
+
+    public static EntityState getEntity(Entity entity) {
+        GameStateSnapshot snapshot = get();
+        return snapshot == null || entity == null ? null : snapshot.entities.get(entity);
+    }
+}
@@ -0,0 +1,113 @@
+package net.blancworks.figura.lua;
+
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+
+/**
+ * A table that only fills itself when a script first reads or writes it.
+ * Entity, item and block tables are handed out in bulk (eg world.getPlayers()), but most of them are never used.
+ * Tables cached for the tick are never given to scripts, each script gets its own copy of them instead (see {@link #copyOf}).
+ */
+public abstract class LazyLuaTable extends LuaTable {
+    private volatile boolean filled = false;
+    private boolean filling = false;
+
+    //sets the table contents, called once on first access
+    protected abstract void fill();
+
+    /**
+     * A table of its own, filled with the entries of the given one when first used.
+     * The given table must never be written once shared, so it can be read by all scripts at once.
+     */
+    public static LazyLuaTable copyOf(LuaTable template) {
+        return new Copy(template);
+    }
+
+    public static class Copy extends LazyLuaTable {
+        private final LuaTable template;
+
+        public Copy(LuaTable template) {
+            this.template = template;
+        }
+
+        @Override
+        protected void fill() {
+            LuaValue key = LuaValue.NIL;
+            while (true) {
+                Varargs entry = template.next(key);
+                if ((key = entry.arg1()).isnil())
+                    break;
+                rawset(key, entry.arg(2));
+            }
+        }
+    }
+
+    protected void ensureFilled() {
+        if (filled)
+            return;
+
+        synchronized (this) {
+            //filling also reads and writes the table
+            if (filled || filling)
+                return;
+
+            //a fill that throws is tried again on the next access
+            filling = true;
+            try {
+                fill();
+                filled = true;
+            } finally {
+                filling = false;
+            }
+        }
+    }
+
+    @Override
+    public LuaValue rawget(int key) {
+        ensureFilled();
+        return super.rawget(key);
+    }
+
+    @Override
+    public LuaValue rawget(LuaValue key) {
+        ensureFilled();
+        return super.rawget(key);
+    }
+
+    @Override
+    public void rawset(int key, LuaValue value) {
+        ensureFilled();
+        super.rawset(key, value);
+    }
+
+    @Override
+    public void rawset(LuaValue key, LuaValue value) {
+        ensureFilled();
+        super.rawset(key, value);
+    }
+
+    @Override
+    public Varargs next(LuaValue key) {
+        ensureFilled();
+        return super.next(key);
+    }
+
+    @Override
+    public int length() {
+        ensureFilled();
+        return super.length();
+    }
+
+    @Override
+    public int rawlen() {
+        ensureFilled();
+        return super.rawlen();
+    }
+
+    @Override
+    public LuaValue[] keys() {
+        ensureFilled();
+        return super.keys();
+    }
+}
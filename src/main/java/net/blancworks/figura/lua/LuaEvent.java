@@ -1,18 +1,25 @@
 package net.blancworks.figura.lua;
 
+import org.luaj.vm2.LuaError;
 import org.luaj.vm2.LuaFunction;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 import org.luaj.vm2.lib.OneArgFunction;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 public class LuaEvent extends LuaTable {
-
+    private static final LuaFunction[] EMPTY = new LuaFunction[0];
 
     public String defaultFunctionName;
-    private final List<LuaFunction> subscribedFunctions = new ArrayList<>();
+    public CustomScript owner;
+
+    //subscribers by identity, plus the array used to call them, only rebuilt when subscribers change
+    private final Set<LuaFunction> subscriberSet = Collections.newSetFromMap(new IdentityHashMap<>());
+    private volatile LuaFunction[] subscribers = EMPTY;
 
     public LuaEvent(String defaultFunctionName) {
         this.defaultFunctionName = defaultFunctionName;
@@ -34,6 +41,10 @@ public class LuaEvent extends LuaTable {
         });
     }
 
+    public boolean hasSubscribers() {
+        return subscribers.length > 0;
+    }
+
     //Not allowed to get.
     @Override
     public LuaValue get(LuaValue key) {
@@ -42,44 +53,88 @@ public class LuaEvent extends LuaTable {
 
     @Override
     public LuaValue call() {
-        for (LuaFunction function : subscribedFunctions) {
-            function.call();
-        }
+        dispatch(0, NIL, NIL, NIL);
         return NIL;
     }
 
     @Override
     public LuaValue call(LuaValue arg) {
-        for (LuaFunction function : subscribedFunctions) {
-            function.call(arg);
-        }
+        dispatch(1, arg, NIL, NIL);
         return NIL;
     }
 
     @Override
     public LuaValue call(LuaValue arg1, LuaValue arg2) {
-        for (LuaFunction function : subscribedFunctions) {
-            function.call(arg1, arg2);
-        }
+        dispatch(2, arg1, arg2, NIL);
         return NIL;
     }
 
     @Override
     public LuaValue call(LuaValue arg1, LuaValue arg2, LuaValue arg3) {
-        for (LuaFunction function : subscribedFunctions) {
-            function.call(arg1, arg2, arg3);
-        }
+        dispatch(3, arg1, arg2, arg3);
         return NIL;
     }
 
+    private void dispatch(int argCount, LuaValue arg1, LuaValue arg2, LuaValue arg3) {
+        LuaFunction[] functions = subscribers;
+        int start = getBytecodes();
+
+        for (LuaFunction function : functions) {
+            try {
+                switch (argCount) {
+                    case 0 -> function.call();
+                    case 1 -> function.call(arg1);
+                    case 2 -> function.call(arg1, arg2);
+                    default -> function.call(arg1, arg2, arg3);
+                }
+            } catch (LuaError error) {
+                //going over the instruction limit flags the script, which still stops everything
+                if (owner != null && owner.scriptError)
+                    throw error;
+
+                //only the failing function is dropped, the script and the other subscribers keep running
+                unsubscribe(function);
+                if (owner != null)
+                    owner.logLuaError(error);
+                else
+                    error.printStackTrace();
+            }
+        }
+
+        if (functions.length > 0 && owner != null && owner.avatarData != null)
+            owner.avatarData.telemetry.eventInstructions.put(defaultFunctionName, getBytecodes() - start);
+    }
+
+    private int getBytecodes() {
+        return owner == null ? 0 : owner.scriptGlobals.running.state.bytecodes;
+    }
+
     //Subscribes a function to be called with this event
-    public void subscribe(LuaFunction function) {
-        if (!subscribedFunctions.contains(function))
-            subscribedFunctions.add(function);
+    public synchronized void subscribe(LuaFunction function) {
+        if (subscriberSet.add(function)) {
+            LuaFunction[] functions = Arrays.copyOf(subscribers, subscribers.length + 1);
+            functions[functions.length - 1] = function;
+            subscribers = functions;
+        }
+
+        if (owner != null)
+            LuaEventRegistry.add(defaultFunctionName, owner);
     }
 
     //Unsubscribes a function from this event
-    public void unsubscribe(LuaFunction function) {
-        subscribedFunctions.remove(function);
+    public synchronized void unsubscribe(LuaFunction function) {
+        if (!subscriberSet.remove(function))
+            return;
+
+        LuaFunction[] functions = new LuaFunction[subscribers.length - 1];
+        int i = 0;
+        for (LuaFunction f : subscribers) {
+            if (f != function)
+                functions[i++] = f;
+        }
+        subscribers = functions;
+
+        if (owner != null && functions.length == 0)
+            LuaEventRegistry.remove(defaultFunctionName, owner);
     }
 }
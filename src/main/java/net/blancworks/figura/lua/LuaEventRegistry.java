@@ -0,0 +1,35 @@
+package net.blancworks.figura.lua;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps track of which scripts have functions subscribed to which events,
+ * so events are only dispatched to the scripts that actually use them.
+ */
+public class LuaEventRegistry {
+    private static final Map<String, Set<CustomScript>> SUBSCRIBERS = new ConcurrentHashMap<>();
+
+    public static void add(String event, CustomScript script) {
+        SUBSCRIBERS.computeIfAbsent(event, key -> ConcurrentHashMap.newKeySet()).add(script);
+    }
+
+    public static void remove(String event, CustomScript script) {
+        Set<CustomScript> scripts = SUBSCRIBERS.get(event);
+        if (scripts != null)
+            scripts.remove(script);
+    }
+
+    public static void removeAll(CustomScript script) {
+        for (Set<CustomScript> scripts : SUBSCRIBERS.values())
+            scripts.remove(script);
+    }
+
+    //the returned set is live, removing from it while iterating is allowed
+    public static Set<CustomScript> getSubscribers(String event) {
+        Set<CustomScript> scripts = SUBSCRIBERS.get(event);
+        return scripts == null ? Collections.emptySet() : scripts;
+    }
+}
@@ -0,0 +1,142 @@
+package net.blancworks.figura.lua;
+
+import net.blancworks.figura.lua.api.math.LuaVector;
+import org.luaj.vm2.*;
+
+import java.util.*;
+
+/**
+ * Accounts for the heap a script holds on to, by walking everything reachable from its globals.
+ * LuaJ has no allocation hooks, so instead of counting each allocation we estimate the retained size of the script,
+ * which is what actually pressures the GC when a script keeps growing its tables.
+ * Values that existed before the script ran (the APIs and libraries) make up the baseline and are not counted.
+ */
+public class LuaMemoryTracker {
+    //rough sizes of the LuaJ objects, in bytes, assuming compressed oops
+    public static final int TABLE_SIZE = 56;
+    public static final int ARRAY_SLOT_SIZE = 4;
+    public static final int HASH_SLOT_SIZE = 36;
+    public static final int STRING_SIZE = 40;
+    public static final int NUMBER_SIZE = 16;
+    public static final int CLOSURE_SIZE = 32;
+    public static final int UPVALUE_SIZE = 24;
+    public static final int PROTOTYPE_SIZE = 96;
+    public static final int FUNCTION_SIZE = 16;
+    public static final int USERDATA_SIZE = 32;
+    public static final int VECTOR_SIZE = 64 + 9 * 48;
+    public static final int THREAD_SIZE = 256;
+
+    private final Globals globals;
+    private final Set<Object> baseline = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    //the size found by the last measure, in bytes
+    public volatile long lastMeasured = 0;
+
+    public LuaMemoryTracker(Globals globals) {
+        this.globals = globals;
+    }
+
+    //remembers everything reachable right now as part of the environment, must be called before the script runs
+    public void captureBaseline() {
+        baseline.clear();
+        walk(globals, Long.MAX_VALUE, baseline);
+    }
+
+    //adds a value created for the script outside of its own code, like an API table built on first use, to the baseline
+    public void addToBaseline(LuaValue value) {
+        walk(value, Long.MAX_VALUE, baseline);
+    }
+
+    /**
+     * Measures the memory held by the script.
+     * Must be called from the script's own task chain, so nothing modifies the tables while walking them.
+     *
+     * @param limit the walk stops as soon as this many bytes are found
+     * @return the estimated size in bytes, or a value above the limit if the walk stopped early
+     */
+    public long measure(long limit) {
+        long size = walk(globals, limit, null);
+        lastMeasured = size;
+        return size;
+    }
+
+    private long walk(LuaValue root, long limit, Set<Object> capture) {
+        Set<Object> visited = capture != null ? capture : Collections.newSetFromMap(new IdentityHashMap<>());
+        ArrayDeque<Object> queue = new ArrayDeque<>();
+        queue.add(root);
+
+        long size = 0;
+        while (!queue.isEmpty() && size <= limit) {
+            Object obj = queue.poll();
+            if (!visited.add(obj))
+                continue;
+
+            //a late baseline addition must not swallow the globals, which would hide everything the script stored
+            if (capture != null && root != globals && obj == globals) {
+                visited.remove(obj);
+                continue;
+            }
+
+            boolean isBaseline = capture == null && baseline.contains(obj);
+
+            if (obj instanceof Prototype proto) {
+                if (!isBaseline)
+                    size += PROTOTYPE_SIZE + proto.code.length * 4L + (proto.lineinfo == null ? 0 : proto.lineinfo.length * 4L);
+                Collections.addAll(queue, proto.k);
+                Collections.addAll(queue, proto.p);
+            } else if (obj instanceof LuaTable table) {
+                //API tables can't be written to by the script, so there is nothing new inside them
+                if (isBaseline && table != globals && table.getClass() != LuaTable.class)
+                    continue;
+
+                if (!isBaseline)
+                    size += TABLE_SIZE + (long) table.getArrayLength() * ARRAY_SLOT_SIZE + (long) table.getHashLength() * HASH_SLOT_SIZE;
+
+                LuaValue key = LuaValue.NIL;
+                while (true) {
+                    Varargs next = table.next(key);
+                    if ((key = next.arg1()).isnil())
+                        break;
+
+                    enqueue(queue, key);
+                    enqueue(queue, next.arg(2));
+                }
+
+                LuaValue meta = table.getmetatable();
+                if (meta != null)
+                    queue.add(meta);
+            } else if (isBaseline) {
+                //nothing else can hold values added by the script
+            } else if (obj instanceof LuaString string) {
+                size += STRING_SIZE + string.m_length;
+            } else if (obj instanceof LuaNumber) {
+                size += NUMBER_SIZE;
+            } else if (obj instanceof LuaClosure closure) {
+                size += CLOSURE_SIZE + (long) closure.upValues.length * UPVALUE_SIZE;
+                queue.add(closure.p);
+                for (UpValue upValue : closure.upValues) {
+                    if (upValue != null)
+                        enqueue(queue, upValue.getValue());
+                }
+            } else if (obj instanceof LuaVector) {
+                size += VECTOR_SIZE;
+            } else if (obj instanceof LuaUserdata userdata) {
+                size += USERDATA_SIZE;
+                if (userdata.m_metatable != null)
+                    queue.add(userdata.m_metatable);
+            } else if (obj instanceof LuaThread) {
+                size += THREAD_SIZE;
+            } else if (obj instanceof LuaFunction) {
+                size += FUNCTION_SIZE;
+            }
+        }
+
+        return size;
+    }
+
+    private static void enqueue(ArrayDeque<Object> queue, LuaValue value) {
+        //nil and booleans are shared constants
+        if (value != null && !value.isnil() && !value.isboolean())
+            queue.add(value);
+    }
+}
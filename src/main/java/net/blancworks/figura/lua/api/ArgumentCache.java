@@ -0,0 +1,178 @@
+package net.blancworks.figura.lua.api;
+
+import com.mojang.brigadier.StringReader;
+import com.mojang.brigadier.exceptions.CommandSyntaxException;
+import net.minecraft.block.BlockState;
+import net.minecraft.block.Material;
+import net.minecraft.command.argument.BlockStateArgumentType;
+import net.minecraft.command.argument.ItemStackArgumentType;
+import net.minecraft.item.Item;
+import net.minecraft.item.ItemStack;
+import net.minecraft.nbt.NbtHelper;
+import net.minecraft.util.registry.Registry;
+import net.minecraft.util.registry.RegistryKey;
+import net.minecraft.world.World;
+import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
+import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.*;
+
+/**
+ * Interns the block states and item stacks parsed from script strings, shared between all scripts.
+ * Scripts pass the same literals every frame, so each distinct string is only parsed once, failures included.
+ * Also keeps the data derived from them which doesn't change during a session (nbt view, material name and tags).
+ */
+public class ArgumentCache {
+    //least recently used entries are dropped past this size, so scripts making up strings can't grow it forever
+    public static final int MAX_ENTRIES = 1024;
+
+    private record Parsed<T>(T value, String error) {}
+
+    public record BlockStateInfo(LuaTable nbt, String material, List<String> tags) {}
+
+    private static final Map<String, Parsed<BlockState>> BLOCK_STATES = createLruMap();
+    private static final Map<String, Parsed<ItemStack>> ITEM_STACKS = createLruMap();
+    private static final Map<BlockState, BlockStateInfo> BLOCK_STATE_INFO = createLruMap();
+    private static final Map<Item, List<String>> ITEM_TAGS = createLruMap();
+
+    private static final Map<Material, String> MATERIAL_NAMES = new IdentityHashMap<>();
+
+    //tags come from the server, so they are dropped when the world changes or the server sends new ones
+    private static World tagsWorld;
+
+    static {
+        for (Field field : Material.class.getFields()) {
+            if (field.getType() != Material.class || !Modifier.isStatic(field.getModifiers()))
+                continue;
+
+            try {
+                MATERIAL_NAMES.putIfAbsent((Material) field.get(null), field.getName());
+            } catch (Exception ignored) {}
+        }
+    }
+
+    static <K, V> Map<K, V> createLruMap() {
+        return Collections.synchronizedMap(new LinkedHashMap<>(64, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        });
+    }
+
+    // -- parsing -- //
+
+    public static BlockState parseBlockState(String string) {
+        Parsed<BlockState> parsed = BLOCK_STATES.get(string);
+
+        //parse outside the lock, two threads parsing the same string at once just do the work twice
+        if (parsed == null) {
+            try {
+                parsed = new Parsed<>(BlockStateArgumentType.blockState().parse(new StringReader(string)).getBlockState(), null);
+            } catch (CommandSyntaxException e) {
+                parsed = new Parsed<>(null, e.getMessage());
+            }
+            BLOCK_STATES.put(string, parsed);
+        }
+
+        if (parsed.error != null)
+            throw new LuaError("Could not create block state\n" + parsed.error);
+
+        return parsed.value;
+    }
+
+    //item stacks are mutable, so every call gets its own copy of the parsed template
+    public static ItemStack parseItemStack(String string) {
+        Parsed<ItemStack> parsed = ITEM_STACKS.get(string);
+
+        if (parsed == null) {
+            try {
+                parsed = new Parsed<>(ItemStackArgumentType.itemStack().parse(new StringReader(string)).createStack(1, false), null);
+            } catch (CommandSyntaxException e) {
+                parsed = new Parsed<>(null, e.getMessage());
+            }
+            ITEM_STACKS.put(string, parsed);
+        }
+
+        if (parsed.error != null)
+            throw new LuaError("Could not create item stack\n" + parsed.error);
+
+        return parsed.value.copy();
+    }
+
+    // -- derived data -- //
+
+    public static BlockStateInfo getBlockStateInfo(BlockState state, World world) {
+        checkWorld(world);
+
+        BlockStateInfo info = BLOCK_STATE_INFO.get(state);
+        if (info == null) {
+            LuaTable nbt = (LuaTable) NBTAPI.fromTag(NbtHelper.fromBlockState(state));
+            info = new BlockStateInfo(nbt, getMaterialName(state.getMaterial()), getTags(world, Registry.BLOCK_KEY, state.getBlock()));
+            BLOCK_STATE_INFO.put(state, info);
+        }
+
+        return info;
+    }
+
+    public static String getMaterialName(Material material) {
+        return MATERIAL_NAMES.get(material);
+    }
+
+    public static List<String> getItemTags(Item item, World world) {
+        checkWorld(world);
+
+        List<String> tags = ITEM_TAGS.get(item);
+        if (tags == null) {
+            tags = getTags(world, Registry.ITEM_KEY, item);
+            ITEM_TAGS.put(item, tags);
+        }
+
+        return tags;
+    }
+
+    private static <T> List<String> getTags(World world, RegistryKey<? extends Registry<T>> registryKey, T value) {
+        if (world == null)
+            return List.of();
+
+        List<String> tags = new ArrayList<>();
+        Registry<T> registry = world.getRegistryManager().get(registryKey);
+        registry.getKey(value).ifPresent(key -> registry.entryOf(key).streamTags().forEach(tag -> tags.add(tag.id().toString())));
+        return List.copyOf(tags);
+    }
+
+    private static synchronized void checkWorld(World world) {
+        if (world == tagsWorld)
+            return;
+
+        tagsWorld = world;
+        clearTags();
+    }
+
+    //called when the server syncs its tags, like after a datapack reload
+    public static synchronized void clearTags() {
+        BLOCK_STATE_INFO.clear();
+        ITEM_TAGS.clear();
+    }
+
+    //a fresh copy of a cached table, so scripts never share or modify the cached one
+    public static LuaTable copyTable(LuaTable table) {
+        LuaTable copy = new LuaTable();
+
+        LuaValue key = LuaValue.NIL;
+        while (true) {
+            Varargs next = table.next(key);
+            if ((key = next.arg1()).isnil())
+                break;
+
+            LuaValue value = next.arg(2);
+            copy.rawset(key, value instanceof LuaTable t ? copyTable(t) : value);
+        }
+
+        return copy;
+    }
+}
@@ -19,6 +19,22 @@ import org.luaj.vm2.lib.ZeroArgFunction;
 import java.util.Optional;
 
 public class BiomeAPI {
+    //shared by the biome table of every script
+    private static final TwoArgFunction GET_BIOME = new TwoArgFunction() {
+        @Override
+        public LuaValue call(LuaValue arg1, LuaValue arg2) {
+            World world = MinecraftClient.getInstance().world;
+            if (world == null) return NIL;
+
+            BlockPos pos = LuaVector.checkOrNew(arg2).asBlockPos();
+            Biome biome = world.getRegistryManager().get(Registry.BIOME_KEY).get(new Identifier(arg1.checkjstring()));
+
+            if (biome == null)
+                throw new LuaError("Biome not found");
+
+            return getTable(world, pos, biome);
+        }
+    };
 
     public static Identifier getID() {
         return new Identifier("default", "biome");
@@ -26,21 +42,7 @@ public class BiomeAPI {
 
     public static LuaTable getForScript(CustomScript script) {
         return new LuaTable() {{
-            set("getBiome", new TwoArgFunction() {
-                @Override
-                public LuaValue call(LuaValue arg1, LuaValue arg2) {
-                    World world = MinecraftClient.getInstance().world;
-                    if (world == null) return NIL;
-
-                    BlockPos pos = LuaVector.checkOrNew(arg2).asBlockPos();
-                    Biome biome = world.getRegistryManager().get(Registry.BIOME_KEY).get(new Identifier(arg1.checkjstring()));
-
-                    if (biome == null)
-                        throw new LuaError("Biome not found");
-
-                    return getTable(world, pos, biome);
-                }
-            });
+            set("getBiome", GET_BIOME);
         }};
     }
 
@@ -3,6 +3,7 @@ package net.blancworks.figura.lua.api;
 import net.blancworks.figura.access.InGameHudAccess;
 import net.blancworks.figura.avatar.AvatarDataManager;
 import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.lua.GameStateSnapshot;
 import net.blancworks.figura.lua.api.math.LuaVector;
 import net.blancworks.figura.utils.TextUtils;
 import net.fabricmc.loader.api.SemanticVersion;
@@ -165,6 +166,10 @@ public class ClientAPI {
             set("getWindowSize", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    if (snapshot != null)
+                        return new LuaVector(snapshot.windowWidth, snapshot.windowHeight);
+
                     Window window = MinecraftClient.getInstance().getWindow();
                     return new LuaVector(window.getWidth(), window.getHeight());
                 }
@@ -173,14 +178,16 @@ public class ClientAPI {
             set("getGUIScale", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
-                    return LuaValue.valueOf(MinecraftClient.getInstance().options.guiScale);
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaValue.valueOf(snapshot != null ? snapshot.guiScale : MinecraftClient.getInstance().options.guiScale);
                 }
             });
 
             set("getFov", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
-                    return LuaValue.valueOf(MinecraftClient.getInstance().options.fov);
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaValue.valueOf(snapshot != null ? snapshot.fov : MinecraftClient.getInstance().options.fov);
                 }
             });
 
@@ -239,6 +246,10 @@ public class ClientAPI {
             set("getScaledWindowSize", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    if (snapshot != null)
+                        return new LuaVector(snapshot.scaledWidth, snapshot.scaledHeight);
+
                     Window window = MinecraftClient.getInstance().getWindow();
                     return new LuaVector(window.getScaledWidth(), window.getScaledHeight());
                 }
@@ -247,7 +258,8 @@ public class ClientAPI {
             set("getScaleFactor", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
-                    return LuaValue.valueOf(MinecraftClient.getInstance().getWindow().getScaleFactor());
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaValue.valueOf(snapshot != null ? snapshot.scaleFactor : MinecraftClient.getInstance().getWindow().getScaleFactor());
                 }
             });
 
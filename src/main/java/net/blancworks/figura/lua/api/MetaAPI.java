@@ -73,6 +73,15 @@ public class MetaAPI {
                 }
             });
 
+            set("getMemoryLimit", new ZeroArgFunction() {
+                @Override
+                public LuaValue call() {
+                    //in KiB like getCurrentMemory, -1 if unlimited
+                    long limit = script.getMemoryLimit();
+                    return LuaValue.valueOf(limit == -1 ? -1 : limit / 1024d);
+                }
+            });
+
             set("getDoesRenderOffscreen", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
@@ -151,6 +160,13 @@ public class MetaAPI {
                 }
             });
 
+            set("getCurrentMemory", new ZeroArgFunction() {
+                @Override
+                public LuaValue call() {
+                    return LuaValue.valueOf(script.memoryTracker == null ? 0 : script.memoryTracker.lastMeasured / 1024d);
+                }
+            });
+
             set("getFiguraVersion", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
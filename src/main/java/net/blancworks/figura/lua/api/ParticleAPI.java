@@ -5,22 +5,22 @@ import net.blancworks.figura.lua.api.block.BlockStateAPI;
 import net.blancworks.figura.lua.api.item.ItemStackAPI;
 import net.blancworks.figura.lua.api.math.LuaVector;
 import net.minecraft.block.BlockState;
-import net.minecraft.client.MinecraftClient;
-import net.minecraft.item.ItemStack;
 import net.minecraft.particle.*;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.registry.Registry;
 import net.minecraft.world.Vibration;
-import net.minecraft.world.World;
 import net.minecraft.world.event.BlockPositionSource;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 import org.luaj.vm2.Varargs;
 import org.luaj.vm2.lib.VarArgFunction;
 
-import java.util.AbstractMap;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
 
 public class ParticleAPI {
 
@@ -37,100 +37,126 @@ public class ParticleAPI {
         return new Identifier("default", "particle");
     }
 
+    //effects built from script arguments, shared by every script asking for the same one
+    private record EffectKey(ParticleType<?> type, Object data, float a, float b, float c, float d, float e, float f, float g) {}
+    private static final Map<EffectKey, ParticleEffect> EFFECTS = ArgumentCache.createLruMap();
+    private static final Map<String, String> FULL_IDS = ArgumentCache.createLruMap();
+
     public static LuaTable getForScript(CustomScript script) {
         return new LuaTable() {{
             set("addParticle", new VarArgFunction() {
                 @Override
                 public Varargs onInvoke(Varargs args) {
-                    //argos
-                    LuaValue arg1 = args.arg(1);
-                    LuaValue arg2 = args.arg(2);
-                    LuaValue arg3 = args.arg(3);
-                    LuaValue arg4 = args.arg(4);
-
-                    //setup particle
-                    AbstractMap.Entry<Identifier, ParticleType<?>> particleType = particleSetup(script, arg1);
-                    if (particleType == null) return NIL;
-
-                    //particle special argos
-                    ParticleEffect particle;
-                    switch (particleType.getKey().toString()) {
-                        //3 argos
-                        case "minecraft:dust" -> {
-                            LuaVector color = LuaVector.checkOrNew(arg3);
-                            particle = new DustParticleEffect(color.asV3f(), color.w());
-                        }
-                        case "minecraft:falling_dust" -> {
-                            BlockState state = BlockStateAPI.checkOrCreateBlockState(arg3);
-                            particle = new BlockStateParticleEffect(ParticleTypes.FALLING_DUST, state);
-                        }
-                        case "minecraft:block" -> {
-                            BlockState state = BlockStateAPI.checkOrCreateBlockState(arg3);
-                            particle = new BlockStateParticleEffect(ParticleTypes.BLOCK, state);
-                        }
-                        case "minecraft:item" -> {
-                            ItemStack stack = ItemStackAPI.checkOrCreateItemStack(arg3);
-                            particle = new ItemStackParticleEffect(ParticleTypes.ITEM, stack);
-                        }
-                        case "minecraft:block_marker" -> {
-                            BlockState state = BlockStateAPI.checkOrCreateBlockState(arg3);
-                            particle = new BlockStateParticleEffect(ParticleTypes.BLOCK_MARKER, state);
-                        }
-                        //4 argos
-                        case "minecraft:dust_color_transition" -> {
-                            LuaVector fromColor = LuaVector.checkOrNew(arg3);
-                            LuaVector toColor = LuaVector.checkOrNew(arg4);
-                            particle = new DustColorTransitionParticleEffect(fromColor.asV3f(), toColor.asV3f(), fromColor.w());
-                        }
-                        case "minecraft:vibration" -> {
-                            LuaVector start = LuaVector.checkOrNew(arg3);
-                            LuaVector end = LuaVector.checkOrNew(arg4);
-                            BlockPos startPos = new BlockPos(start.asV3d());
-                            BlockPositionSource endPos = new BlockPositionSource(new BlockPos(end.asV3d()));
-
-                            particle = new VibrationParticleEffect(new Vibration(startPos, endPos, (int) start.w()));
-                        }
-                        //default particle type
-                        default -> {
-                            if (particleType.getValue() instanceof DefaultParticleType type)
-                                particle = type;
-                            else return NIL;
-                        }
-                    }
+                    //check string or script particle count
+                    if (!args.arg(1).isstring() || script.particleSpawnCount < 1)
+                        return NIL;
+
+                    //increase particle count
+                    script.particleSpawnCount--;
+
+                    ParticleEffect particle = getEffect(args.arg(1), args.arg(3), args.arg(4));
+                    if (particle == null) return NIL;
 
                     //add particle
-                    summonParticle(particle, LuaVector.checkOrNew(arg2));
+                    ParticleBudget.queue(script.avatarData.entityId, createEmission(particle, LuaVector.checkOrNew(args.arg(2))));
 
                     return NIL;
                 }
             });
+
+            set("addParticles", new VarArgFunction() {
+                @Override
+                public Varargs onInvoke(Varargs args) {
+                    //one effect, emitted at every position of the table
+                    LuaTable positions = args.checktable(2);
+                    int count = Math.min(positions.length(), (int) script.particleSpawnCount);
+                    if (!args.arg(1).isstring() || count < 1)
+                        return LuaValue.valueOf(0);
+
+                    ParticleEffect particle = getEffect(args.arg(1), args.arg(3), args.arg(4));
+                    if (particle == null) return LuaValue.valueOf(0);
+
+                    List<ParticleBudget.Emission> emissions = new ArrayList<>(count);
+                    for (int i = 1; i <= count; i++)
+                        emissions.add(createEmission(particle, LuaVector.checkOrNew(positions.get(i))));
+
+                    script.particleSpawnCount -= count;
+                    return LuaValue.valueOf(ParticleBudget.queue(script.avatarData.entityId, emissions));
+                }
+            });
         }};
     }
 
-    private static AbstractMap.Entry<Identifier, ParticleType<?>> particleSetup(CustomScript script, LuaValue id) {
-        //check string or script particle count
-        if (!id.isstring() || script.particleSpawnCount < 1)
+    private static ParticleType<?> getType(LuaValue id) {
+        //always resolve the full id, so "dust" is minecraft:dust even when a mod adds its own dust particle
+        //the strings scripts pass rarely change, so each is only parsed into an identifier once
+        String name = id.checkjstring();
+        String fullId = FULL_IDS.get(name);
+        if (fullId == null) {
+            fullId = new Identifier(name).toString();
+            FULL_IDS.put(name, fullId);
+        }
+
+        return particleTypes.get(fullId);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static ParticleEffect getEffect(LuaValue id, LuaValue arg3, LuaValue arg4) {
+        ParticleType<?> type = getType(id);
+        if (type == null)
             return null;
 
-        //increase particle count
-        script.particleSpawnCount--;
+        //particle special argos
+        //3 argos
+        if (type == ParticleTypes.DUST) {
+            LuaVector color = LuaVector.checkOrNew(arg3);
+            return getOrCreate(new EffectKey(type, null, color.x(), color.y(), color.z(), color.w(), 0f, 0f, 0f),
+                    () -> new DustParticleEffect(color.asV3f(), color.w()));
+        }
+        if (type == ParticleTypes.FALLING_DUST || type == ParticleTypes.BLOCK || type == ParticleTypes.BLOCK_MARKER) {
+            //block states are already unique, so they can be the key themselves
+            BlockState state = BlockStateAPI.checkOrCreateBlockState(arg3);
+            return getOrCreate(new EffectKey(type, state, 0f, 0f, 0f, 0f, 0f, 0f, 0f),
+                    () -> new BlockStateParticleEffect((ParticleType<BlockStateParticleEffect>) type, state));
+        }
+        if (type == ParticleTypes.ITEM) {
+            //only item strings are cached, item tables can hold any stack
+            if (!arg3.isstring())
+                return new ItemStackParticleEffect(ParticleTypes.ITEM, ItemStackAPI.checkOrCreateItemStack(arg3));
 
-        //get particle id and particle type
-        Identifier identifier = new Identifier(id.checkjstring());
-        ParticleType<?> type = particleTypes.get(identifier.toString());
+            return getOrCreate(new EffectKey(type, arg3.tojstring(), 0f, 0f, 0f, 0f, 0f, 0f, 0f),
+                    () -> new ItemStackParticleEffect(ParticleTypes.ITEM, ItemStackAPI.checkOrCreateItemStack(arg3)));
+        }
+        //4 argos
+        if (type == ParticleTypes.DUST_COLOR_TRANSITION) {
+            LuaVector fromColor = LuaVector.checkOrNew(arg3);
+            LuaVector toColor = LuaVector.checkOrNew(arg4);
+            return getOrCreate(new EffectKey(type, null, fromColor.x(), fromColor.y(), fromColor.z(), fromColor.w(), toColor.x(), toColor.y(), toColor.z()),
+                    () -> new DustColorTransitionParticleEffect(fromColor.asV3f(), toColor.asV3f(), fromColor.w()));
+        }
+        if (type == ParticleTypes.VIBRATION) {
+            LuaVector start = LuaVector.checkOrNew(arg3);
+            LuaVector end = LuaVector.checkOrNew(arg4);
+            BlockPos startPos = new BlockPos(start.asV3d());
+            BlockPos endPos = new BlockPos(end.asV3d());
+            return getOrCreate(new EffectKey(type, null, startPos.getX(), startPos.getY(), startPos.getZ(), (int) start.w(), endPos.getX(), endPos.getY(), endPos.getZ()),
+                    () -> new VibrationParticleEffect(new Vibration(startPos, new BlockPositionSource(endPos), (int) start.w())));
+        }
 
-        //return
-        return type == null ? null : new AbstractMap.SimpleEntry<>(identifier, type);
+        //default particle type
+        return type instanceof DefaultParticleType defaultType ? defaultType : null;
     }
 
-    private static void summonParticle(ParticleEffect particle, LuaVector pos) {
-        World w = MinecraftClient.getInstance().world;
-
-        //summon particle
-        if (!MinecraftClient.getInstance().isPaused() && w != null) {
-            w.addParticle(particle,
-                    pos.x(), pos.y(), pos.z(), pos.w(), pos.t(), pos.h()
-            );
+    private static ParticleEffect getOrCreate(EffectKey key, Supplier<ParticleEffect> factory) {
+        ParticleEffect effect = EFFECTS.get(key);
+        if (effect == null) {
+            effect = factory.get();
+            EFFECTS.put(key, effect);
         }
+        return effect;
+    }
+
+    private static ParticleBudget.Emission createEmission(ParticleEffect particle, LuaVector pos) {
+        return new ParticleBudget.Emission(particle, pos.x(), pos.y(), pos.z(), pos.w(), pos.t(), pos.h());
     }
 }
@@ -0,0 +1,114 @@
+package net.blancworks.figura.lua.api;
+
+import net.blancworks.figura.config.ConfigManager.Config;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.particle.ParticleEffect;
+import net.minecraft.world.World;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Particles emitted by scripts are queued here and added to the world once per frame, on the client thread.
+ * Every frame has a budget of particles shared by all avatars, handed out one particle per avatar at a time,
+ * so a single avatar can't take the whole budget and a crowd can't push the particle manager past its limits.
+ * Particles which didn't fit wait for the next frames, up to one frame budget per avatar, the rest are dropped.
+ */
+public class ParticleBudget {
+
+    public record Emission(ParticleEffect effect, double x, double y, double z, double velX, double velY, double velZ) {}
+
+    //owner -> particles waiting to be spawned
+    private static final Map<UUID, ArrayDeque<Emission>> PENDING = new HashMap<>();
+
+    //stats of the last frame
+    public static int lastSpawned = 0;
+    public static int lastDropped = 0;
+    private static int dropped = 0;
+
+    public static int getBudget() {
+        return Math.max((int) Config.PARTICLE_BUDGET.value, 0);
+    }
+
+    //queues particles of an avatar, returns how many were accepted
+    public static int queue(UUID owner, List<Emission> emissions) {
+        int max = getBudget();
+
+        synchronized (PENDING) {
+            ArrayDeque<Emission> queue = PENDING.computeIfAbsent(owner, k -> new ArrayDeque<>());
+
+            int accepted = Math.max(Math.min(emissions.size(), max - queue.size()), 0);
+            for (int i = 0; i < accepted; i++)
+                queue.add(emissions.get(i));
+
+            dropped += emissions.size() - accepted;
+            return accepted;
+        }
+    }
+
+    public static int queue(UUID owner, Emission emission) {
+        return queue(owner, List.of(emission));
+    }
+
+    //called once per frame, before the world renders
+    public static void spawnPending() {
+        MinecraftClient client = MinecraftClient.getInstance();
+        World world = client.world;
+
+        List<ArrayDeque<Emission>> queues;
+        synchronized (PENDING) {
+            if (world == null || client.isPaused()) {
+                for (ArrayDeque<Emission> queue : PENDING.values())
+                    dropped += queue.size();
+                PENDING.clear();
+                endFrame(0);
+                return;
+            }
+
+            PENDING.values().removeIf(ArrayDeque::isEmpty);
+            queues = new ArrayList<>(PENDING.values());
+        }
+
+        //round robin, one particle per avatar per pass
+        int budget = getBudget();
+        int spawned = 0;
+        while (spawned < budget && !queues.isEmpty()) {
+            Iterator<ArrayDeque<Emission>> iterator = queues.iterator();
+            while (spawned < budget && iterator.hasNext()) {
+                Emission emission;
+                synchronized (PENDING) {
+                    emission = iterator.next().poll();
+                }
+
+                if (emission == null) {
+                    iterator.remove();
+                    continue;
+                }
+
+                world.addParticle(emission.effect, emission.x, emission.y, emission.z, emission.velX, emission.velY, emission.velZ);
+                spawned++;
+            }
+        }
+
+        endFrame(spawned);
+    }
+
+    private static void endFrame(int spawned) {
+        synchronized (PENDING) {
+            lastSpawned = spawned;
+            lastDropped = dropped;
+            dropped = 0;
+        }
+    }
+
+    public static void clear(UUID owner) {
+        synchronized (PENDING) {
+            PENDING.remove(owner);
+        }
+    }
+}
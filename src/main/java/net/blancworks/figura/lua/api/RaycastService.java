@@ -0,0 +1,126 @@
+package net.blancworks.figura.lua.api;
+
+import net.blancworks.figura.lua.api.entity.EntityAPI;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.entity.Entity;
+import net.minecraft.util.hit.BlockHitResult;
+import net.minecraft.util.hit.EntityHitResult;
+import net.minecraft.util.hit.HitResult;
+import net.minecraft.util.math.Box;
+import net.minecraft.util.math.Vec3d;
+import net.minecraft.world.RaycastContext;
+import net.minecraft.world.World;
+import org.luaj.vm2.LuaFunction;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Shared raycasts for the renderer API.
+ * Scripts tend to cast the same rays (from the camera, from the head) many times per frame,
+ * so rays without a script predicate are cached until the next tick.
+ */
+public class RaycastService {
+    //stop caching new rays after this many in a single tick, so a script can't grow the cache forever
+    public static final int MAX_CACHED_RAYS = 4096;
+
+    private record BlockRay(Vec3d start, Vec3d end, RaycastContext.ShapeType shapeType, RaycastContext.FluidHandling fluidHandling) {}
+    private record EntityRay(Vec3d start, Vec3d end) {}
+
+    //optional because the maps can't hold the misses as null
+    private static final Map<BlockRay, Optional<BlockHitResult>> BLOCK_CACHE = new ConcurrentHashMap<>();
+    private static final Map<EntityRay, Optional<EntityHitResult>> ENTITY_CACHE = new ConcurrentHashMap<>();
+
+    //called on the client thread at the end of each tick
+    public static void clearTickCache() {
+        BLOCK_CACHE.clear();
+        ENTITY_CACHE.clear();
+    }
+
+    /**
+     * Casts a ray against the blocks, returns null on a miss.
+     * The predicate receives the block state table, and is never cached.
+     */
+    public static BlockHitResult raycastBlocks(Vec3d start, Vec3d end, String shapeType, String fluidHandling, LuaFunction predicate) {
+        World world = MinecraftClient.getInstance().world;
+        if (world == null)
+            return null;
+
+        RaycastContext.ShapeType shapes = RendererAPI.FiguraRaycastContext.parseShapeType(shapeType);
+        RaycastContext.FluidHandling fluids = RendererAPI.FiguraRaycastContext.parseFluidHandling(fluidHandling);
+        if (predicate != null)
+            return getHit(RendererAPI.raycastBlocks(world, RendererAPI.FiguraRaycastContext.of(start, end, shapes, fluids, predicate)));
+
+        BlockRay key = new BlockRay(start, end, shapes, fluids);
+        Optional<BlockHitResult> cached = BLOCK_CACHE.get(key);
+        if (cached != null)
+            return cached.orElse(null);
+
+        BlockHitResult result = getHit(RendererAPI.raycastBlocks(world, RendererAPI.FiguraRaycastContext.of(start, end, shapes, fluids, null)));
+        if (BLOCK_CACHE.size() < MAX_CACHED_RAYS)
+            BLOCK_CACHE.put(key, Optional.ofNullable(result));
+
+        return result;
+    }
+
+    /**
+     * Casts a ray against the entities, returns null on a miss.
+     * The predicate receives the entity table, and is never cached.
+     */
+    public static EntityHitResult raycastEntities(Vec3d start, Vec3d end, LuaFunction predicate) {
+        World world = MinecraftClient.getInstance().world;
+        if (world == null)
+            return null;
+
+        if (predicate != null)
+            return raycastEntities(world, start, end, predicate);
+
+        EntityRay key = new EntityRay(start, end);
+        Optional<EntityHitResult> cached = ENTITY_CACHE.get(key);
+        if (cached != null)
+            return cached.orElse(null);
+
+        EntityHitResult result = raycastEntities(world, start, end, null);
+        if (ENTITY_CACHE.size() < MAX_CACHED_RAYS)
+            ENTITY_CACHE.put(key, Optional.ofNullable(result));
+
+        return result;
+    }
+
+    private static BlockHitResult getHit(BlockHitResult result) {
+        return result == null || result.getType() == HitResult.Type.MISS ? null : result;
+    }
+
+    private record Candidate(Entity entity, Vec3d pos, double distance) {}
+
+    //same hit rules as ProjectileUtil.raycast, but the script predicate only runs for the entities the ray actually hits,
+    //closest first, instead of for every entity inside the ray bounding box
+    private static EntityHitResult raycastEntities(World world, Vec3d start, Vec3d end, LuaFunction predicate) {
+        List<Candidate> candidates = new ArrayList<>();
+
+        for (Entity entity : world.getOtherEntities(null, new Box(start, end))) {
+            Box box = entity.getBoundingBox().expand(entity.getTargetingMargin());
+
+            if (box.contains(start)) {
+                candidates.add(new Candidate(entity, start, 0d));
+                continue;
+            }
+
+            Optional<Vec3d> hit = box.raycast(start, end);
+            if (hit.isPresent())
+                candidates.add(new Candidate(entity, hit.get(), start.squaredDistanceTo(hit.get())));
+        }
+
+        if (candidates.isEmpty())
+            return null;
+
+        candidates.sort(Comparator.comparingDouble(Candidate::distance));
+
+        for (Candidate candidate : candidates) {
+            if (predicate == null || predicate.call(EntityAPI.getTableForEntity(candidate.entity)).toboolean())
+                return new EntityHitResult(candidate.entity, candidate.pos);
+        }
+
+        return null;
+    }
+}
@@ -4,9 +4,11 @@ import com.mojang.blaze3d.platform.GlStateManager;
 import com.mojang.blaze3d.systems.RenderSystem;
 import net.blancworks.figura.lua.CustomScript;
 import net.blancworks.figura.models.FiguraTexture;
+import net.blancworks.figura.models.shaders.AvatarShader;
 import net.blancworks.figura.models.shaders.FiguraRenderLayer;
 import net.blancworks.figura.models.shaders.FiguraShader;
 import net.blancworks.figura.models.shaders.FiguraVertexConsumerProvider;
+import net.blancworks.figura.models.shaders.ShaderRegistry;
 import net.blancworks.figura.trust.TrustContainer;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.client.MinecraftClient;
@@ -46,15 +48,10 @@ public class RenderLayerAPI {
                         throw new LuaError("You've registered too many (" + CustomScript.maxShaders + ") shaders. Ignoring further ones.");
                     String name = args.checkjstring(1);
 
-                    VertexFormat vertexFormat;
-                    if (args.isnil(2)) {
-                        vertexFormat = VertexFormats.POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL;
-                    } else {
-                        String formatString = args.checkjstring(2);
-                        if (!vertexFormatMap.containsKey(formatString))
-                            throw new LuaError("Invalid vertex format: " + formatString);
-                        vertexFormat = vertexFormatMap.get(formatString);
-                    }
+                    String formatString = args.isnil(2) ? "POSITION_COLOR_TEXTURE_OVERLAY_LIGHT_NORMAL" : args.checkjstring(2);
+                    VertexFormat vertexFormat = vertexFormatMap.get(formatString);
+                    if (vertexFormat == null)
+                        throw new LuaError("Invalid vertex format: " + formatString);
 
                     String vertexSource = args.checkjstring(3);
                     String fragmentSource = args.checkjstring(4);
@@ -75,10 +72,20 @@ public class RenderLayerAPI {
                         }
                     }
 
+                    ShaderRegistry.ShaderKey key = new ShaderRegistry.ShaderKey(formatString, vertexSource, fragmentSource, numSamplers, uniformNames, uniformTypes);
                     RenderSystem.recordRenderCall(()->{
                         try {
-                            FiguraShader newShader = FiguraShader.create(vertexFormat, vertexSource, fragmentSource, numSamplers, uniformNames, uniformTypes);
-                            script.shaders.put(name, newShader);
+                            FiguraShader newShader = ShaderRegistry.acquire(key, vertexFormat);
+
+                            //the script was unloaded while waiting for the render thread
+                            if (script.shadersReleased) {
+                                ShaderRegistry.release(key);
+                                return;
+                            }
+
+                            AvatarShader old = script.shaders.put(name, new AvatarShader(key, newShader));
+                            if (old != null)
+                                ShaderRegistry.release(old.key);
                         } catch (IOException e) {
                             if (script.avatarData.isLocalAvatar)
                                 CustomScript.sendChatMessage(new LiteralText(e.getMessage()).formatted(Formatting.RED));
@@ -152,11 +159,11 @@ public class RenderLayerAPI {
                 public LuaValue call(LuaValue arg1, LuaValue arg2, LuaValue arg3) {
                     if (!RenderSystem.isOnRenderThread())
                         throw new LuaError("setUniform can only be called inside render() or a renderlayer function!");
-                    FiguraShader shader = script.shaders.get(arg1.checkjstring());
+                    AvatarShader shader = script.shaders.get(arg1.checkjstring());
                     if (shader != null) {
-                        if (shader.hasUniform(arg2.checkjstring())) {
+                        if (shader.shader.hasUniform(arg2.checkjstring())) {
                             arg3.checknotnil();
-                            shader.setUniformFromLua(arg2, arg3);
+                            shader.shader.setUniformFromLua(shader.uniforms, arg2, arg3);
                         } else {
                             throw new LuaError("No uniform with name: " + arg2.checkjstring());
                         }
@@ -164,6 +171,27 @@ public class RenderLayerAPI {
                     return NIL;
                 }
             });
+            set("getUniform", new TwoArgFunction() {
+                @Override
+                public LuaValue call(LuaValue arg1, LuaValue arg2) {
+                    AvatarShader shader = script.shaders.get(arg1.checkjstring());
+                    if (shader == null)
+                        return NIL;
+
+                    String uniformName = arg2.checkjstring();
+                    LuaTable handle = shader.handles.get(uniformName);
+                    if (handle == null) {
+                        FiguraShader.UniformSlot slot = shader.shader.getSlot(uniformName);
+                        if (slot == null)
+                            throw new LuaError("No uniform with name: " + uniformName);
+
+                        handle = getUniformHandle(shader, slot);
+                        shader.handles.put(uniformName, handle);
+                    }
+
+                    return handle;
+                }
+            });
             set("setPriority", new TwoArgFunction() {
                 @Override
                 public LuaValue call(LuaValue arg1, LuaValue arg2) {
@@ -194,9 +222,9 @@ public class RenderLayerAPI {
                 @Override
                 public LuaValue call(LuaValue arg) {
                     checkValidCall();
-                    FiguraShader shader = script.shaders.get(arg.checkjstring());
+                    AvatarShader shader = script.shaders.get(arg.checkjstring());
                     if(shader != null)
-                        RenderSystem.setShader(()->shader);
+                        shader.bind();
                     return NIL;
                 }
             });
@@ -598,6 +626,35 @@ public class RenderLayerAPI {
             throw new LuaError(message);
     }
 
+    //a uniform resolved once, setting it only writes into the avatar's uniform block
+    private static LuaTable getUniformHandle(AvatarShader shader, FiguraShader.UniformSlot slot) {
+        return new LuaTable() {{
+            set("set", new OneArgFunction() {
+                @Override
+                public LuaValue call(LuaValue arg) {
+                    if (!RenderSystem.isOnRenderThread())
+                        throw new LuaError("Uniforms can only be set inside render() or a renderlayer function!");
+                    shader.shader.stage(shader.uniforms, slot, arg);
+                    return NIL;
+                }
+            });
+
+            set("getName", new ZeroArgFunction() {
+                @Override
+                public LuaValue call() {
+                    return LuaValue.valueOf(slot.name());
+                }
+            });
+
+            set("getSize", new ZeroArgFunction() {
+                @Override
+                public LuaValue call() {
+                    return LuaValue.valueOf(slot.count());
+                }
+            });
+        }};
+    }
+
     private static void checkArg(int arg, String message, int... options) {
         for (int option : options)
             if (arg == option)
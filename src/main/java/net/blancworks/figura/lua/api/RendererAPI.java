@@ -2,6 +2,7 @@ package net.blancworks.figura.lua.api;
 
 import net.blancworks.figura.avatar.AvatarDataManager;
 import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.lua.GameStateSnapshot;
 import net.blancworks.figura.lua.api.block.BlockStateAPI;
 import net.blancworks.figura.lua.api.entity.EntityAPI;
 import net.blancworks.figura.lua.api.math.LuaVector;
@@ -13,14 +14,12 @@ import net.minecraft.entity.Entity;
 import net.minecraft.entity.EntityType;
 import net.minecraft.entity.MarkerEntity;
 import net.minecraft.entity.player.PlayerEntity;
-import net.minecraft.entity.projectile.ProjectileUtil;
 import net.minecraft.fluid.FluidState;
 import net.minecraft.text.Text;
 import net.minecraft.util.Hand;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.hit.BlockHitResult;
 import net.minecraft.util.hit.EntityHitResult;
-import net.minecraft.util.hit.HitResult;
 import net.minecraft.util.math.*;
 import net.minecraft.util.shape.VoxelShape;
 import net.minecraft.world.BlockView;
@@ -29,11 +28,11 @@ import net.minecraft.world.World;
 import org.luaj.vm2.*;
 import org.luaj.vm2.lib.OneArgFunction;
 import org.luaj.vm2.lib.ThreeArgFunction;
+import org.luaj.vm2.lib.TwoArgFunction;
 import org.luaj.vm2.lib.VarArgFunction;
 import org.luaj.vm2.lib.ZeroArgFunction;
 
 import java.util.function.BiPredicate;
-import java.util.function.Predicate;
 
 public class RendererAPI {
 
@@ -65,7 +64,8 @@ public class RendererAPI {
                 @Override
                 public LuaValue call() {
                     if (!isHost) return FALSE;
-                    return LuaValue.valueOf(MinecraftClient.getInstance().options.getPerspective().isFirstPerson());
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaValue.valueOf(snapshot != null ? snapshot.firstPerson : MinecraftClient.getInstance().options.getPerspective().isFirstPerson());
                 }
             });
 
@@ -73,7 +73,8 @@ public class RendererAPI {
                 @Override
                 public LuaValue call() {
                     if (!isHost) return FALSE;
-                    return LuaValue.valueOf(MinecraftClient.getInstance().options.getPerspective().isFrontView());
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaValue.valueOf(snapshot != null ? snapshot.frontView : MinecraftClient.getInstance().options.getPerspective().isFrontView());
                 }
             });
 
@@ -82,13 +83,18 @@ public class RendererAPI {
                 public LuaValue call() {
                     //Yes, this IS intended to also be called for non-local players.
                     //This might be exploitable? idk
-                    return LuaVector.of(MinecraftClient.getInstance().gameRenderer.getCamera().getPos());
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaVector.of(snapshot != null ? snapshot.cameraPos : MinecraftClient.getInstance().gameRenderer.getCamera().getPos());
                 }
             });
 
             set("getCameraRot", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    if (snapshot != null)
+                        return LuaVector.of(snapshot.cameraRot);
+
                     return LuaVector.of(MathUtils.quaternionToEulerXYZ(MinecraftClient.getInstance().gameRenderer.getCamera().getRotation()));
                 }
             });
@@ -159,6 +165,21 @@ public class RendererAPI {
                 }
             });
 
+            set("setIgnoreCulling", new OneArgFunction() {
+                @Override
+                public LuaValue call(LuaValue arg) {
+                    script.ignoreCulling = arg.checkboolean();
+                    return NIL;
+                }
+            });
+
+            set("getIgnoreCulling", new ZeroArgFunction() {
+                @Override
+                public LuaValue call() {
+                    return LuaValue.valueOf(script.ignoreCulling);
+                }
+            });
+
             set("setRenderPlayerHead", new OneArgFunction() {
                 @Override
                 public LuaValue call(LuaValue arg) {
@@ -179,33 +200,34 @@ public class RendererAPI {
                 public LuaValue invoke(Varargs args) {
                     Vec3d start = LuaVector.checkOrNew(args.arg(1)).asV3d();
                     Vec3d end = LuaVector.checkOrNew(args.arg(2)).asV3d();
-                    int instructionPenalty = (int) end.subtract(start).length() * 2;
-                    applyInstructionPenalty(script, instructionPenalty);
-                    String shapeType;
-                    String fluidHandling;
-                    LuaFunction func;
-                    if (args.arg(3).isnil())
-                        shapeType = "COLLIDER";
-                    else
-                        shapeType = args.arg(3).checkjstring();
-                    if (args.arg(4).isnil())
-                        fluidHandling = "NONE";
-                    else
-                        fluidHandling = args.arg(4).checkjstring();
-                    if (args.arg(5).isnil())
-                        func = returnTrue;
-                    else
-                        func = args.arg(5).checkfunction();
-
-                    FiguraRaycastContext context = FiguraRaycastContext.of(start, end, shapeType, fluidHandling, func);
-                    BlockHitResult result = raycastBlocks(getWorld(), context);
-
-                    if (result == null || result.getType() == HitResult.Type.MISS)
-                        return NIL;
+                    applyInstructionPenalty(script, (int) end.subtract(start).length() * 2);
+
+                    BlockHitResult result = RaycastService.raycastBlocks(start, end, optString(args.arg(3), "COLLIDER"), optString(args.arg(4), "NONE"), optFunction(args.arg(5)));
+                    return result == null ? NIL : getBlockHitTable(result);
+                }
+            });
+
+            //casts every {start, end} pair in the rays table, results use the same indexes and misses are left empty
+            set("raycastBlocksBatch", new VarArgFunction() {
+                @Override
+                public LuaValue invoke(Varargs args) {
+                    LuaTable rays = args.arg(1).checktable();
+                    String shapeType = optString(args.arg(2), "COLLIDER");
+                    String fluidHandling = optString(args.arg(3), "NONE");
+                    LuaFunction func = optFunction(args.arg(4));
 
                     LuaTable ret = new LuaTable();
-                    ret.set("state", BlockStateAPI.getTable(getWorld().getBlockState(result.getBlockPos()), getWorld(), result.getBlockPos()));
-                    ret.set("pos", LuaVector.of(result.getPos()));
+                    for (int i = 1; i <= rays.length(); i++) {
+                        LuaTable ray = rays.get(i).checktable();
+                        Vec3d start = LuaVector.checkOrNew(ray.get(1)).asV3d();
+                        Vec3d end = LuaVector.checkOrNew(ray.get(2)).asV3d();
+                        applyInstructionPenalty(script, (int) end.subtract(start).length() * 2);
+
+                        BlockHitResult result = RaycastService.raycastBlocks(start, end, shapeType, fluidHandling, func);
+                        if (result != null)
+                            ret.set(i, getBlockHitTable(result));
+                    }
+
                     return ret;
                 }
             });
@@ -213,36 +235,61 @@ public class RendererAPI {
             set("raycastEntities", new ThreeArgFunction() {
                 @Override
                 public LuaValue call(LuaValue startPos, LuaValue endPos, LuaValue func) {
-                    Entity e = new MarkerEntity(EntityType.MARKER, getWorld());
                     Vec3d start = LuaVector.checkOrNew(startPos).asV3d();
                     Vec3d end = LuaVector.checkOrNew(endPos).asV3d();
-                    int instructionPenalty = (int) end.subtract(start).length() * 2;
-                    applyInstructionPenalty(script, instructionPenalty);
-                    Predicate<Entity> pred;
-                    if (func.isnil())
-                        pred = entity -> true;
-                    else
-                        pred = (Entity entity) -> {
-                            LuaTable entityTable = EntityAPI.getTableForEntity(entity);
-                            return func.checkfunction().call(entityTable).toboolean();
-                        };
-                    EntityHitResult result = ProjectileUtil.raycast(e, start, end, new Box(start, end), pred, Double.MAX_VALUE);
-                    if (result == null) return NIL;
+                    applyInstructionPenalty(script, (int) end.subtract(start).length() * 2);
+
+                    EntityHitResult result = RaycastService.raycastEntities(start, end, optFunction(func));
+                    return result == null ? NIL : getEntityHitTable(result);
+                }
+            });
+
+            //same as raycastBlocksBatch, but for entities
+            set("raycastEntitiesBatch", new TwoArgFunction() {
+                @Override
+                public LuaValue call(LuaValue arg1, LuaValue arg2) {
+                    LuaTable rays = arg1.checktable();
+                    LuaFunction func = optFunction(arg2);
+
                     LuaTable ret = new LuaTable();
-                    ret.set("entity", EntityAPI.getTableForEntity(result.getEntity()));
-                    ret.set("pos", LuaVector.of(result.getPos()));
+                    for (int i = 1; i <= rays.length(); i++) {
+                        LuaTable ray = rays.get(i).checktable();
+                        Vec3d start = LuaVector.checkOrNew(ray.get(1)).asV3d();
+                        Vec3d end = LuaVector.checkOrNew(ray.get(2)).asV3d();
+                        applyInstructionPenalty(script, (int) end.subtract(start).length() * 2);
+
+                        EntityHitResult result = RaycastService.raycastEntities(start, end, func);
+                        if (result != null)
+                            ret.set(i, getEntityHitTable(result));
+                    }
+
                     return ret;
                 }
             });
         }};
     }
 
-    private static final LuaFunction returnTrue = new ZeroArgFunction() {
-        @Override
-        public LuaValue call() {
-            return TRUE;
-        }
-    };
+    private static String optString(LuaValue value, String fallback) {
+        return value.isnil() ? fallback : value.checkjstring();
+    }
+
+    private static LuaFunction optFunction(LuaValue value) {
+        return value.isnil() ? null : value.checkfunction();
+    }
+
+    private static LuaTable getBlockHitTable(BlockHitResult result) {
+        LuaTable ret = new LuaTable();
+        ret.set("state", BlockStateAPI.getTable(getWorld().getBlockState(result.getBlockPos()), getWorld(), result.getBlockPos()));
+        ret.set("pos", LuaVector.of(result.getPos()));
+        return ret;
+    }
+
+    private static LuaTable getEntityHitTable(EntityHitResult result) {
+        LuaTable ret = new LuaTable();
+        ret.set("entity", EntityAPI.getTableForEntity(result.getEntity()));
+        ret.set("pos", LuaVector.of(result.getPos()));
+        return ret;
+    }
 
     private static World getWorld(){
         return MinecraftClient.getInstance().world;
@@ -283,23 +330,36 @@ public class RendererAPI {
         private BiPredicate<BlockState, BlockPos> predicate;
 
         public static FiguraRaycastContext of(Vec3d start, Vec3d end, String shapeType, String fluidHandling, LuaFunction predicate) {
-            ShapeType shapes;
-            FluidHandling fluids;
+            return of(start, end, parseShapeType(shapeType), parseFluidHandling(fluidHandling), predicate);
+        }
+
+        public static FiguraRaycastContext of(Vec3d start, Vec3d end, ShapeType shapes, FluidHandling fluids, LuaFunction predicate) {
+            //Need some random entity for some reason, it doesn't affect anything in the actual method calls
+            FiguraRaycastContext result = new FiguraRaycastContext(start, end, shapes, fluids, new MarkerEntity(EntityType.MARKER, getWorld()));
+
+            //without a predicate there is no need to build a block table for every block along the ray
+            if (predicate == null)
+                result.predicate = (state, pos) -> true;
+            else
+                result.predicate = (state, pos) -> predicate.call(BlockStateAPI.getTable(state, getWorld(), pos)).toboolean();
+
+            return result;
+        }
+
+        public static ShapeType parseShapeType(String shapeType) {
             try {
-                shapes = ShapeType.valueOf(shapeType);
+                return ShapeType.valueOf(shapeType);
             } catch (IllegalArgumentException e) {
                 throw new LuaError("Invalid shapeType: " + shapeType);
             }
+        }
+
+        public static FluidHandling parseFluidHandling(String fluidHandling) {
             try {
-                fluids = FluidHandling.valueOf(fluidHandling);
+                return FluidHandling.valueOf(fluidHandling);
             } catch (IllegalArgumentException e) {
-                throw new LuaError("Invalid shapeType: " + shapeType);
+                throw new LuaError("Invalid fluidHandling: " + fluidHandling);
             }
-
-            //Need some random entity for some reason, it doesn't affect anything in the actual method calls
-            FiguraRaycastContext result = new FiguraRaycastContext(start, end, shapes, fluids, new MarkerEntity(EntityType.MARKER, getWorld()));
-            result.predicate = (state, pos) -> predicate.call(BlockStateAPI.getTable(state,getWorld(),pos)).toboolean();
-            return result;
         }
 
         public FiguraRaycastContext(Vec3d start, Vec3d end, ShapeType shapeType, FluidHandling fluidHandling, Entity entity) {
@@ -3,6 +3,7 @@ package net.blancworks.figura.lua.api;
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
 import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.lua.GameStateSnapshot;
 import net.blancworks.figura.lua.api.block.BlockStateAPI;
 import net.blancworks.figura.lua.api.entity.EntityAPI;
 import net.blancworks.figura.lua.api.math.LuaVector;
@@ -11,6 +12,7 @@ import net.minecraft.client.MinecraftClient;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.util.Identifier;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.LightType;
 import net.minecraft.world.World;
 import org.luaj.vm2.*;
@@ -82,21 +84,24 @@ public class WorldAPI {
             set("getTime", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
-                    return LuaNumber.valueOf(getWorld().getTime());
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaNumber.valueOf(snapshot != null ? snapshot.time : getWorld().getTime());
                 }
             });
 
             set("getTimeOfDay", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
-                    return LuaNumber.valueOf(getWorld().getTimeOfDay());
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaNumber.valueOf(snapshot != null ? snapshot.timeOfDay : getWorld().getTimeOfDay());
                 }
             });
 
             set("getMoonPhase", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
-                    return LuaNumber.valueOf(getWorld().getMoonPhase());
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaNumber.valueOf(snapshot != null ? snapshot.moonPhase : getWorld().getMoonPhase());
                 }
             });
 
@@ -104,21 +109,29 @@ public class WorldAPI {
             set("getLunarTime", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
-                    return LuaNumber.valueOf(getWorld().getLunarTime());
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaNumber.valueOf(snapshot != null ? snapshot.lunarTime : getWorld().getLunarTime());
                 }
             });
 
             set("getRainGradient", new OneArgFunction() {
                 @Override
                 public LuaValue call(LuaValue a) {
-                    return LuaNumber.valueOf(getWorld().getRainGradient((float)(a.checkdouble())));
+                    float delta = (float) a.checkdouble();
+
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    if (snapshot != null)
+                        return LuaNumber.valueOf(MathHelper.lerp(delta, snapshot.prevRainGradient, snapshot.rainGradient));
+
+                    return LuaNumber.valueOf(getWorld().getRainGradient(delta));
                 }
             });
 
             set("isLightning", new OneArgFunction() {
                 @Override
                 public LuaValue call(LuaValue a) {
-                    return LuaBoolean.valueOf(getWorld().isThundering());
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    return LuaBoolean.valueOf(snapshot != null ? snapshot.thundering : getWorld().isThundering());
                 }
             });
 
@@ -179,7 +192,8 @@ public class WorldAPI {
                 public LuaValue call() {
                     LuaTable playerList = new LuaTable();
 
-                    for (PlayerEntity player : getWorld().getPlayers()) {
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    for (PlayerEntity player : snapshot != null ? snapshot.players : getWorld().getPlayers()) {
                         AvatarData data = AvatarDataManager.getDataForPlayer(player.getUuid());
                         if (data != null && data.script != null && !data.script.canBeTracked)
                             continue;
@@ -202,6 +216,10 @@ public class WorldAPI {
             set("hasWorld", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
+                    GameStateSnapshot snapshot = GameStateSnapshot.get();
+                    if (snapshot != null)
+                        return snapshot.hasWorld ? TRUE : FALSE;
+
                     return getWorld() == null ? FALSE : TRUE;
                 }
             });
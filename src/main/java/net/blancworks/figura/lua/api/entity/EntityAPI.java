@@ -2,6 +2,8 @@ package net.blancworks.figura.lua.api.entity;
 
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
+import net.blancworks.figura.lua.GameStateSnapshot;
+import net.blancworks.figura.lua.LazyLuaTable;
 import net.blancworks.figura.lua.api.NBTAPI;
 import net.blancworks.figura.lua.api.item.ItemStackAPI;
 import net.blancworks.figura.lua.api.math.LuaVector;
@@ -25,16 +27,25 @@ import org.luaj.vm2.lib.OneArgFunction;
 import org.luaj.vm2.lib.ZeroArgFunction;
 
 import java.util.Iterator;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 public class EntityAPI {
 
-    public static class EntityLuaAPITable<T extends Entity> extends LuaTable {
+    //entity tables filled this tick, only read to make the tables given to scripts, so the same entity is only filled once per tick
+    private static final Map<Entity, EntityLuaAPITable<?>> TICK_CACHE = new ConcurrentHashMap<>();
+
+    public static class EntityLuaAPITable<T extends Entity> extends LazyLuaTable {
         public Supplier<T> targetEntity;
 
         public EntityLuaAPITable(Supplier<T> targetEntity) {
             this.targetEntity = targetEntity;
+        }
+
+        @Override
+        protected void fill() {
             setTable();
         }
 
@@ -42,6 +53,10 @@ public class EntityAPI {
             set("getPos", new OneArgFunction() {
                 @Override
                 public LuaValue call(LuaValue arg) {
+                    GameStateSnapshot.EntityState state = GameStateSnapshot.getEntity(targetEntity.get());
+                    if (state != null)
+                        return LuaVector.of(arg.isnil() ? state.pos() : state.getLerpedPos(arg.tofloat()));
+
                     if (!arg.isnil())
                         return LuaVector.of(targetEntity.get().getLerpedPos(arg.tofloat()));
 
@@ -53,13 +68,14 @@ public class EntityAPI {
                 @Override
                 public LuaValue call(LuaValue arg) {
                     Entity e = targetEntity.get();
+                    GameStateSnapshot.EntityState state = GameStateSnapshot.getEntity(e);
 
-                    float pitch = e.getPitch();
-                    float yaw = e.getYaw();
+                    float pitch = state != null ? state.pitch() : e.getPitch();
+                    float yaw = state != null ? state.yaw() : e.getYaw();
 
                     if (!arg.isnil()) {
-                        pitch = MathHelper.lerp(arg.tofloat(), e.prevPitch, pitch);
-                        yaw = MathHelper.lerp(arg.tofloat(), e.prevYaw, yaw);
+                        pitch = MathHelper.lerp(arg.tofloat(), state != null ? state.prevPitch() : e.prevPitch, pitch);
+                        yaw = MathHelper.lerp(arg.tofloat(), state != null ? state.prevYaw() : e.prevYaw, yaw);
                     }
 
                     return new LuaVector(pitch, yaw);
@@ -77,6 +93,10 @@ public class EntityAPI {
                 @Override
                 public LuaValue call() {
                     Entity e = targetEntity.get();
+                    GameStateSnapshot.EntityState state = GameStateSnapshot.getEntity(e);
+                    if (state != null)
+                        return LuaVector.of(state.pos().subtract(state.prevPos()));
+
                     return LuaVector.of(e.getPos().subtract(new Vec3d(e.prevX, e.prevY, e.prevZ)));
                 }
             });
@@ -84,7 +104,8 @@ public class EntityAPI {
             set("getLookDir", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
-                    return LuaVector.of(targetEntity.get().getRotationVector());
+                    GameStateSnapshot.EntityState state = GameStateSnapshot.getEntity(targetEntity.get());
+                    return LuaVector.of(state != null ? state.lookDir() : targetEntity.get().getRotationVector());
                 }
             });
 
@@ -154,7 +175,8 @@ public class EntityAPI {
                 public LuaValue call() {
                     if (targetEntity == null) return NIL;
 
-                    EntityPose p = targetEntity.get().getPose();
+                    GameStateSnapshot.EntityState state = GameStateSnapshot.getEntity(targetEntity.get());
+                    EntityPose p = state != null ? state.pose() : targetEntity.get().getPose();
                     if (p == null)
                         return NIL;
 
@@ -174,7 +196,8 @@ public class EntityAPI {
             set("isOnGround", new ZeroArgFunction() {
                 @Override
                 public LuaValue call() {
-                    return LuaBoolean.valueOf(targetEntity.get().isOnGround());
+                    GameStateSnapshot.EntityState state = GameStateSnapshot.getEntity(targetEntity.get());
+                    return LuaBoolean.valueOf(state != null ? state.onGround() : targetEntity.get().isOnGround());
                 }
             });
 
@@ -375,6 +398,25 @@ public class EntityAPI {
     }
 
     public static LuaTable getTableForEntity(Entity entity) {
+        if (entity == null)
+            return createTableForEntity(null);
+
+        //every script gets its own table, so scripts can still write into it
+        EntityLuaAPITable<?> cached = TICK_CACHE.computeIfAbsent(entity, EntityAPI::createTableForEntity);
+        return new LazyLuaTable.Copy(cached) {
+            @Override
+            public LuaValue rawget(LuaValue key) {
+                cached.verifyEntityExists();
+                return super.rawget(key);
+            }
+        };
+    }
+
+    public static void clearTickCache() {
+        TICK_CACHE.clear();
+    }
+
+    private static EntityLuaAPITable<?> createTableForEntity(Entity entity) {
         if (entity instanceof PlayerEntity player)
             return new PlayerEntityAPI.PlayerEntityLuaAPITable(() -> player);
         else if (entity instanceof LivingEntity mob)
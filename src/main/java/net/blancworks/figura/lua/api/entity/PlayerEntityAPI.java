@@ -3,6 +3,7 @@ package net.blancworks.figura.lua.api.entity;
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
 import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.lua.GameStateSnapshot;
 import net.blancworks.figura.lua.api.item.ItemStackAPI;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
@@ -49,11 +50,12 @@ public class PlayerEntityAPI {
                     int hand = arg.checkint();
 
                     ItemStack targetStack;
+                    GameStateSnapshot.EntityState state = GameStateSnapshot.getEntity(targetEntity.get());
 
                     if (hand == 1)
-                        targetStack = targetEntity.get().getMainHandStack();
+                        targetStack = state != null ? state.mainHand() : targetEntity.get().getMainHandStack();
                     else if (hand == 2)
-                        targetStack = targetEntity.get().getOffHandStack();
+                        targetStack = state != null ? state.offHand() : targetEntity.get().getOffHandStack();
                     else
                         return NIL;
 
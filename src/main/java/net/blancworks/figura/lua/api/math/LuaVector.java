@@ -495,6 +495,12 @@ public class LuaVector extends LuaValue implements Iterable<Float> {
         return values.length;
     }
 
+    //copies the first count values into dest, missing values are 0, without boxing any of them
+    public void copyTo(float[] dest, int offset, int count) {
+        for (int i = 0; i < count; i++)
+            dest[offset + i] = i < values.length ? values[i] : 0f;
+    }
+
     public Float _get(Integer index) {
         if (index == null || index > 6 || index < 1) {
             return null;
@@ -1,5 +1,6 @@
 package net.blancworks.figura.lua.api.model;
 
+import net.blancworks.figura.access.ModelPartAccess;
 import net.blancworks.figura.lua.CustomScript;
 import net.blancworks.figura.lua.api.math.LuaVector;
 import net.blancworks.figura.mixin.PlayerEntityModelAccessorMixin;
@@ -13,6 +14,7 @@ import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 import org.luaj.vm2.lib.ZeroArgFunction;
 
+import java.util.List;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
@@ -39,10 +41,36 @@ public class VanillaModelAPI {
     public static final String VANILLA_LEFT_EAR = "LEFT_EAR";
     public static final String VANILLA_RIGHT_EAR = "RIGHT_EAR";
 
+    //the parts customized on every player model render, in the order of getBodyParts
+    public static final String[] BODY_PARTS = {
+            VANILLA_HEAD, VANILLA_TORSO, VANILLA_LEFT_ARM, VANILLA_RIGHT_ARM, VANILLA_LEFT_LEG, VANILLA_RIGHT_LEG,
+            VANILLA_HAT, VANILLA_JACKET, VANILLA_LEFT_SLEEVE, VANILLA_RIGHT_SLEEVE, VANILLA_LEFT_PANTS, VANILLA_RIGHT_PANTS
+    };
+
     public static Identifier getID() {
         return new Identifier("default", "vanilla_model");
     }
 
+    public static ModelPart[] getBodyParts(PlayerEntityModel<?> model) {
+        return new ModelPart[] {
+                model.head, model.body, model.leftArm, model.rightArm, model.leftLeg, model.rightLeg,
+                model.hat, model.jacket, model.leftSleeve, model.rightSleeve, model.leftPants, model.rightPants
+        };
+    }
+
+    //hands the script's body customizations to the model parts, skipping the ones which change nothing
+    public static void applyBodyCustomizations(CustomScript script, ModelPart[] parts, List<ModelPart> customizedParts) {
+        VanillaModelPartCustomization[] customizations = script.getBodyPartCustomizations();
+        for (int i = 0; i < parts.length; i++) {
+            VanillaModelPartCustomization customization = customizations[i];
+            if (customization == null || customization.getFlags() == 0)
+                continue;
+
+            ((ModelPartAccess) (Object) parts[i]).figura$setPartCustomization(customization);
+            customizedParts.add(parts[i]);
+        }
+    }
+
     public static Function<CustomScript, PlayerEntityModel<?>> getCurrModel = (script) -> (PlayerEntityModel<?>) script.avatarData.vanillaModel;
 
     public static LuaTable getForScript(CustomScript script) {
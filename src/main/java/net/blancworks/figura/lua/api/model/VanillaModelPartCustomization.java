@@ -18,6 +18,76 @@ public class VanillaModelPartCustomization {
     public MatrixStack.Entry stackReference;
     public CustomModelPart part;
 
+    //what the model part mixin applies, compiled from the values above when a setter changed them
+    public static final int HAS_POS = 1;
+    public static final int HAS_ROT = 2;
+    public static final int HAS_SCALE = 4;
+    public static final int HIDDEN = 8;
+
+    private volatile boolean dirty = true;
+    private int flags;
+    public float posX, posY, posZ;
+    public float pitch, yaw, roll;
+    public float scaleX = 1f, scaleY = 1f, scaleZ = 1f;
+
+    public void setPos(Vec3f pos) {
+        this.pos = pos;
+        dirty = true;
+    }
+
+    public void setRot(Vec3f rot) {
+        this.rot = rot;
+        dirty = true;
+    }
+
+    public void setScale(Vec3f scale) {
+        this.scale = scale;
+        dirty = true;
+    }
+
+    public void setVisible(Boolean visible) {
+        this.visible = visible;
+        dirty = true;
+    }
+
+    //which parts of the customization change anything, 0 if it can be skipped
+    public int getFlags() {
+        if (dirty)
+            compile();
+        return flags;
+    }
+
+    private void compile() {
+        dirty = false;
+
+        Vec3f pos = this.pos, rot = this.rot, scale = this.scale;
+        int flags = 0;
+
+        posX = pos == null ? 0f : pos.getX();
+        posY = pos == null ? 0f : pos.getY();
+        posZ = pos == null ? 0f : pos.getZ();
+        if (posX != 0f || posY != 0f || posZ != 0f)
+            flags |= HAS_POS;
+
+        pitch = rot == null ? 0f : rot.getX();
+        yaw = rot == null ? 0f : rot.getY();
+        roll = rot == null ? 0f : rot.getZ();
+        if (pitch != 0f || yaw != 0f || roll != 0f)
+            flags |= HAS_ROT;
+
+        scaleX = scale == null ? 1f : scale.getX();
+        scaleY = scale == null ? 1f : scale.getY();
+        scaleZ = scale == null ? 1f : scale.getZ();
+        if (scaleX != 1f || scaleY != 1f || scaleZ != 1f)
+            flags |= HAS_SCALE;
+
+        //customizations can only hide a part, never show a hidden one
+        if (visible != null && !visible)
+            flags |= HIDDEN;
+
+        this.flags = flags;
+    }
+
     public static LuaTable getTableForPart(String accessor, CustomScript targetScript) {
         return new LuaTable() {{
             set("getPos", new ZeroArgFunction() {
@@ -30,7 +100,7 @@ public class VanillaModelPartCustomization {
             set("setPos", new OneArgFunction() {
                 @Override
                 public LuaValue call(LuaValue arg1) {
-                    targetScript.getOrMakePartCustomization(accessor).pos = LuaVector.checkOrNew(arg1).asV3f();
+                    targetScript.getOrMakePartCustomization(accessor).setPos(LuaVector.checkOrNew(arg1).asV3f());
                     return NIL;
                 }
             });
@@ -45,7 +115,7 @@ public class VanillaModelPartCustomization {
             set("setRot", new OneArgFunction() {
                 @Override
                 public LuaValue call(LuaValue arg1) {
-                    targetScript.getOrMakePartCustomization(accessor).rot = LuaVector.checkOrNew(arg1).asV3f();
+                    targetScript.getOrMakePartCustomization(accessor).setRot(LuaVector.checkOrNew(arg1).asV3f());
                     return NIL;
                 }
             });
@@ -60,7 +130,7 @@ public class VanillaModelPartCustomization {
             set("setScale", new OneArgFunction() {
                 @Override
                 public LuaValue call(LuaValue arg1) {
-                    targetScript.getOrMakePartCustomization(accessor).scale = LuaVector.checkOrNew(arg1).asV3f();
+                    targetScript.getOrMakePartCustomization(accessor).setScale(LuaVector.checkOrNew(arg1).asV3f());
                     return NIL;
                 }
             });
@@ -76,7 +146,7 @@ public class VanillaModelPartCustomization {
             set("setEnabled", new OneArgFunction() {
                 @Override
                 public LuaValue call(LuaValue arg) {
-                    targetScript.getOrMakePartCustomization(accessor).visible = arg.isnil() ? null : arg.checkboolean();
+                    targetScript.getOrMakePartCustomization(accessor).setVisible(arg.isnil() ? null : arg.checkboolean());
                     return NIL;
                 }
             });
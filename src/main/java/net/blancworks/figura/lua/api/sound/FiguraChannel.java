@@ -2,6 +2,7 @@ package net.blancworks.figura.lua.api.sound;
 
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.access.SourceManagerAccessor;
+import net.blancworks.figura.config.ConfigManager.Config;
 import net.blancworks.figura.lua.CustomScript;
 import net.blancworks.figura.mixin.ChannelAccessorMixin;
 import net.blancworks.figura.trust.TrustContainer;
@@ -15,15 +16,49 @@ import net.minecraft.util.math.MathHelper;
 import net.minecraft.util.math.Vec3d;
 import org.luaj.vm2.LuaError;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+/**
+ * Plays the avatars custom sounds.
+ * Playing sources are indexed by owner and sound name, so stopping a sound only touches the sources it names.
+ * Scripts run on their own threads, so plays and stops are queued and applied on the client thread, in the order they were made.
+ */
 public class FiguraChannel extends Channel {
 
-    private final HashSet<StopSoundRequest> stopSoundRequests = new HashSet<>();
-    private boolean stopAllSounds = false;
+    //how many sounds a single avatar can have playing at once
+    public static int getMaxVoicesPerAvatar() {
+        return Math.max((int) Config.SOUND_VOICE_LIMIT.value, 1);
+    }
+
+    /**
+     * A playing custom sound.
+     * When an avatar is out of voices, the one with the lowest priority is stolen, the oldest one between equal priorities.
+     */
+    public record Voice(SourceManager sourceManager, UUID owner, String name, int priority, long order) {}
+
+    //owner -> sound name -> voices
+    private final Map<UUID, Map<String, List<Voice>>> voicesByOwner = new HashMap<>();
+    private final Map<UUID, Integer> voiceCounts = new HashMap<>();
+    private final Map<SourceManager, Voice> voices = new IdentityHashMap<>();
+    private long voiceOrder = 0;
+
+    //what scripts see of the playing sounds, rebuilt when it changes
+    private volatile List<Voice> playingSnapshot = List.of();
+    private boolean snapshotDirty = false;
+
+    private final ConcurrentLinkedQueue<Runnable> requests = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean requestsScheduled = new AtomicBoolean(false);
+    private volatile boolean stopAllSounds = false;
 
     public FiguraChannel() {
         super(FiguraSoundManager.getSoundEngine(), Runnable::run);
@@ -33,6 +68,10 @@ public class FiguraChannel extends Channel {
         return ((ChannelAccessorMixin) this).getSources();
     }
 
+    public List<Voice> getPlayingSounds() {
+        return playingSnapshot;
+    }
+
     public static Source getSource(SourceManager sourceManager) {
         return ((SourceManagerAccessor) sourceManager).getSource();
     }
@@ -51,34 +90,58 @@ public class FiguraChannel extends Channel {
         if (options.getSoundVolume(SoundCategory.PLAYERS) <= 0 || options.getSoundVolume(SoundCategory.MASTER) <= 0)
             stopAllSounds = true;
 
+        if (stopAllSounds) {
+            stopAllSounds = false;
+            requests.clear();
+            stopAll();
+        }
+
+        processRequests();
+
+        //reap finished sources in place
         Set<SourceManager> sources = getSourceManagers();
-        for (SourceManager sourceManager : new HashSet<>(sources)) {
+        Iterator<SourceManager> iterator = sources.iterator();
+        while (iterator.hasNext()) {
+            SourceManager sourceManager = iterator.next();
             Source src = getSource(sourceManager);
-
-            boolean removePlayer = stopSoundRequests.stream().anyMatch(req -> req.shouldStop(sourceManager));
-            if (src == null || removePlayer || stopAllSounds) {
-                if (src != null)
-                    src.stop();
-                sourceManager.close();
-                sources.remove(sourceManager);
-                continue;
+            if (src != null) {
+                src.tick();
+                if (!src.isStopped())
+                    continue;
             }
 
-            src.tick();
-            if (src.isStopped()) {
-                sourceManager.close();
-                sources.remove(sourceManager);
-            }
+            sourceManager.close();
+            iterator.remove();
+            unindex(voices.get(sourceManager));
         }
 
-        stopSoundRequests.clear();
-        stopAllSounds = false;
+        if (snapshotDirty) {
+            snapshotDirty = false;
+            playingSnapshot = List.copyOf(voices.values());
+        }
+    }
+
+    //runs the queued plays and stops, only on the client thread
+    private void processRequests() {
+        requestsScheduled.set(false);
+
+        Runnable request;
+        while ((request = requests.poll()) != null)
+            request.run();
+    }
+
+    private void queueRequest(Runnable request) {
+        requests.add(request);
+
+        //don't wait for the next tick to start a sound
+        if (requestsScheduled.compareAndSet(false, true))
+            MinecraftClient.getInstance().execute(this::processRequests);
     }
 
     public CompletableFuture<SourceManager> createSource(AvatarData soundOwner, String name, SoundEngine.RunMode mode) {
         CompletableFuture<SourceManager> future = super.createSource(mode);
         future.thenApply((sm) -> {
-            ((SourceManagerAccessor) sm).setOwner(soundOwner.lastEntity.getUuid());
+            ((SourceManagerAccessor) sm).setOwner(soundOwner.entityId);
             ((SourceManagerAccessor) sm).setName(name);
             return sm;
         });
@@ -87,6 +150,10 @@ public class FiguraChannel extends Channel {
     }
 
     public void playCustomSound(CustomScript script, String soundName, Vec3d pos, float volume, float pitch) {
+        playCustomSound(script, soundName, pos, volume, pitch, 0);
+    }
+
+    public void playCustomSound(CustomScript script, String soundName, Vec3d pos, float volume, float pitch, int priority) {
         if (script.avatarData.getTrustContainer().getTrust(TrustContainer.Trust.CUSTOM_SOUNDS) == 0 || script.soundSpawnCount < 1 || pitch <= 0f || volume <= 0f) return;
         script.soundSpawnCount--;
 
@@ -94,56 +161,148 @@ public class FiguraChannel extends Channel {
         if (sound == null)
             throw new LuaError("Custom sound \"" + soundName + "\" is not defined, or cannot be empty!");
 
-        createSource(script.avatarData, soundName, SoundEngine.RunMode.STATIC).thenAccept(sourceManager -> sourceManager.run(source -> {
-            if (source != null) {
-                source.setAttenuation(Math.max(volume * 16f, 16f));
-                source.setBuffer(sound.sound());
-                source.setPosition(pos);
-                source.setVolume(MathHelper.clamp(volume * MinecraftClient.getInstance().options.getSoundVolume(SoundCategory.PLAYERS), 0f, 1f));
-                source.setPitch(pitch);
-                source.play();
+        AvatarData avatar = script.avatarData;
+        queueRequest(() -> {
+            //a full avatar replaces its lowest priority, oldest sound, unless every playing sound outranks the new one
+            Voice victim = null;
+            if (voiceCounts.getOrDefault(avatar.entityId, 0) >= getMaxVoicesPerAvatar()) {
+                victim = findVictim(avatar.entityId);
+                if (victim == null || victim.priority > priority)
+                    return;
             }
-        }));
+
+            SourceManager sourceManager = createSource(avatar, soundName, SoundEngine.RunMode.STATIC).getNow(null);
+            if (sourceManager == null)
+                return;
+
+            //only replace the old sound once the new one is sure to play
+            if (victim != null)
+                stopVoice(victim);
+
+            index(new Voice(sourceManager, avatar.entityId, soundName, priority, voiceOrder++));
+            sourceManager.run(source -> {
+                if (source != null) {
+                    source.setAttenuation(Math.max(volume * 16f, 16f));
+                    source.setBuffer(sound.sound());
+                    source.setPosition(pos);
+                    source.setVolume(MathHelper.clamp(volume * MinecraftClient.getInstance().options.getSoundVolume(SoundCategory.PLAYERS), 0f, 1f));
+                    source.setPitch(pitch);
+                    source.play();
+                }
+            });
+        });
     }
 
     public void stopAllSounds() {
         stopAllSounds = true;
-        stopSoundRequests.clear();
     }
 
     public void stopSound(String soundName, UUID ownerId) {
-        stopSoundRequests.add(new StopSoundRequest(soundName, ownerId));
+        queueRequest(() -> {
+            Map<String, List<Voice>> byName = voicesByOwner.get(ownerId);
+            if (byName == null)
+                return;
+
+            List<Voice> list = byName.get(soundName);
+            if (list != null)
+                stopVoices(new ArrayList<>(list));
+        });
     }
 
     public void stopSound(String soundName) {
-        stopSoundRequests.add(new StopSoundRequest(soundName));
+        queueRequest(() -> {
+            List<Voice> toStop = new ArrayList<>();
+            for (Map<String, List<Voice>> byName : voicesByOwner.values()) {
+                List<Voice> list = byName.get(soundName);
+                if (list != null)
+                    toStop.addAll(list);
+            }
+            stopVoices(toStop);
+        });
     }
 
     public void stopSound(UUID ownerId) {
-        stopSoundRequests.add(new StopSoundRequest(ownerId));
+        queueRequest(() -> {
+            Map<String, List<Voice>> byName = voicesByOwner.get(ownerId);
+            if (byName == null)
+                return;
+
+            List<Voice> toStop = new ArrayList<>();
+            byName.values().forEach(toStop::addAll);
+            stopVoices(toStop);
+        });
     }
 
-    protected class StopSoundRequest {
-        private final String soundName;
-        private final UUID ownerId;
+    // -- voices -- //
 
-        public StopSoundRequest(String soundName) {
-            this(soundName, null);
+    //the owner's lowest priority sound, the oldest one on ties
+    private Voice findVictim(UUID owner) {
+        Voice victim = null;
+        for (List<Voice> list : voicesByOwner.get(owner).values()) {
+            for (Voice voice : list) {
+                if (victim == null || voice.priority < victim.priority || (voice.priority == victim.priority && voice.order < victim.order))
+                    victim = voice;
+            }
         }
 
-        public StopSoundRequest(UUID ownerId) {
-            this(null, ownerId);
-        }
+        return victim;
+    }
+
+    private void stopVoices(List<Voice> toStop) {
+        for (Voice voice : toStop)
+            stopVoice(voice);
+    }
 
-        public StopSoundRequest(String soundName, UUID ownerId) {
-            this.soundName = soundName;
-            this.ownerId = ownerId;
+    private void stopVoice(Voice voice) {
+        SourceManager sourceManager = voice.sourceManager;
+        Source src = getSource(sourceManager);
+        if (src != null)
+            src.stop();
+
+        sourceManager.close();
+        getSourceManagers().remove(sourceManager);
+        unindex(voice);
+    }
+
+    private void stopAll() {
+        Iterator<SourceManager> iterator = getSourceManagers().iterator();
+        while (iterator.hasNext()) {
+            SourceManager sourceManager = iterator.next();
+            Source src = getSource(sourceManager);
+            if (src != null)
+                src.stop();
+
+            sourceManager.close();
+            iterator.remove();
         }
 
-        protected boolean shouldStop(SourceManager sourceManager) {
-            boolean a = ownerId   == null || getSourceOwner(sourceManager).equals(ownerId);
-            boolean b = soundName == null || getSourceName(sourceManager).equals(soundName);
-            return a && b;
+        voicesByOwner.clear();
+        voiceCounts.clear();
+        voices.clear();
+        snapshotDirty = true;
+    }
+
+    private void index(Voice voice) {
+        voices.put(voice.sourceManager, voice);
+        voicesByOwner.computeIfAbsent(voice.owner, k -> new HashMap<>()).computeIfAbsent(voice.name, k -> new ArrayList<>(1)).add(voice);
+        voiceCounts.merge(voice.owner, 1, Integer::sum);
+        snapshotDirty = true;
+    }
+
+    private void unindex(Voice voice) {
+        if (voice == null || voices.remove(voice.sourceManager) == null)
+            return;
+
+        Map<String, List<Voice>> byName = voicesByOwner.get(voice.owner);
+        if (byName != null) {
+            List<Voice> list = byName.get(voice.name);
+            if (list != null && list.remove(voice) && list.isEmpty())
+                byName.remove(voice.name);
+            if (byName.isEmpty())
+                voicesByOwner.remove(voice.owner);
         }
+
+        voiceCounts.computeIfPresent(voice.owner, (k, count) -> count <= 1 ? null : count - 1);
+        snapshotDirty = true;
     }
 }
@@ -1,6 +1,5 @@
 package net.blancworks.figura.lua.api.sound;
 
-import net.blancworks.figura.access.SourceManagerAccessor;
 import net.blancworks.figura.lua.CustomScript;
 import net.blancworks.figura.lua.api.math.LuaVector;
 import net.blancworks.figura.mixin.SoundManagerAccessorMixin;
@@ -17,9 +16,11 @@ import org.luaj.vm2.LuaBoolean;
 import org.luaj.vm2.LuaString;
 import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
+import org.luaj.vm2.Varargs;
 import org.luaj.vm2.lib.OneArgFunction;
 import org.luaj.vm2.lib.ThreeArgFunction;
 import org.luaj.vm2.lib.TwoArgFunction;
+import org.luaj.vm2.lib.VarArgFunction;
 import org.luaj.vm2.lib.ZeroArgFunction;
 
 import java.util.*;
@@ -86,11 +87,13 @@ public class SoundAPI {
                 }
             });
 
-            set("playCustomSound", new ThreeArgFunction() {
+            set("playCustomSound", new VarArgFunction() {
                 @Override
-                public LuaValue call(LuaValue arg1, LuaValue arg2, LuaValue arg3) {
-                    LuaVector pitchVol = arg3.isnil() ? new LuaVector(1f, 1f) : LuaVector.checkOrNew(arg3);
-                    FiguraSoundManager.getChannel().playCustomSound(script, arg1.checkjstring(), LuaVector.checkOrNew(arg2).asV3d(), pitchVol.x(), pitchVol.y());
+                public Varargs invoke(Varargs args) {
+                    LuaVector pitchVol = args.arg(3).isnil() ? new LuaVector(1f, 1f) : LuaVector.checkOrNew(args.arg(3));
+                    //higher priority sounds take the voice of lower ones when the avatar plays too many at once
+                    int priority = args.arg(4).optint(0);
+                    FiguraSoundManager.getChannel().playCustomSound(script, args.checkjstring(1), LuaVector.checkOrNew(args.arg(2)).asV3d(), pitchVol.x(), pitchVol.y(), priority);
                     return NIL;
                 }
             });
@@ -102,14 +105,12 @@ public class SoundAPI {
 
                     LuaTable tbl = new LuaTable();
                     int i = 1;
-                    for (Channel.SourceManager sourceManager : new HashSet<>(FiguraSoundManager.getChannel().getSourceManagers())) {
-                        String soundName = ((SourceManagerAccessor)sourceManager).getName();
-                        tbl.set(i, LuaString.valueOf(soundName));
+                    for (FiguraChannel.Voice voice : FiguraSoundManager.getChannel().getPlayingSounds()) {
+                        tbl.set(i, LuaString.valueOf(voice.name()));
                         i++;
 
                         if (showUUIDs) {
-                            UUID owner = FiguraChannel.getSourceOwner(sourceManager);
-                            tbl.set(i, LuaString.valueOf(owner.toString()));
+                            tbl.set(i, LuaString.valueOf(voice.owner().toString()));
                             i++;
                         }
                     }
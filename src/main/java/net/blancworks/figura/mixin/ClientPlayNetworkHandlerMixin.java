@@ -0,0 +1,18 @@
+package net.blancworks.figura.mixin;
+
+import net.blancworks.figura.lua.api.ArgumentCache;
+import net.minecraft.client.network.ClientPlayNetworkHandler;
+import net.minecraft.network.packet.s2c.play.SynchronizeTagsS2CPacket;
+import org.spongepowered.asm.mixin.Mixin;
+import org.spongepowered.asm.mixin.injection.At;
+import org.spongepowered.asm.mixin.injection.Inject;
+import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
+
+@Mixin(ClientPlayNetworkHandler.class)
+public class ClientPlayNetworkHandlerMixin {
+    @Inject(at = @At("TAIL"), method = "onSynchronizeTags")
+    public void onSynchronizeTags(SynchronizeTagsS2CPacket packet, CallbackInfo ci) {
+        //datapack reloads change the tags without changing the world
+        ArgumentCache.clearTags();
+    }
+}
@@ -3,7 +3,10 @@ package net.blancworks.figura.mixin;
 import net.blancworks.figura.FiguraMod;
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
+import net.blancworks.figura.avatar.AvatarTelemetry;
 import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.lua.api.ParticleBudget;
+import net.blancworks.figura.models.shaders.BatchedVertexConsumerProvider;
 import net.minecraft.client.gui.hud.DebugHud;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.injection.At;
@@ -45,6 +48,11 @@ public class DebugHudMixin {
             }
         }
         lines.add(++i, String.format("Pings per second: ↑%d, ↓%d", CustomScript.pingSent, CustomScript.pingReceived));
+        lines.add(++i, String.format("Batched draws: %d (%d merged)", BatchedVertexConsumerProvider.lastDrawCalls, BatchedVertexConsumerProvider.lastMergedDraws));
+        lines.add(++i, String.format("Particles: %d/%d (%d dropped)", ParticleBudget.lastSpawned, ParticleBudget.getBudget(), ParticleBudget.lastDropped));
+
+        for (String line : AvatarTelemetry.getOverlayLines())
+            lines.add(++i, line);
 
         lines.add(++i, "");
     }
@@ -57,7 +57,7 @@ public class ElytraEntityModelMixin<T extends LivingEntity> extends AnimalModel<
 
                 if (originModification != null && originModification.stackReference != null) {
                     if (originModification.visible != null && originModification.visible) {
-                        originModification.visible = null;
+                        originModification.setVisible(null);
                         MatrixStackAccess msa = (MatrixStackAccess) new MatrixStack();
                         msa.pushEntry(originModification.stackReference);
                         getLeftWing().render((MatrixStack) msa, vertices, light, overlay, red, green, blue, alpha);
@@ -71,7 +71,7 @@ public class ElytraEntityModelMixin<T extends LivingEntity> extends AnimalModel<
 
                 if (originModification != null && originModification.stackReference != null) {
                     if (originModification.visible != null && originModification.visible) {
-                        originModification.visible = null;
+                        originModification.setVisible(null);
                         MatrixStackAccess msa = (MatrixStackAccess) new MatrixStack();
                         msa.pushEntry(originModification.stackReference);
                         getRightWing().render((MatrixStack) msa, vertices, light, overlay, red, green, blue, alpha);
@@ -57,7 +57,7 @@ public class HeldItemFeatureRendererMixin<T extends LivingEntity, M extends Enti
                         figura$CustomOriginPointRender(entity, stack, transformationMode, arm, originModification.stackReference, vertexConsumers, light);
 
                         //flag to not render anymore
-                        originModification.visible = null;
+                        originModification.setVisible(null);
 
                         //return
                         ci.cancel();
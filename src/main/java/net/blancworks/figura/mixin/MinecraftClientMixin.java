@@ -1,19 +1,22 @@
 package net.blancworks.figura.mixin;
 
 import net.blancworks.figura.FiguraMod;
+import net.blancworks.figura.avatar.AvatarAnimator;
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
+import net.blancworks.figura.avatar.AvatarHeadCache;
+import net.blancworks.figura.avatar.AvatarRenderHarness;
+import net.blancworks.figura.avatar.AvatarTelemetry;
 import net.blancworks.figura.config.ConfigManager.Config;
 import net.blancworks.figura.gui.ActionWheel;
 import net.blancworks.figura.gui.PlayerPopup;
 import net.blancworks.figura.gui.NewActionWheel;
+import net.blancworks.figura.lua.api.ParticleBudget;
 import net.blancworks.figura.lua.api.RenderLayerAPI;
 import net.blancworks.figura.lua.api.keybind.FiguraKeybind;
 import net.blancworks.figura.lua.api.sound.FiguraSoundManager;
-import net.blancworks.figura.models.CustomModel;
-import net.blancworks.figura.models.animations.Animation;
 import net.blancworks.figura.models.shaders.FiguraVertexConsumerProvider;
-import net.blancworks.figura.trust.TrustContainer;
+import net.blancworks.figura.network.PingReplay;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.Mouse;
 import net.minecraft.client.gui.hud.InGameHud;
@@ -54,24 +57,15 @@ public class MinecraftClientMixin {
 
     @Inject(at = @At("HEAD"), method = "render")
     public void preRender(boolean tick, CallbackInfo ci) {
-        //process animations
-        synchronized (AvatarDataManager.LOADED_PLAYER_DATA) {
-            for (AvatarData data : AvatarDataManager.LOADED_PLAYER_DATA.values()) {
-                if (data == null || data.model == null || !data.model.isDone)
-                    continue;
-
-                CustomModel model = data.model;
-                model.animRendered = 0;
-                model.animMaxRender = data.getTrustContainer().getTrust(TrustContainer.Trust.BB_ANIMATIONS);
-                if (model.animMaxRender <= 0)
-                    continue;
-
-                for (Animation anim : model.animations.values()) {
-                    if (anim.playState != Animation.PlayState.STOPPED)
-                        model.animRendered = anim.render(model.animRendered, model.animMaxRender);
-                }
-            }
-        }
+        //spawn the particles scripts emitted since the last frame
+        ParticleBudget.spawnPending();
+        AvatarHeadCache.beginFrame();
+
+        //process animations, poses are ready once this returns
+        AvatarAnimator.animate();
+
+        //a running render harness renders one frame per game frame
+        AvatarRenderHarness.onFrame();
     }
 
     @Inject(at = @At("RETURN"), method = "render")
@@ -90,16 +84,7 @@ public class MinecraftClientMixin {
             FiguraVertexConsumerProvider.isUsingLastFramebuffer = false;
         }
 
-        //clear animations
-        synchronized (AvatarDataManager.LOADED_PLAYER_DATA) {
-            for (AvatarData data : AvatarDataManager.LOADED_PLAYER_DATA.values()) {
-                if (data == null || data.model == null || !data.model.isDone)
-                    continue;
-
-                for (Animation anim : data.model.animations.values())
-                    anim.clearAnimData();
-            }
-        }
+        AvatarTelemetry.endFrame();
     }
 
     @ModifyArg(method = "render", at = @At(value = "INVOKE", target = "Lcom/mojang/blaze3d/systems/RenderSystem;clear(IZ)V"), index = 0)
@@ -125,6 +110,15 @@ public class MinecraftClientMixin {
             return;
         }
 
+        if (FiguraMod.PERFORMANCE_EXPORT_BUTTON.wasPressed())
+            AvatarTelemetry.export();
+
+        if (FiguraMod.PING_REPLAY_BUTTON.wasPressed())
+            PingReplay.replayLatest();
+
+        if (FiguraMod.BENCHMARK_BUTTON.wasPressed())
+            AvatarRenderHarness.runSelected();
+
         if (AvatarDataManager.panic) return;
 
         if (FiguraMod.ACTION_WHEEL_BUTTON.isPressed()) {
@@ -4,7 +4,6 @@ import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
 import net.blancworks.figura.access.ModelPartAccess;
 import net.blancworks.figura.lua.api.model.VanillaModelAPI;
-import net.blancworks.figura.lua.api.model.VanillaModelPartCustomization;
 import net.blancworks.figura.trust.TrustContainer;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.model.ModelPart;
@@ -12,7 +11,6 @@ import net.minecraft.client.render.VertexConsumerProvider;
 import net.minecraft.client.render.entity.*;
 import net.minecraft.client.render.entity.model.EntityModel;
 import net.minecraft.client.util.math.MatrixStack;
-import net.minecraft.entity.Entity;
 import net.minecraft.entity.mob.MobEntity;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Unique;
@@ -42,19 +40,7 @@ public abstract class MobEntityRendererMixin<T extends MobEntity, M extends Enti
 
         if (mob instanceof PiglinEntityRenderer renderer) {
             if (data != null && data.script != null && data.getTrustContainer().getTrust(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 1) {
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_HEAD, renderer.getModel().head, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_TORSO, renderer.getModel().body, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_ARM, renderer.getModel().leftArm, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_ARM, renderer.getModel().rightArm, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_LEG, renderer.getModel().leftLeg, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_LEG, renderer.getModel().rightLeg, entity);
-
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_HAT, renderer.getModel().hat, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_JACKET, renderer.getModel().jacket, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_SLEEVE, renderer.getModel().leftSleeve, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_SLEEVE, renderer.getModel().rightSleeve, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_PANTS, renderer.getModel().leftPants, entity);
-                figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_PANTS, renderer.getModel().rightPants, entity);
+                VanillaModelAPI.applyBodyCustomizations(data.script, VanillaModelAPI.getBodyParts(renderer.getModel()), figura$customizedParts);
 
                 if (data.script.customShadowSize != null)
                     shadowRadius = data.script.customShadowSize;
@@ -78,19 +64,6 @@ public abstract class MobEntityRendererMixin<T extends MobEntity, M extends Enti
         figura$clearAllPartCustomizations();
     }
 
-    public void figura$applyPartCustomization(String id, ModelPart part, Entity entity) {
-        AvatarData data = AvatarDataManager.getDataForEntity(entity);
-
-        if (data != null && data.script != null && data.script.allCustomizations != null) {
-            VanillaModelPartCustomization customization = data.script.allCustomizations.get(id);
-
-            if (customization != null) {
-                ((ModelPartAccess) (Object) part).figura$setPartCustomization(customization);
-                figura$customizedParts.add(part);
-            }
-        }
-    }
-
     public void figura$clearAllPartCustomizations() {
         for (ModelPart part : figura$customizedParts) {
             ((ModelPartAccess) (Object) part).figura$setPartCustomization(null);
@@ -5,9 +5,9 @@ import net.blancworks.figura.lua.api.model.VanillaModelPartCustomization;
 import net.minecraft.client.model.ModelPart;
 import net.minecraft.client.render.VertexConsumer;
 import net.minecraft.client.util.math.MatrixStack;
-import net.minecraft.util.math.Vec3f;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Shadow;
+import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
 import org.spongepowered.asm.mixin.injection.Inject;
 import org.spongepowered.asm.mixin.injection.callback.CallbackInfo;
@@ -31,67 +31,79 @@ public class ModelPartMixin implements ModelPartAccess {
     public boolean visible;
     private VanillaModelPartCustomization figura$customization = null;
 
-    private boolean prevVisible;
+    @Unique private boolean figura$scaled = false;
 
-    //Modify transformation matrices for this part
+    //pose vanilla had before the customization was added, restored once rotate returns
+    @Unique private boolean figura$rotated = false;
+    @Unique private float figura$pivotX, figura$pivotY, figura$pivotZ, figura$pitch, figura$yaw, figura$roll;
+
+    //Add the customization to the pose, so vanilla rotate (and anything else hooking it) transforms with it
     @Inject(at = @At("HEAD"), method = "rotate")
-    public void onRotate(MatrixStack matrices, CallbackInfo info) {
-        if (figura$customization != null) {
-            if (figura$customization.pos != null) {
-                pivotX += figura$customization.pos.getX();
-                pivotY += figura$customization.pos.getY();
-                pivotZ += figura$customization.pos.getZ();
-            }
-
-            if (figura$customization.rot != null) {
-                pitch += figura$customization.rot.getX();
-                yaw += figura$customization.rot.getY();
-                roll += figura$customization.rot.getZ();
-            }
-        }
+    public void onRotate(MatrixStack matrices, CallbackInfo ci) {
+        VanillaModelPartCustomization customization = figura$customization;
+        if (customization == null || (customization.getFlags() & (VanillaModelPartCustomization.HAS_POS | VanillaModelPartCustomization.HAS_ROT)) == 0)
+            return;
+
+        figura$pivotX = pivotX;
+        figura$pivotY = pivotY;
+        figura$pivotZ = pivotZ;
+        figura$pitch = pitch;
+        figura$yaw = yaw;
+        figura$roll = roll;
+        figura$rotated = true;
+
+        pivotX += customization.posX;
+        pivotY += customization.posY;
+        pivotZ += customization.posZ;
+        pitch += customization.pitch;
+        yaw += customization.yaw;
+        roll += customization.roll;
     }
 
-    //Restore matrices
+    //Restore the vanilla pose, exactly as it was
     @Inject(at = @At("RETURN"), method = "rotate")
-    public void postRotate(MatrixStack matrices, CallbackInfo info) {
-        if (figura$customization != null) {
-            if (figura$customization.pos != null) {
-                pivotX -= figura$customization.pos.getX();
-                pivotY -= figura$customization.pos.getY();
-                pivotZ -= figura$customization.pos.getZ();
-            }
-
-            if (figura$customization.rot != null) {
-                pitch -= figura$customization.rot.getX();
-                yaw -= figura$customization.rot.getY();
-                roll -= figura$customization.rot.getZ();
-            }
-        }
+    public void postRotate(MatrixStack matrices, CallbackInfo ci) {
+        if (!figura$rotated)
+            return;
+
+        figura$rotated = false;
+        pivotX = figura$pivotX;
+        pivotY = figura$pivotY;
+        pivotZ = figura$pivotZ;
+        pitch = figura$pitch;
+        yaw = figura$yaw;
+        roll = figura$roll;
     }
 
-    //Store/Modify visible state
-    @Inject(at = @At("HEAD"), method = "render(Lnet/minecraft/client/util/math/MatrixStack;Lnet/minecraft/client/render/VertexConsumer;IIFFFF)V")
+    //Hide or scale this part
+    @Inject(at = @At("HEAD"), method = "render(Lnet/minecraft/client/util/math/MatrixStack;Lnet/minecraft/client/render/VertexConsumer;IIFFFF)V", cancellable = true)
     public void onRender(MatrixStack matrices, VertexConsumer vertices, int light, int overlay, float red, float green, float blue, float alpha, CallbackInfo ci) {
-        prevVisible = visible;
-        matrices.push();
-        if (figura$customization != null) {
-
-            if (visible && figura$customization.visible != null) {
-                visible = figura$customization.visible;
-            }
-
-            if (figura$customization.scale != null) {
-                Vec3f scale = figura$customization.scale;
-                matrices.scale(scale.getX(), scale.getY(), scale.getZ());
-            }
+        figura$scaled = false;
+
+        VanillaModelPartCustomization customization = figura$customization;
+        if (customization == null || !visible)
+            return;
+
+        int flags = customization.getFlags();
+        if ((flags & VanillaModelPartCustomization.HIDDEN) != 0) {
+            ci.cancel();
+            return;
+        }
+
+        if ((flags & VanillaModelPartCustomization.HAS_SCALE) != 0) {
+            matrices.push();
+            matrices.scale(customization.scaleX, customization.scaleY, customization.scaleZ);
+            figura$scaled = true;
         }
     }
 
-    //Restore visible state
+    //Restore matrices
     @Inject(at = @At("RETURN"), method = "render(Lnet/minecraft/client/util/math/MatrixStack;Lnet/minecraft/client/render/VertexConsumer;IIFFFF)V")
     public void postRender(MatrixStack matrices, VertexConsumer vertices, int light, int overlay, float red, float green, float blue, float alpha, CallbackInfo ci) {
-        visible = prevVisible;
-        matrices.pop();
+        if (figura$scaled) {
+            figura$scaled = false;
+            matrices.pop();
+        }
     }
 
     @Override
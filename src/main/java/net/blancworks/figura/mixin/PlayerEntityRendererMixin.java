@@ -6,7 +6,6 @@ import net.blancworks.figura.access.ModelPartAccess;
 import net.blancworks.figura.access.PlayerEntityRendererAccess;
 import net.blancworks.figura.config.ConfigManager.Config;
 import net.blancworks.figura.lua.api.model.VanillaModelAPI;
-import net.blancworks.figura.lua.api.model.VanillaModelPartCustomization;
 import net.blancworks.figura.lua.api.nameplate.NamePlateAPI;
 import net.blancworks.figura.lua.api.nameplate.NamePlateCustomization;
 import net.blancworks.figura.trust.TrustContainer;
@@ -48,6 +47,7 @@ public abstract class PlayerEntityRendererMixin extends LivingEntityRenderer<Abs
     }
 
     @Unique private final ArrayList<ModelPart> figura$customizedParts = new ArrayList<>();
+    @Unique private ModelPart[] figura$bodyParts;
 
     @Override
     public boolean shouldRender(AbstractClientPlayerEntity entity, Frustum frustum, double x, double y, double z) {
@@ -64,21 +64,7 @@ public abstract class PlayerEntityRendererMixin extends LivingEntityRenderer<Abs
         //Reset this here because... Execution order.
 
         if (data != null && data.script != null && data.getTrustContainer().getTrust(TrustContainer.Trust.VANILLA_MODEL_EDIT) == 1) {
-            PlayerEntityModel<AbstractClientPlayerEntity> model = this.getModel();
-
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_HEAD, model.head, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_TORSO, model.body, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_ARM, model.leftArm, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_ARM, model.rightArm, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_LEG, model.leftLeg, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_LEG, model.rightLeg, entity);
-
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_HAT, model.hat, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_JACKET, model.jacket, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_SLEEVE, model.leftSleeve, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_SLEEVE, model.rightSleeve, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_PANTS, model.leftPants, entity);
-            figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_PANTS, model.rightPants, entity);
+            figura$applyBodyCustomizations(data);
 
             if (data.script.customShadowSize != null) {
                 shadowRadius = data.script.customShadowSize;
@@ -109,21 +95,7 @@ public abstract class PlayerEntityRendererMixin extends LivingEntityRenderer<Abs
 
         if (data == null) return;
 
-        PlayerEntityModel<AbstractClientPlayerEntity> model = this.getModel();
-
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_HEAD, model.head, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_TORSO, model.body, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_ARM, model.leftArm, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_ARM, model.rightArm, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_LEG, model.leftLeg, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_LEG, model.rightLeg, entity);
-
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_HAT, model.hat, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_JACKET, model.jacket, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_SLEEVE, model.leftSleeve, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_SLEEVE, model.rightSleeve, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_LEFT_PANTS, model.leftPants, entity);
-        figura$applyPartCustomization(VanillaModelAPI.VANILLA_RIGHT_PANTS, model.rightPants, entity);
+        figura$applyBodyCustomizations(data);
     }
 
     @Inject(at = @At("RETURN"), method = "renderArm")
@@ -257,17 +229,14 @@ public abstract class PlayerEntityRendererMixin extends LivingEntityRenderer<Abs
 
     }
 
-    public void figura$applyPartCustomization(String id, ModelPart part, AbstractClientPlayerEntity entity) {
-        AvatarData data = AvatarDataManager.getDataForPlayer(entity.getUuid());
+    public void figura$applyBodyCustomizations(AvatarData data) {
+        if (data.script == null)
+            return;
 
-        if (data != null && data.script != null && data.script.allCustomizations != null) {
-            VanillaModelPartCustomization customization = data.script.allCustomizations.get(id);
+        if (figura$bodyParts == null)
+            figura$bodyParts = VanillaModelAPI.getBodyParts(this.getModel());
 
-            if (customization != null) {
-                ((ModelPartAccess) (Object) part).figura$setPartCustomization(customization);
-                figura$customizedParts.add(part);
-            }
-        }
+        VanillaModelAPI.applyBodyCustomizations(data.script, figura$bodyParts, figura$customizedParts);
     }
 
     public void figura$clearAllPartCustomizations() {
@@ -51,7 +51,7 @@ public class PlayerHeldItemFeatureRendererMixin {
                         access.pushEntry(originModification.stackReference);
 
                         //flag to not render anymore
-                        originModification.visible = null;
+                        originModification.setVisible(null);
 
                         //render :3
                         freshStack.push();
@@ -4,6 +4,7 @@ import com.mojang.authlib.GameProfile;
 import com.mojang.blaze3d.systems.RenderSystem;
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
+import net.blancworks.figura.avatar.AvatarHeadCache;
 import net.blancworks.figura.config.ConfigManager.Config;
 import net.blancworks.figura.gui.PlayerPopup;
 import net.blancworks.figura.lua.api.nameplate.NamePlateAPI;
@@ -14,9 +15,6 @@ import net.minecraft.client.gui.DrawableHelper;
 import net.minecraft.client.gui.hud.PlayerListHud;
 import net.minecraft.client.network.ClientPlayNetworkHandler;
 import net.minecraft.client.network.PlayerListEntry;
-import net.minecraft.client.render.DiffuseLighting;
-import net.minecraft.client.render.LightmapTextureManager;
-import net.minecraft.client.util.Window;
 import net.minecraft.client.util.math.MatrixStack;
 import net.minecraft.entity.player.PlayerEntity;
 import net.minecraft.scoreboard.Scoreboard;
@@ -24,7 +22,7 @@ import net.minecraft.scoreboard.ScoreboardObjective;
 import net.minecraft.text.LiteralText;
 import net.minecraft.text.Text;
 import net.minecraft.text.TranslatableText;
-import net.minecraft.util.math.Vec3f;
+import net.minecraft.util.Identifier;
 import org.spongepowered.asm.mixin.Mixin;
 import org.spongepowered.asm.mixin.Unique;
 import org.spongepowered.asm.mixin.injection.At;
@@ -104,34 +102,8 @@ public class PlayerListHudMixin {
             return;
         }
 
-        //draw figura head
-        Window w = MinecraftClient.getInstance().getWindow();
-        final double guiScale = w.getScaleFactor();
-
-        RenderSystem.enableScissor((int) (x * guiScale), w.getHeight() - (int) ((regionHeight + y) * guiScale), (int) (regionWidth * guiScale), (int) (regionHeight * guiScale));
-        DiffuseLighting.disableGuiDepthLighting();
-
-        MatrixStack stack = new MatrixStack();
-        stack.push();
-
-        stack.translate(x + 4, y + 8, 0);
-        stack.scale(-16, 16, 16);
-        stack.multiply(Vec3f.POSITIVE_Y.getDegreesQuaternion(180));
-
-        if (!data.model.renderSkull(stack, data.tryGetImmediate(), LightmapTextureManager.MAX_LIGHT_COORDINATE)) {
-            matrices.push();
-            matrices.translate(0f, 0f, 4f);
-
-            RenderSystem.enableDepthTest();
-            RenderSystem.setShaderTexture(0, MinecraftClient.getInstance().getNetworkHandler().getPlayerListEntry(playerEntity.getUuid()).getSkinTexture());
-            DrawableHelper.drawTexture(matrices, x, y, width, height, u, v, regionWidth, regionHeight, textureWidth, textureHeight);
-
-            matrices.pop();
-        }
-
-        stack.pop();
-
-        RenderSystem.disableScissor();
-        DiffuseLighting.enableGuiDepthLighting();
+        //draw figura head, cached between frames
+        Identifier skin = MinecraftClient.getInstance().getNetworkHandler().getPlayerListEntry(playerEntity.getUuid()).getSkinTexture();
+        AvatarHeadCache.drawHead(data, matrices, x, y, skin, stack -> DrawableHelper.drawTexture(stack, 0, 0, width, height, u, v, regionWidth, regionHeight, textureWidth, textureHeight));
     }
 }
@@ -62,7 +62,7 @@ public class ShoulderParrotFeatureRendererMixin<T extends PlayerEntity> extends
                         access.pushEntry(originModification.stackReference);
 
                         //flag to not render anymore
-                        originModification.visible = null;
+                        originModification.setVisible(null);
 
                         //render
                         NbtCompound compoundTag = leftShoulder ? player.getShoulderEntityLeft() : player.getShoulderEntityRight();
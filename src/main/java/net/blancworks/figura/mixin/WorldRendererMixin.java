@@ -1,8 +1,12 @@
 package net.blancworks.figura.mixin;
 
+import net.blancworks.figura.avatar.AvatarCulling;
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
+import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.lua.LuaEventRegistry;
 import net.blancworks.figura.lua.api.RenderLayerAPI;
+import net.blancworks.figura.models.shaders.BatchedVertexConsumerProvider;
 import net.minecraft.client.MinecraftClient;
 import net.minecraft.client.render.*;
 import net.minecraft.client.render.entity.EntityRenderDispatcher;
@@ -24,17 +28,41 @@ public class WorldRendererMixin {
 
     @Shadow @Final private EntityRenderDispatcher entityRenderDispatcher;
     @Shadow @Nullable private ClientWorld world;
+    @Shadow private Frustum frustum;
 
     @Inject(at = @At("HEAD"), method = "render")
     private void render(MatrixStack matrices, float tickDelta, long limitTime, boolean renderBlockOutline, Camera camera, GameRenderer gameRenderer, LightmapTextureManager lightmapTextureManager, Matrix4f matrix4f, CallbackInfo ci) {
+        AvatarCulling.frustum = this.frustum;
+        BatchedVertexConsumerProvider.beginFrame();
         if (this.world == null) return;
 
-        this.world.getPlayers().forEach((player) -> {
-            AvatarData data = AvatarDataManager.getDataForPlayer(player.getUuid());
-            if (data != null && data.script != null) {
-                data.script.onWorldRender(tickDelta);
+        //only scripts with a world_render function
+        for (CustomScript script : LuaEventRegistry.getSubscribers("world_render")) {
+            AvatarData data = script.avatarData;
+
+            //drop unloaded or replaced scripts
+            if (script.scriptError || data == null || data.script != script || AvatarDataManager.LOADED_PLAYER_DATA.get(data.entityId) != data) {
+                LuaEventRegistry.removeAll(script);
+                continue;
             }
-        });
+
+            PlayerEntity player = this.world.getPlayerByUuid(data.entityId);
+            if (player == null || AvatarCulling.isCulled(data, player))
+                continue;
+
+            script.onWorldRender(tickDelta);
+        }
+    }
+
+    //draw the batched avatars together with the vanilla entity layers
+    @Inject(at = @At(value = "INVOKE", target = "Lnet/minecraft/client/render/VertexConsumerProvider$Immediate;drawCurrentLayer()V"), method = "render")
+    private void drawBatchedAvatars(MatrixStack matrices, float tickDelta, long limitTime, boolean renderBlockOutline, Camera camera, GameRenderer gameRenderer, LightmapTextureManager lightmapTextureManager, Matrix4f matrix4f, CallbackInfo ci) {
+        BatchedVertexConsumerProvider.flush();
+    }
+
+    @Inject(at = @At("RETURN"), method = "render")
+    private void afterRender(MatrixStack matrices, float tickDelta, long limitTime, boolean renderBlockOutline, Camera camera, GameRenderer gameRenderer, LightmapTextureManager lightmapTextureManager, Matrix4f matrix4f, CallbackInfo ci) {
+        BatchedVertexConsumerProvider.endFrame();
     }
 
     @Inject(at = @At("HEAD"), method = "renderEntity")
@@ -21,8 +21,11 @@ import net.minecraft.util.math.Vec2f;
 import net.minecraft.util.math.Vec3d;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
 public class CustomModel extends FiguraAsset {
@@ -33,6 +36,10 @@ public class CustomModel extends FiguraAsset {
     public final Map<CustomModelPart.ParentType, ArrayList<CustomModelPart>> specialParts = new ConcurrentHashMap<>();
     public final Map<String, Animation> animations = new HashMap<>();
 
+    //animations and every group they move, as arrays so playing them doesn't allocate
+    private Animation[] animationArray = new Animation[0];
+    private CustomModelPartGroup[] animatedGroups = new CustomModelPartGroup[0];
+
     public Vec2f defaultTextureSize;
 
     public int leftToRender = 0;
@@ -50,11 +57,42 @@ public class CustomModel extends FiguraAsset {
 
     public CustomModel(NbtCompound nbt, AvatarData data) {
         readNbt(nbt);
+        compileAnimations();
         this.modelNbt = nbt;
         this.owner = data;
         this.isDone = true;
     }
 
+    void compileAnimations() {
+        Set<CustomModelPartGroup> groups = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Animation anim : animations.values()) {
+            anim.compileKeyFrames();
+            anim.collectGroups(groups);
+        }
+
+        animationArray = animations.values().toArray(new Animation[0]);
+        animatedGroups = groups.toArray(new CustomModelPartGroup[0]);
+    }
+
+    //plays every animation into the group accumulators, up to the limit
+    public void renderAnimations(int maxRender) {
+        animRendered = 0;
+        animMaxRender = maxRender;
+        if (maxRender <= 0)
+            return;
+
+        for (Animation anim : animationArray) {
+            if (anim.playState != Animation.PlayState.STOPPED)
+                animRendered = anim.render(animRendered, animMaxRender);
+        }
+    }
+
+    //resets the accumulators once per group, no matter how many animations moved it
+    public void clearAnimations() {
+        for (CustomModelPartGroup group : animatedGroups)
+            group.resetAnimData();
+    }
+
     public ArrayList<CustomModelPart> getSpecialParts(CustomModelPart.ParentType type) {
         synchronized (specialParts) {
             ArrayList<CustomModelPart> list = specialParts.get(type);
@@ -90,7 +128,9 @@ public class CustomModel extends FiguraAsset {
         if (owner.script != null)
             owner.script.render(owner.deltaTime);
 
-        leftToRender = getMaxRenderAmount();
+        long start = System.nanoTime();
+        int maxRender = getMaxRenderAmount();
+        leftToRender = maxRender;
 
         synchronized (this.allParts) {
             for (CustomModelPart part : this.allParts) {
@@ -120,6 +160,9 @@ public class CustomModel extends FiguraAsset {
                 matrices.pop();
             }
         }
+
+        owner.telemetry.renderTime.add(System.nanoTime() - start);
+        owner.telemetry.vertices.add(maxRender - Math.max(leftToRender, 0));
     }
 
     public void renderArm(MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, ModelPart arm, PlayerEntityModel<?> model, float alpha) {
@@ -192,6 +235,9 @@ public class CustomModel extends FiguraAsset {
     public void renderWorldParts(double cameraX, double cameraY, double cameraZ, MatrixStack matrices, VertexConsumerProvider vertexConsumers, int light, int overlay, float alpha) {
         CustomModelPart.canRenderHitBox = (boolean) Config.RENDER_DEBUG_PARTS_PIVOT.value && MinecraftClient.getInstance().getEntityRenderDispatcher().shouldRenderHitboxes();
 
+        long start = System.nanoTime();
+        int leftBefore = Math.max(leftToRender, 0);
+
         matrices.translate(-cameraX, -cameraY, -cameraZ);
         matrices.scale(-1f, -1f, 1f);
 
@@ -205,6 +251,9 @@ public class CustomModel extends FiguraAsset {
         }
 
         CustomModelPart.canRenderHitBox = false;
+
+        owner.telemetry.renderTime.add(System.nanoTime() - start);
+        owner.telemetry.vertices.add(leftBefore - Math.max(leftToRender, 0));
     }
 
     public void renderFirstPersonWorldParts(MatrixStack matrices, Camera camera, float tickDelta) {
@@ -6,6 +6,7 @@ import it.unimi.dsi.fastutil.floats.FloatList;
 import net.blancworks.figura.FiguraMod;
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.lua.api.model.*;
+import net.blancworks.figura.models.shaders.CountingVertexConsumerProvider;
 import net.blancworks.figura.models.shaders.FiguraRenderLayer;
 import net.blancworks.figura.models.shaders.FiguraVertexConsumerProvider;
 import net.blancworks.figura.trust.TrustContainer;
@@ -318,10 +319,12 @@ public class CustomModelPart {
         return leftToRender;
     }
 
+    //the batched provider is not drawn here, the world renderer draws it once for all avatars
     public void draw(VertexConsumerProvider vcp) {
         if (vcp instanceof FiguraVertexConsumerProvider customVCP) customVCP.draw();
         else if (vcp instanceof VertexConsumerProvider.Immediate immediate) immediate.draw();
         else if (vcp instanceof OutlineVertexConsumerProvider outline) outline.draw();
+        else if (vcp instanceof CountingVertexConsumerProvider counting) counting.draw();
     }
 
     public Identifier getTexture(AvatarData data) {
@@ -21,14 +21,28 @@ public class CustomModelPartGroup extends CustomModelPart {
 
     public ArrayList<CustomModelPart> children = new ArrayList<>();
 
-    public Vec3f animRot = Vec3f.ZERO.copy();
-    public Vec3f animPos = Vec3f.ZERO.copy();
-    public Vec3f animPosOverride = Vec3f.ZERO.copy();
-    public Vec3f animScale = MathUtils.Vec3f_ONE.copy();
+    //animation accumulators, written in place by every animation moving this group
+    public final Vec3f animRot = Vec3f.ZERO.copy();
+    public final Vec3f animPos = Vec3f.ZERO.copy();
+    public final Vec3f animPosOverride = Vec3f.ZERO.copy();
+    public final Vec3f animScale = MathUtils.Vec3f_ONE.copy();
     public boolean wasAnimated = false;
     public boolean replaced = false;
     public int lastPriority = 0;
 
+    public void resetAnimData() {
+        if (!wasAnimated)
+            return;
+
+        animRot.set(0f, 0f, 0f);
+        animPos.set(0f, 0f, 0f);
+        animPosOverride.set(0f, 0f, 0f);
+        animScale.set(1f, 1f, 1f);
+        wasAnimated = false;
+        replaced = false;
+        lastPriority = 0;
+    }
+
     @Override
     public void applyTransforms(MatrixStack stack) {
         //pos
@@ -35,6 +35,9 @@ public class FiguraTexture extends ResourceTexture {
 
     public boolean isDone = false;
 
+    //uploaded size, in bytes
+    public long gpuSize = 0;
+
     public static final Identifier DEFAULT_ID = new Identifier("figura", "cheese/cheese.png");
     public static final Identifier ELYTRA_ID = new Identifier("minecraft", "textures/entity/elytra.png");
 
@@ -71,6 +74,7 @@ public class FiguraTexture extends ResourceTexture {
     private void uploadTexture(NativeImage image) {
         TextureUtil.prepareImage(this.getGlId(), image.getWidth(), image.getHeight());
         image.upload(0, 0, 0, true);
+        this.gpuSize = (long) image.getWidth() * image.getHeight() * 4;
         this.isDone = true;
     }
 
@@ -88,34 +92,33 @@ public class FiguraTexture extends ResourceTexture {
     }
 
     public void readNbt(NbtCompound nbt) {
-        if (nbt.contains("img2")) {
-            try {
-                //Pull data out of NBT tag.
-                data = nbt.getByteArray("img2");
-                
-                //Load using that data
-                uploadUsingData();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-        } else if (nbt.contains("img")) { //legacy bloat
-            
-            try {
-                //Pull data out of base64 tag.
-                String dataString = nbt.getString("img");
-                //Put into array.
-                data = Base64.getDecoder().decode(dataString);
+        try {
+            data = readData(nbt);
 
-                //Load using that data
+            //Load using that data
+            if (data != null)
                 uploadUsingData();
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
 
-        //Grab texture type, if it exists.
-        if (nbt.contains("type"))
-            type = TextureType.valueOf(nbt.get("type").asString());
+        type = readType(nbt);
+    }
+
+    //the image stored in the texture NBT, or null if it has none
+    public static byte[] readData(NbtCompound nbt) {
+        if (nbt.contains("img2"))
+            return nbt.getByteArray("img2");
+
+        //legacy bloat
+        if (nbt.contains("img"))
+            return Base64.getDecoder().decode(nbt.getString("img"));
+
+        return null;
+    }
+
+    public static TextureType readType(NbtCompound nbt) {
+        return nbt.contains("type") ? TextureType.valueOf(nbt.get("type").asString()) : TextureType.color;
     }
 
     //Uploads the data for the texture to the render system, using the current data array.
@@ -0,0 +1,50 @@
+package net.blancworks.figura.models;
+
+import com.google.common.hash.Hashing;
+import net.blancworks.figura.avatar.AvatarData;
+import net.blancworks.figura.utils.RefCountedRegistry;
+import net.minecraft.util.Identifier;
+
+/**
+ * Avatar textures shared by every avatar using the same image, so a crowd wearing the same avatar uploads it only once.
+ * Textures are registered under a hash of their content, so identical avatars also get the same render layers and are batched together.
+ * Textures are kept while any avatar holds them, and destroyed after the last one releases them.
+ */
+public class TextureRegistry {
+
+    private static final RefCountedRegistry<Identifier, FiguraTexture> TEXTURES = new RefCountedRegistry<>(texture -> AvatarData.getTextureManager().destroyTexture(texture.id));
+
+    //same image and type, same id
+    public static Identifier getId(byte[] data, FiguraTexture.TextureType type) {
+        return new Identifier("figura", "avatar_textures/" + Hashing.sha256().hashBytes(data).toString().substring(0, 32) + type);
+    }
+
+    /**
+     * Gets the texture for the image, registering and uploading it if no avatar holds it yet.
+     * Every acquire must be matched by one {@link #release(FiguraTexture)}.
+     */
+    public static FiguraTexture acquire(byte[] data, FiguraTexture.TextureType type) throws Exception {
+        Identifier id = getId(data, type);
+        return TEXTURES.acquire(id, () -> {
+            FiguraTexture texture = new FiguraTexture();
+            texture.id = id;
+            texture.type = type;
+            texture.data = data;
+            texture.uploadUsingData();
+            return texture;
+        });
+    }
+
+    public static void release(FiguraTexture texture) {
+        TEXTURES.release(texture.id);
+    }
+
+    //registers and uploads every held texture again, used for asset reloads in vanilla
+    public static void reloadAll() {
+        TEXTURES.forEach(FiguraTexture::uploadUsingData);
+    }
+
+    public static int getLoadedCount() {
+        return TEXTURES.size();
+    }
+}
@@ -10,8 +10,9 @@ import net.minecraft.util.math.Vec3f;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
 import java.util.TreeMap;
+import java.util.function.LongSupplier;
 
 public class Animation {
     //animation data
@@ -33,6 +34,15 @@ public class Animation {
     //keyframes
     public HashMap<CustomModelPartGroup, List<TreeMap<Float, KeyFrame>>> keyFrames = new HashMap<>();
 
+    //keyframes as sorted arrays, built once the model is loaded, so playing an animation doesn't allocate
+    private record Track(CustomModelPartGroup group, KeyFrame[] pos, KeyFrame[] rot, KeyFrame[] scale) {}
+    private Track[] tracks = new Track[0];
+
+    //interpolated values of the current group
+    private final Vec3f posValue = new Vec3f();
+    private final Vec3f rotValue = new Vec3f();
+    private final Vec3f scaleValue = new Vec3f();
+
     //animation status
     public float speed = 1f;
     public boolean inverted = false;
@@ -45,6 +55,9 @@ public class Animation {
     private float newTime = 0f;
     private float lastTime = 0f;
 
+    //time source of all animations, in milliseconds, replaced by the render harness with a simulated clock
+    public static LongSupplier clock = Util::getMeasuringTimeMs;
+
     public Animation(String name, float length, LoopMode loopMode, float startOffset, float blendWeight, float startDelay, float loopDelay, boolean override) {
         this.name = name;
         this.length = length;
@@ -81,7 +94,7 @@ public class Animation {
 
         //if running, store current time
         if (this.playState != PlayState.PAUSED && this.playState != PlayState.ENDED)
-            newTime = Util.getMeasuringTimeMs();
+            newTime = clock.getAsLong();
 
         //get keyframe time from current time
         float kfTime = ((newTime - time) / 1000f) * speed;
@@ -106,9 +119,8 @@ public class Animation {
 
         //keyframe interpolation
         lastTime = inverted ? length - kfTime : kfTime;
-        for (Map.Entry<CustomModelPartGroup, List<TreeMap<Float, KeyFrame>>> entry : keyFrames.entrySet()) {
-            CustomModelPartGroup group = entry.getKey();
-            List<TreeMap<Float, KeyFrame>> data = entry.getValue();
+        for (Track track : tracks) {
+            CustomModelPartGroup group = track.group;
 
             //priority check
             if (this.priority < group.lastPriority)
@@ -117,37 +129,11 @@ public class Animation {
             boolean replace = this.priority > group.lastPriority;
 
             //get interpolated data
-            Vec3f pos = processKeyFrame(data.get(0), lastTime);
-            Vec3f rot = processKeyFrame(data.get(1), lastTime);
-            Vec3f scale = processKeyFrame(data.get(2), lastTime);
-
-            //apply data, if not null
-            if (pos != null) {
-                if (override) {
-                    if (replace) group.animPosOverride = pos;
-                    else group.animPosOverride.add(pos);
-                } else {
-                    if (replace) group.animPos = pos;
-                    else group.animPos.add(pos);
-                }
-                renderCount++;
-            }
-            if (rot != null) {
-                if (replace) group.animRot = rot;
-                else group.animRot.add(rot);
-                renderCount++;
-            }
-            if (scale != null) {
-                if (replace) group.animScale = scale;
-                else group.animScale.multiplyComponentwise(scale.getX(), scale.getY(), scale.getZ());
-                renderCount++;
-            }
-
-            //group vars
-            group.wasAnimated = true;
-            group.replaced = group.replaced || this.replace;
-            group.lastPriority = this.priority;
+            boolean pos = sample(track.pos, lastTime, posValue);
+            boolean rot = sample(track.rot, lastTime, rotValue);
+            boolean scale = sample(track.scale, lastTime, scaleValue);
 
+            renderCount = apply(group, replace, pos, rot, scale, renderCount);
             if (renderCount > renderLimit)
                 break;
         }
@@ -157,7 +143,7 @@ public class Animation {
 
     private int renderBlend(boolean ending, int renderCount, int renderLimit) {
         if (this.playState != PlayState.PAUSED)
-            newTime = Util.getMeasuringTimeMs();
+            newTime = clock.getAsLong();
 
         //get keyframe time from current time
         float kfTime = ((newTime - time) / 1000f) * speed;
@@ -176,9 +162,10 @@ public class Animation {
 
         //process keyframes
         if (!ending) lastTime = kfTime;
-        for (Map.Entry<CustomModelPartGroup, List<TreeMap<Float, KeyFrame>>> entry : keyFrames.entrySet()) {
-            CustomModelPartGroup group = entry.getKey();
-            List<TreeMap<Float, KeyFrame>> data = entry.getValue();
+        boolean fromCurrent = ending && !wasStarting;
+        float delta = MathHelper.clamp(kfTime / blendTime, 0f, 1f);
+        for (Track track : tracks) {
+            CustomModelPartGroup group = track.group;
 
             //priority check
             if (this.priority < group.lastPriority)
@@ -187,65 +174,67 @@ public class Animation {
             boolean replace = this.priority > group.lastPriority;
 
             //get interpolated data
-            Vec3f pos = ending && !wasStarting ? processKeyFrame(data.get(0), lastTime) : getKeyFrameData(data.get(0), startOffset, inverted);
-            Vec3f rot = ending && !wasStarting ? processKeyFrame(data.get(1), lastTime) : getKeyFrameData(data.get(1), startOffset, inverted);
-            Vec3f scale = ending && !wasStarting ? processKeyFrame(data.get(2), lastTime) : getKeyFrameData(data.get(2), startOffset, inverted);
-
-            //apply data, if not null
-            float delta = MathHelper.clamp(kfTime / blendTime, 0f, 1f);
-            if (pos != null) {
-                if (ending) {
-                    if (wasStarting)
-                        pos = MathUtils.lerpVec3f(Vec3f.ZERO, pos, lastTime / blendTime);
-                    pos = MathUtils.lerpVec3f(pos, Vec3f.ZERO, delta);
-                } else {
-                    pos = MathUtils.lerpVec3f(Vec3f.ZERO, pos, delta);
-                }
+            boolean pos = fromCurrent ? sample(track.pos, lastTime, posValue) : sampleStart(track.pos, posValue);
+            boolean rot = fromCurrent ? sample(track.rot, lastTime, rotValue) : sampleStart(track.rot, rotValue);
+            boolean scale = fromCurrent ? sample(track.scale, lastTime, scaleValue) : sampleStart(track.scale, scaleValue);
 
-                if (override) {
-                    if (replace) group.animPosOverride = pos;
-                    else group.animPosOverride.add(pos);
-                } else {
-                    if (replace) group.animPos = pos;
-                    else group.animPos.add(pos);
-                }
-                renderCount++;
-            }
-            if (rot != null) {
-                if (ending) {
-                    if (wasStarting)
-                        rot = MathUtils.lerpVec3f(Vec3f.ZERO, rot, lastTime / blendTime);
-                    rot = MathUtils.lerpVec3f(rot, Vec3f.ZERO, delta);
-                } else {
-                    rot = MathUtils.lerpVec3f(Vec3f.ZERO, rot, delta);
-                }
+            //blend from or to the default pose
+            if (pos) blend(posValue, 0f, ending, delta);
+            if (rot) blend(rotValue, 0f, ending, delta);
+            if (scale) blend(scaleValue, 1f, ending, delta);
 
-                if (replace) group.animRot = rot;
-                else group.animRot.add(rot);
-                renderCount++;
-            }
-            if (scale != null) {
-                if (ending) {
-                    if (wasStarting)
-                        scale = MathUtils.lerpVec3f(MathUtils.Vec3f_ONE, scale, lastTime / blendTime);
-                    scale = MathUtils.lerpVec3f(scale, MathUtils.Vec3f_ONE, delta);
-                } else {
-                    scale = MathUtils.lerpVec3f(MathUtils.Vec3f_ONE, scale, delta);
-                }
+            renderCount = apply(group, replace, pos, rot, scale, renderCount);
+            if (renderCount > renderLimit)
+                break;
+        }
 
-                if (replace) group.animScale = scale;
-                else group.animScale.multiplyComponentwise(scale.getX(), scale.getY(), scale.getZ());
-                renderCount++;
-            }
+        return renderCount;
+    }
 
-            //group vars
-            group.wasAnimated = true;
-            group.replaced = group.replaced || this.replace;
-            group.lastPriority = this.priority;
+    private void blend(Vec3f value, float rest, boolean ending, float delta) {
+        if (ending) {
+            if (wasStarting)
+                lerp(value, rest, value, lastTime / blendTime);
+            lerp(value, value, rest, delta);
+        } else {
+            lerp(value, rest, value, delta);
+        }
+    }
 
-            if (renderCount > renderLimit)
-                break;
+    //value = from + (to - from) * delta, where one side is the rest value on every axis
+    private static void lerp(Vec3f out, float from, Vec3f to, float delta) {
+        float f = 1f - delta;
+        out.set(from * f + to.getX() * delta, from * f + to.getY() * delta, from * f + to.getZ() * delta);
+    }
+
+    private static void lerp(Vec3f out, Vec3f from, float to, float delta) {
+        float f = 1f - delta;
+        out.set(from.getX() * f + to * delta, from.getY() * f + to * delta, from.getZ() * f + to * delta);
+    }
+
+    //adds this animation's values to the group, in place
+    private int apply(CustomModelPartGroup group, boolean replace, boolean pos, boolean rot, boolean scale, int renderCount) {
+        if (pos) {
+            Vec3f target = override ? group.animPosOverride : group.animPos;
+            if (replace) target.set(posValue.getX(), posValue.getY(), posValue.getZ());
+            else target.add(posValue);
+            renderCount++;
         }
+        if (rot) {
+            if (replace) group.animRot.set(rotValue.getX(), rotValue.getY(), rotValue.getZ());
+            else group.animRot.add(rotValue);
+            renderCount++;
+        }
+        if (scale) {
+            if (replace) group.animScale.set(scaleValue.getX(), scaleValue.getY(), scaleValue.getZ());
+            else group.animScale.multiplyComponentwise(scaleValue.getX(), scaleValue.getY(), scaleValue.getZ());
+            renderCount++;
+        }
+
+        //group vars
+        group.wasAnimated = true;
+        group.replaced = group.replaced || this.replace;
+        group.lastPriority = this.priority;
 
         return renderCount;
     }
@@ -255,7 +244,7 @@ public class Animation {
         if (this.playState == PlayState.ENDED || this.playState == PlayState.STOPPING)
             cease();
 
-        long offset = Util.getMeasuringTimeMs();
+        long offset = clock.getAsLong();
         if (this.playState == PlayState.PAUSED) {
             offset -= newTime - time;
             this.playState = this.lastState;
@@ -268,13 +257,13 @@ public class Animation {
     }
 
     public void start() {
-        this.time = Util.getMeasuringTimeMs();
+        this.time = clock.getAsLong();
         this.playState = PlayState.PLAYING;
     }
 
     public void stop() {
         if (this.playState != PlayState.STOPPED && this.playState != PlayState.STOPPING) {
-            this.time = Util.getMeasuringTimeMs();
+            this.time = clock.getAsLong();
             this.wasStarting = this.playState == PlayState.STARTING;
             this.playState = PlayState.STOPPING;
         }
@@ -297,93 +286,103 @@ public class Animation {
     }
 
     //keyframe functions
-    public void clearAnimData() {
-        for (CustomModelPartGroup group : keyFrames.keySet()) {
-            if (group.wasAnimated) {
-                group.animRot = Vec3f.ZERO.copy();
-                group.animPos = Vec3f.ZERO.copy();
-                group.animPosOverride = Vec3f.ZERO.copy();
-                group.animScale = MathUtils.Vec3f_ONE.copy();
-                group.wasAnimated = false;
-                group.replaced = false;
-                group.lastPriority = 0;
-            }
-        }
+    //the groups this animation moves
+    public void collectGroups(Set<CustomModelPartGroup> groups) {
+        for (Track track : tracks)
+            groups.add(track.group);
     }
 
-    public Vec3f processKeyFrame(TreeMap<Float, KeyFrame> map, float time) {
-        try {
-            //get keyframes
-            Map.Entry<Float, KeyFrame> floor = map.floorEntry(time);
-            Map.Entry<Float, KeyFrame> ceil = map.ceilingEntry(time);
-
-            if (floor == null && ceil == null)
-                return null;
-
-            //set current and next keyframes
-            KeyFrame curr = Objects.requireNonNullElse(floor, ceil).getValue();
-            KeyFrame next = Objects.requireNonNullElse(ceil, floor).getValue();
-
-            //get keyframe data
-            Vec3f start = curr.data.copy();
-            Vec3f end = next.data.copy();
-
-            //set blend weight
-            start.scale(blendWeight);
-            end.scale(blendWeight);
-
-            //get delta
-            float delta;
-            if (next.time == curr.time) delta = 1f;
-            else delta = MathHelper.clamp((time - curr.time) / (next.time - curr.time), 0f, 1f);
-
-            //return interpolated keyframe
-            switch (curr.interpolation) {
-                case LINEAR -> {
-                    return MathUtils.lerpVec3f(start, end, delta);
-                }
-                case CATMULLROM -> {
-                    //get "before" and "after" keyframes
-                    Map.Entry<Float, KeyFrame> beforeFloor = map.lowerEntry(curr.time);
-                    Map.Entry<Float, KeyFrame> afterCeil = map.higherEntry(next.time);
+    //called once all parts of the model were read
+    public void compileKeyFrames() {
+        Track[] tracks = new Track[keyFrames.size()];
+        int i = 0;
+        for (Map.Entry<CustomModelPartGroup, List<TreeMap<Float, KeyFrame>>> entry : keyFrames.entrySet()) {
+            List<TreeMap<Float, KeyFrame>> data = entry.getValue();
+            tracks[i++] = new Track(entry.getKey(), toArray(data.get(0)), toArray(data.get(1)), toArray(data.get(2)));
+        }
+        this.tracks = tracks;
+    }
 
-                    Vec3f bef = beforeFloor != null ? beforeFloor.getValue().data.copy() : curr.data.copy();
-                    Vec3f aft = afterCeil != null ? afterCeil.getValue().data.copy() : next.data.copy();
+    private static KeyFrame[] toArray(TreeMap<Float, KeyFrame> map) {
+        return map.values().toArray(new KeyFrame[0]);
+    }
 
-                    //set blend weight
-                    bef.scale(blendWeight);
-                    aft.scale(blendWeight);
+    //index of the last keyframe at or before the time, -1 if there is none
+    private static int floorIndex(KeyFrame[] frames, float time) {
+        int low = 0, high = frames.length - 1, floor = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (frames[mid].time <= time) {
+                floor = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return floor;
+    }
 
-                    return MathUtils.catmullRomVec3f(bef, start, end, aft, delta);
-                }
-                default -> { //also STEP
-                    return start;
-                }
+    //writes the keyframe value at the time into out, returns false if there are no keyframes
+    private boolean sample(KeyFrame[] frames, float time, Vec3f out) {
+        if (frames.length == 0)
+            return false;
+
+        //current and next keyframes
+        int floor = floorIndex(frames, time);
+        int ceil = floor >= 0 && frames[floor].time == time ? floor : floor + 1;
+        int currIndex = floor >= 0 ? floor : ceil;
+        int nextIndex = ceil < frames.length ? ceil : floor;
+
+        KeyFrame curr = frames[currIndex];
+        KeyFrame next = frames[nextIndex];
+        Vec3f start = curr.data;
+        Vec3f end = next.data;
+
+        //get delta
+        float delta;
+        if (next.time == curr.time) delta = 1f;
+        else delta = MathHelper.clamp((time - curr.time) / (next.time - curr.time), 0f, 1f);
+
+        //interpolated keyframe
+        switch (curr.interpolation) {
+            case LINEAR -> {
+                float f = 1f - delta;
+                out.set(start.getX() * f + end.getX() * delta, start.getY() * f + end.getY() * delta, start.getZ() * f + end.getZ() * delta);
+            }
+            case CATMULLROM -> {
+                //"before" and "after" keyframes
+                Vec3f bef = currIndex > 0 ? frames[currIndex - 1].data : start;
+                Vec3f aft = nextIndex < frames.length - 1 ? frames[nextIndex + 1].data : end;
+
+                out.set(
+                        MathUtils.catmullRom(bef.getX(), start.getX(), end.getX(), aft.getX(), delta),
+                        MathUtils.catmullRom(bef.getY(), start.getY(), end.getY(), aft.getY(), delta),
+                        MathUtils.catmullRom(bef.getZ(), start.getZ(), end.getZ(), aft.getZ(), delta)
+                );
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            default -> //also STEP
+                    out.set(start.getX(), start.getY(), start.getZ());
         }
 
-        return null;
+        //blend weight
+        out.scale(blendWeight);
+        return true;
     }
 
-    public Vec3f getKeyFrameData(TreeMap<Float, KeyFrame> map, float offset, boolean inverted) {
-        //get keyframes
-        Map.Entry<Float, KeyFrame> floor = map.floorEntry(offset);
-        Map.Entry<Float, KeyFrame> ceil = map.ceilingEntry(offset);
-
-        if (floor == null && ceil == null)
-            return null;
+    //writes the keyframe value at the start offset into out, returns false if there are no keyframes
+    private boolean sampleStart(KeyFrame[] frames, Vec3f out) {
+        if (frames.length == 0)
+            return false;
 
-        //set current and next keyframes
-        KeyFrame curr = Objects.requireNonNullElse(floor, ceil).getValue();
-        KeyFrame next = Objects.requireNonNullElse(ceil, floor).getValue();
+        int floor = floorIndex(frames, startOffset);
+        int ceil = floor >= 0 && frames[floor].time == startOffset ? floor : floor + 1;
 
-        //weight
-        Vec3f ret = inverted ? next.data.copy() : curr.data.copy();
-        ret.scale(blendWeight);
+        KeyFrame curr = frames[floor >= 0 ? floor : ceil];
+        KeyFrame next = frames[ceil < frames.length ? ceil : floor];
 
-        return ret;
+        Vec3f data = inverted ? next.data : curr.data;
+        out.set(data.getX() * blendWeight, data.getY() * blendWeight, data.getZ() * blendWeight);
+        return true;
     }
 
     //nbt parser
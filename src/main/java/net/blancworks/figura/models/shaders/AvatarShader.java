@@ -0,0 +1,31 @@
+package net.blancworks.figura.models.shaders;
+
+import com.mojang.blaze3d.systems.RenderSystem;
+import org.luaj.vm2.LuaTable;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A script's handle to a shared shader, together with the uniform values only this script set on it.
+ */
+public class AvatarShader {
+    public final ShaderRegistry.ShaderKey key;
+    public final FiguraShader shader;
+    public final ShaderUniformState uniforms;
+
+    //uniform handles given to the script, by uniform name
+    public final Map<String, LuaTable> handles = new HashMap<>();
+
+    public AvatarShader(ShaderRegistry.ShaderKey key, FiguraShader shader) {
+        this.key = key;
+        this.shader = shader;
+        this.uniforms = new ShaderUniformState(shader);
+    }
+
+    //uploads this avatar's uniforms and makes the shader current
+    public void bind() {
+        shader.applyUniforms(uniforms);
+        RenderSystem.setShader(() -> shader);
+    }
+}
@@ -0,0 +1,134 @@
+package net.blancworks.figura.models.shaders;
+
+import net.blancworks.figura.avatar.AvatarData;
+import net.blancworks.figura.lua.api.RenderLayerAPI;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.client.render.BufferBuilder;
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects the geometry of every avatar rendered in the world during a frame, grouped by render layer, and draws each layer once.
+ * Vanilla render layers are cached per texture and state, so avatars sharing a layer end up in the same buffer and the same draw call,
+ * instead of every avatar flushing its own buffers. Custom layers with Lua pre and post draw hooks are never batched, they stay
+ * in the avatar's {@link FiguraVertexConsumerProvider}.
+ */
+public class BatchedVertexConsumerProvider implements VertexConsumerProvider {
+    public static final BatchedVertexConsumerProvider INSTANCE = new BatchedVertexConsumerProvider();
+
+    //draw everything early past this many layers, so a frame full of unique textures can't keep growing the buffers
+    public static final int MAX_LAYERS = 64;
+    public static final int INITIAL_BUFFER_SIZE = 256;
+
+    private static boolean active = false;
+
+    private final Map<RenderLayer, Batch> batches = new LinkedHashMap<>();
+    private final ArrayDeque<BufferBuilder> pool = new ArrayDeque<>();
+
+    //stats of the last complete frame
+    public static int lastDrawCalls = 0;
+    public static int lastMergedDraws = 0;
+    private static int drawCalls = 0;
+    private static int mergedDraws = 0;
+
+    private static class Batch {
+        private final BufferBuilder buffer;
+        //every avatar drawn into this layer, only a handful so a list beats a set
+        private final ArrayList<AvatarData> avatars = new ArrayList<>(4);
+        private AvatarData lastAvatar;
+
+        private Batch(BufferBuilder buffer, AvatarData lastAvatar) {
+            this.buffer = buffer;
+            this.lastAvatar = lastAvatar;
+            avatars.add(lastAvatar);
+        }
+    }
+
+    private BatchedVertexConsumerProvider() {}
+
+    // -- frame -- //
+
+    //called by the world renderer before any entity renders
+    public static void beginFrame() {
+        INSTANCE.draw();
+
+        lastDrawCalls = drawCalls;
+        lastMergedDraws = mergedDraws;
+        drawCalls = 0;
+        mergedDraws = 0;
+
+        active = !RenderLayerAPI.areIrisShadersEnabled();
+    }
+
+    //called by the world renderer when it draws the entity layers, and once after the world rendered
+    public static void flush() {
+        INSTANCE.draw();
+    }
+
+    public static void endFrame() {
+        INSTANCE.draw();
+        active = false;
+    }
+
+    /**
+     * Decides where an avatar should render into.
+     * Only the world's entity buffers are batched, outlines, the gui and the first person hand keep their own providers.
+     */
+    public static VertexConsumerProvider route(VertexConsumerProvider vcp) {
+        if (active && vcp == MinecraftClient.getInstance().getBufferBuilders().getEntityVertexConsumers())
+            return INSTANCE;
+        return vcp;
+    }
+
+    // -- provider -- //
+
+    @Override
+    public VertexConsumer getBuffer(RenderLayer layer) {
+        AvatarData data = AvatarData.currentRenderingData;
+
+        Batch batch = batches.get(layer);
+        if (batch == null) {
+            if (batches.size() >= MAX_LAYERS)
+                draw();
+
+            BufferBuilder buffer = pool.isEmpty() ? new BufferBuilder(INITIAL_BUFFER_SIZE) : pool.poll();
+            buffer.begin(layer.getDrawMode(), layer.getVertexFormat());
+
+            batch = new Batch(buffer, data);
+            batches.put(layer, batch);
+        } else if (batch.lastAvatar != data) {
+            //avatars can come back to a layer (like through their held items), only the first time one joins saves a draw call
+            batch.lastAvatar = data;
+            if (!batch.avatars.contains(data)) {
+                batch.avatars.add(data);
+                mergedDraws++;
+            }
+        }
+
+        return batch.buffer;
+    }
+
+    public void draw() {
+        if (batches.isEmpty())
+            return;
+
+        //the draws may render more avatars (like through a custom layer), so work on a copy
+        ArrayList<Map.Entry<RenderLayer, Batch>> toDraw = new ArrayList<>(batches.entrySet());
+        batches.clear();
+
+        for (Map.Entry<RenderLayer, Batch> entry : toDraw) {
+            BufferBuilder buffer = entry.getValue().buffer;
+            entry.getKey().draw(buffer, 0, 0, 0);
+            drawCalls++;
+
+            if (pool.size() < MAX_LAYERS)
+                pool.add(buffer);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package net.blancworks.figura.models.shaders;
+
+import net.minecraft.client.render.RenderLayer;
+import net.minecraft.client.render.VertexConsumer;
+import net.minecraft.client.render.VertexConsumerProvider;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A vertex consumer provider that only counts what would be drawn, without touching the GPU.
+ * A draw call is counted for every layer that received vertices since the last {@link #draw()}.
+ */
+public class CountingVertexConsumerProvider implements VertexConsumerProvider {
+
+    private final Map<RenderLayer, CountingVertexConsumer> consumers = new HashMap<>();
+    private final Set<RenderLayer> pendingLayers = new HashSet<>();
+    private final Set<RenderLayer> frameLayers = new HashSet<>();
+
+    public int vertices = 0;
+    public int drawCalls = 0;
+
+    @Override
+    public VertexConsumer getBuffer(RenderLayer layer) {
+        return consumers.computeIfAbsent(layer, CountingVertexConsumer::new);
+    }
+
+    public void draw() {
+        drawCalls += pendingLayers.size();
+        pendingLayers.clear();
+    }
+
+    //how many different layers were used since the last reset
+    public int getLayerCount() {
+        return frameLayers.size();
+    }
+
+    public void reset() {
+        draw();
+        vertices = 0;
+        drawCalls = 0;
+        frameLayers.clear();
+    }
+
+    private class CountingVertexConsumer implements VertexConsumer {
+        private final RenderLayer layer;
+
+        private CountingVertexConsumer(RenderLayer layer) {
+            this.layer = layer;
+        }
+
+        @Override
+        public VertexConsumer vertex(double x, double y, double z) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer color(int red, int green, int blue, int alpha) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer texture(float u, float v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer overlay(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer light(int u, int v) {
+            return this;
+        }
+
+        @Override
+        public VertexConsumer normal(float x, float y, float z) {
+            return this;
+        }
+
+        @Override
+        public void next() {
+            vertices++;
+            pendingLayers.add(layer);
+            frameLayers.add(layer);
+        }
+
+        @Override
+        public void fixedColor(int red, int green, int blue, int alpha) {}
+
+        @Override
+        public void unfixColor() {}
+    }
+}
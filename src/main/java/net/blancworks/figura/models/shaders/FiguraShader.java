@@ -12,11 +12,13 @@ import net.minecraft.resource.metadata.ResourceMetadataReader;
 import net.minecraft.util.Identifier;
 import org.jetbrains.annotations.Nullable;
 import org.luaj.vm2.LuaError;
+import org.luaj.vm2.LuaTable;
 import org.luaj.vm2.LuaValue;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -30,67 +32,133 @@ public class FiguraShader extends Shader {
         Program.Type.FRAGMENT.getProgramCache().remove(name);
     }
 
+    /**
+     * Where a uniform's values live in an avatar's {@link ShaderUniformState}, resolved once when the shader is created.
+     */
+    public record UniformSlot(int index, String name, int dataType, int count, int offset, boolean custom, GlUniform uniform) {
+        public boolean isMatrix() {
+            return dataType >= 8;
+        }
+    }
+
+    private final Map<String, UniformSlot> slots = new HashMap<>();
+    private final List<UniformSlot> slotList = new ArrayList<>();
+    private int blockSize = 0;
+    //values from the shader json, which every avatar starts with
+    private float[] defaultBlock = new float[0];
+
+    //the uniform state currently uploaded, so values staged for it can be uploaded right away
+    private ShaderUniformState boundState;
+
+    private void buildSlots(List<String> names, int customStart) {
+        for (int i = 0; i < names.size(); i++) {
+            String name = names.get(i);
+            GlUniform uniform = getUniform(name);
+            if (uniform == null || slots.containsKey(name))
+                continue;
+
+            UniformSlot slot = new UniformSlot(slotList.size(), name, uniform.getDataType(), uniform.getCount(), blockSize, i >= customStart, uniform);
+            slots.put(name, slot);
+            slotList.add(slot);
+            blockSize += slot.count;
+        }
+
+        //identity matrices, zero for everything else
+        defaultBlock = new float[blockSize];
+        for (UniformSlot slot : slotList) {
+            if (!slot.isMatrix()) continue;
+            int size = (int) Math.sqrt(slot.count);
+            for (int i = 0; i < size; i++)
+                defaultBlock[slot.offset + i * size + i] = 1f;
+        }
+    }
+
     public boolean hasUniform(String name) {
-        return getUniform(name) != null;
+        return slots.containsKey(name);
+    }
+
+    public UniformSlot getSlot(String name) {
+        return slots.get(name);
+    }
+
+    public List<UniformSlot> getSlots() {
+        return slotList;
+    }
+
+    public int getBlockSize() {
+        return blockSize;
+    }
+
+    public float[] getDefaultBlock() {
+        return defaultBlock;
     }
 
     /**
      * Attempts to set the value of the specified uniform to the specified value.
+     * @param state The uniform state of the avatar
      * @param name The name of the targeted uniform
      * @param value The value to be passed to the uniform
      * @throws LuaError When the arguments are not valid
      */
-    public void setUniformFromLua(LuaValue name, LuaValue value) throws LuaError {
-        try {
-            GlUniform uniform = getUniform(name.checkjstring());
-            if (uniform == null) {
-                throw new LuaError("No uniform with name " + name.checkjstring() + " exists!");
-            } else {
-                try {
-                    value.checknotnil();
-                    switch (uniform.getDataType()) {
-                        case 0, 1, 2, 3 -> { //int
-                            if (value.isnumber()) {
-                                uniform.set(value.checkint());
-                            } else {
-                                LuaVector v = LuaVector.checkOrNew(value);
-                                uniform.setForDataType((int) v.x(), (int) v.y(), (int) v.z(), (int) v.w());
-                            }
-                        }
-                        case 4, 5, 6, 7 -> { //float
-                            if (value.isnumber()) {
-                                uniform.set(value.tofloat());
-                            } else {
-                                LuaVector v = LuaVector.checkOrNew(value);
-                                uniform.setForDataType(v.x(), v.y(), v.z(), v.w());
-                            }
-
-                        }
-                        case 8 -> { //2x2 matrix
-                            value.checktable();
-                            uniform.set(value.get(1).tofloat(), value.get(2).tofloat(),
-                                    value.get(3).tofloat(), value.get(4).tofloat());
-                        }
-                        case 9 -> { //3x3 matrix
-                            value.checktable();
-                            uniform.set(value.get(1).tofloat(), value.get(2).tofloat(), value.get(3).tofloat(),
-                                    value.get(4).tofloat(), value.get(5).tofloat(), value.get(6).tofloat(),
-                                    value.get(7).tofloat(), value.get(8).tofloat(), value.get(9).tofloat());
-                        }
-                        case 10 -> { //4x4 matrix
-                            value.checktable();
-                            uniform.set(value.get(1).tofloat(), value.get(2).tofloat(), value.get(3).tofloat(), value.get(4).tofloat(),
-                                    value.get(5).tofloat(), value.get(6).tofloat(), value.get(7).tofloat(), value.get(8).tofloat(),
-                                    value.get(9).tofloat(), value.get(10).tofloat(), value.get(11).tofloat(), value.get(12).tofloat(),
-                                    value.get(13).tofloat(), value.get(14).tofloat(), value.get(15).tofloat(), value.get(16).tofloat());
-                        }
-                    }
-                } catch (LuaError err) {
-                    throw new LuaError("Invalid arguments for setUniform(). Value should either be a number or a table of numbers, depending on the uniform type.");
-                }
-            }
-        } catch (Exception e) {
-            e.printStackTrace();
+    public void setUniformFromLua(ShaderUniformState state, LuaValue name, LuaValue value) throws LuaError {
+        UniformSlot slot = getSlot(name.checkjstring());
+        if (slot == null)
+            throw new LuaError("No uniform with name " + name.checkjstring() + " exists!");
+
+        stage(state, slot, value);
+    }
+
+    /**
+     * Writes a Lua value into the avatar's block, without looking anything up.
+     * If the avatar has the shader bound, the uniform is also updated right away.
+     */
+    public void stage(ShaderUniformState state, UniformSlot slot, LuaValue value) throws LuaError {
+        float[] block = state.block;
+
+        if (value.isnumber()) {
+            //numbers only set the first value, like they always did
+            block[slot.offset] = slot.dataType <= 3 ? value.toint() : value.tofloat();
+        } else if (value instanceof LuaVector vector && !slot.isMatrix()) {
+            vector.copyTo(block, slot.offset, slot.count);
+        } else if (value instanceof LuaTable table) {
+            for (int i = 0; i < slot.count; i++)
+                block[slot.offset + i] = table.rawget(i + 1).tofloat();
+        } else {
+            throw new LuaError("Invalid arguments for setUniform(). Value should either be a number or a table of numbers, depending on the uniform type.");
+        }
+
+        state.markStaged(slot.index);
+        if (boundState == state)
+            upload(slot, block);
+    }
+
+    //uploads the avatar's uniforms, called whenever the avatar binds this shader
+    //custom uniforms are always uploaded, so an avatar never sees the values another avatar left on the shared shader
+    public void applyUniforms(ShaderUniformState state) {
+        boundState = state;
+
+        for (UniformSlot slot : slotList) {
+            if (needsUpload(slot, state))
+                upload(slot, state.block);
+        }
+    }
+
+    static boolean needsUpload(UniformSlot slot, ShaderUniformState state) {
+        return slot.custom || state.isStaged(slot.index);
+    }
+
+    //copies the values into the uniform, which sends them to the GPU when the shader is next bound for a draw
+    private static void upload(UniformSlot slot, float[] b) {
+        GlUniform uniform = slot.uniform;
+        int o = slot.offset;
+
+        switch (slot.dataType) {
+            case 0, 1, 2, 3 -> uniform.setForDataType((int) b[o], slot.count > 1 ? (int) b[o + 1] : 0, slot.count > 2 ? (int) b[o + 2] : 0, slot.count > 3 ? (int) b[o + 3] : 0);
+            case 4, 5, 6, 7 -> uniform.setForDataType(b[o], slot.count > 1 ? b[o + 1] : 0f, slot.count > 2 ? b[o + 2] : 0f, slot.count > 3 ? b[o + 3] : 0f);
+            case 8 -> uniform.set(b[o], b[o + 1], b[o + 2], b[o + 3]);
+            case 9 -> uniform.set(b[o], b[o + 1], b[o + 2], b[o + 3], b[o + 4], b[o + 5], b[o + 6], b[o + 7], b[o + 8]);
+            case 10 -> uniform.set(b[o], b[o + 1], b[o + 2], b[o + 3], b[o + 4], b[o + 5], b[o + 6], b[o + 7],
+                    b[o + 8], b[o + 9], b[o + 10], b[o + 11], b[o + 12], b[o + 13], b[o + 14], b[o + 15]);
         }
     }
 
@@ -173,7 +241,13 @@ public class FiguraShader extends Shader {
 
         //Pass all 3 strings to create a special factory that just returns them back as InputStreams
         ResourceFactory factory = new FiguraShaderFactory(json.toString(), vertexSource, fragmentSource);
-        return new FiguraShader(factory, name, vertexFormat);
+        FiguraShader shader = new FiguraShader(factory, name, vertexFormat);
+
+        List<String> allUniforms = new ArrayList<>(defaultUniformNames);
+        allUniforms.addAll(uniformNames);
+        shader.buildSlots(allUniforms, defaultUniformNames.size());
+
+        return shader;
     }
 
     private static class FiguraShaderFactory implements ResourceFactory {
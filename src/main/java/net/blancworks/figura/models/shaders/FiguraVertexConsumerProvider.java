@@ -82,7 +82,7 @@ public class FiguraVertexConsumerProvider implements VertexConsumerProvider {
 
         AvatarData data = AvatarData.currentRenderingData;
         if (data != null && data.vertexConsumerProvider != null)
-            return data.vertexConsumerProvider.getBuffer(layer);
+            return BatchedVertexConsumerProvider.route(data.vertexConsumerProvider).getBuffer(layer);
 
         return null;
     }
@@ -0,0 +1,59 @@
+package net.blancworks.figura.models.shaders;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import net.blancworks.figura.FiguraMod;
+import net.blancworks.figura.utils.RefCountedRegistry;
+import net.minecraft.client.render.VertexFormat;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Compiled shaders shared by every avatar registering the same shader, so a crowd wearing the same avatar compiles it only once.
+ * Shaders are kept while any script holds them, and closed on the render thread after the last one releases them.
+ */
+public class ShaderRegistry {
+
+    /**
+     * Everything that goes into compiling a shader. Two scripts with equal keys get the same program.
+     */
+    public record ShaderKey(String vertexFormat, String vertexSource, String fragmentSource, int samplers, List<String> uniformNames, List<String> uniformTypes) {
+        public ShaderKey {
+            uniformNames = List.copyOf(uniformNames);
+            uniformTypes = List.copyOf(uniformTypes);
+        }
+
+        //short id for logs
+        public String hash() {
+            Hasher hasher = Hashing.sha256().newHasher()
+                    .putString(vertexFormat, StandardCharsets.UTF_8)
+                    .putString(vertexSource, StandardCharsets.UTF_8)
+                    .putString(fragmentSource, StandardCharsets.UTF_8)
+                    .putInt(samplers);
+            for (int i = 0; i < uniformNames.size(); i++)
+                hasher.putString(uniformNames.get(i), StandardCharsets.UTF_8).putString(uniformTypes.get(i), StandardCharsets.UTF_8);
+
+            return hasher.hash().toString().substring(0, 12);
+        }
+    }
+
+    private static final RefCountedRegistry<ShaderKey, FiguraShader> SHADERS = new RefCountedRegistry<>(FiguraShader::close);
+
+    //must be called on the render thread
+    public static FiguraShader acquire(ShaderKey key, VertexFormat format) throws Exception {
+        return SHADERS.acquire(key, () -> {
+            FiguraMod.LOGGER.debug("Compiling shader " + key.hash());
+            return FiguraShader.create(format, key.vertexSource(), key.fragmentSource(), key.samplers(), key.uniformNames(), key.uniformTypes());
+        });
+    }
+
+    //must be called on the render thread
+    public static void release(ShaderKey key) {
+        SHADERS.release(key);
+    }
+
+    public static int getLoadedCount() {
+        return SHADERS.size();
+    }
+}
@@ -0,0 +1,35 @@
+package net.blancworks.figura.models.shaders;
+
+import java.util.BitSet;
+
+/**
+ * The uniform values one avatar set on a shader, laid out in one block by the shader's {@link FiguraShader.UniformSlot}s.
+ * Shaders are shared between avatars using the same sources, so values are staged here and only uploaded when the avatar binds the shader.
+ */
+public class ShaderUniformState {
+    public final float[] block;
+    private final BitSet staged;
+
+    //every avatar starts from its own copy of the defaults
+    public ShaderUniformState(float[] defaultBlock, int slotCount) {
+        this.block = defaultBlock.clone();
+        this.staged = new BitSet(slotCount);
+    }
+
+    public ShaderUniformState(FiguraShader shader) {
+        this(shader.getDefaultBlock(), shader.getSlots().size());
+    }
+
+    public void markStaged(int slot) {
+        staged.set(slot);
+    }
+
+    //vanilla uniforms are only uploaded if the avatar set them, otherwise they keep the values the game gave them
+    public boolean isStaged(int slot) {
+        return staged.get(slot);
+    }
+
+    public void clear() {
+        staged.clear();
+    }
+}
@@ -0,0 +1,286 @@
+package net.blancworks.figura.network;
+
+import com.neovisionaries.ws.client.WebSocket;
+import net.blancworks.figura.FiguraMod;
+import net.blancworks.figura.avatar.AvatarData;
+import net.blancworks.figura.avatar.AvatarDataManager;
+import net.blancworks.figura.network.messages.MessageRegistry;
+import net.blancworks.figura.network.messages.avatar.AvatarManifestUploadMessageSender;
+import net.blancworks.figura.network.messages.avatar.AvatarSectionQueryMessageSender;
+import net.blancworks.figura.network.messages.avatar.AvatarSectionRequestMessageSender;
+import net.blancworks.figura.network.messages.avatar.AvatarSectionUploadMessageSender;
+import net.blancworks.figura.parsers.FiguraAvatarContainer;
+import net.blancworks.figura.parsers.FiguraAvatarContainer.SectionData;
+import net.minecraft.nbt.NbtCompound;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * Uploads and downloads avatars as content hashed sections (model, textures, script, each sound).
+ * Only the sections the server is missing are uploaded, and only the sections missing from the local cache are downloaded.
+ * Servers without the section messages keep using the whole avatar upload.
+ */
+public class AvatarSectionManager {
+
+    //sections are cached by hash, up to this many bytes
+    public static final long MAX_CACHE_SIZE = 64L * 1024 * 1024;
+
+    //largest section accepted from the network, stored or inflated
+    //avatars are limited to the large file size once compressed, the rest is headroom for the compression ratio
+    public static final int MAX_SECTION_SIZE = AvatarData.FILESIZE_LARGE_THRESHOLD * 16;
+
+    //most sections listed by a single message, the avatar container can't hold more
+    public static final int MAX_SECTION_COUNT = 0xFFFF;
+
+    //avatars still missing sections after this long are fetched again, up to a few times
+    public static final long SECTION_TIMEOUT_MS = 30000;
+    public static final int MAX_FETCH_RETRIES = 2;
+
+    private static final LinkedHashMap<String, SectionData> SECTION_CACHE = new LinkedHashMap<>(16, 0.75f, true);
+    private static long cacheSize = 0;
+
+    //the last uploaded avatar, waiting for the server to tell which sections it is missing
+    private static final Map<String, SectionData> PENDING_UPLOAD = new HashMap<>();
+    private static List<SectionEntry> uploadManifest = new ArrayList<>();
+
+    //avatars waiting for their missing sections
+    private static final Map<UUID, PendingAvatar> PENDING_AVATARS = new HashMap<>();
+    private static final Map<UUID, Integer> FETCH_RETRIES = new HashMap<>();
+
+    public record SectionEntry(String name, String hash) {}
+
+    private record PendingAvatar(String avatarHash, List<SectionEntry> sections, Set<String> missing, long requestedAt) {}
+
+    public static boolean isSupported() {
+        MessageRegistry registry = NewFiguraNetworkManager.msgRegistry;
+        return registry != null && registry.hasMessage("figura_v1:avatar_section_query") && registry.hasMessage("figura_v1:avatar_manifest_upload");
+    }
+
+    //uploading
+
+    public static void upload(NbtCompound nbt) throws IOException {
+        List<String> hashes = new ArrayList<>();
+
+        synchronized (PENDING_UPLOAD) {
+            PENDING_UPLOAD.clear();
+            uploadManifest = new ArrayList<>();
+
+            for (SectionData section : FiguraAvatarContainer.split(nbt)) {
+                String hash = hash(section.type(), section.data());
+
+                //keep our own sections, so we don't download them back
+                cache(hash, section.type(), section.data());
+
+                PENDING_UPLOAD.put(hash, section);
+                uploadManifest.add(new SectionEntry(section.name(), hash));
+                hashes.add(hash);
+            }
+        }
+
+        new AvatarSectionQueryMessageSender(hashes).sendMessage(NewFiguraNetworkManager.currWebSocket);
+    }
+
+    //called when the server answers which of the queried sections it doesn't have
+    public static void onMissingSections(Collection<String> missing) {
+        WebSocket socket = NewFiguraNetworkManager.currWebSocket;
+
+        synchronized (PENDING_UPLOAD) {
+            if (uploadManifest.isEmpty())
+                return;
+
+            for (String hash : missing) {
+                SectionData section = PENDING_UPLOAD.get(hash);
+                if (section != null)
+                    new AvatarSectionUploadMessageSender(hash, section).sendMessage(socket);
+            }
+
+            //the server builds the avatar from the manifest, and answers like a regular upload
+            new AvatarManifestUploadMessageSender(uploadManifest).sendMessage(socket);
+
+            PENDING_UPLOAD.clear();
+            uploadManifest = new ArrayList<>();
+        }
+    }
+
+    //downloading
+
+    public static void onManifest(UUID user, String avatarHash, List<SectionEntry> sections) {
+        Set<String> missing = new LinkedHashSet<>();
+
+        synchronized (SECTION_CACHE) {
+            for (SectionEntry entry : sections) {
+                if (!SECTION_CACHE.containsKey(entry.hash()))
+                    missing.add(entry.hash());
+            }
+        }
+
+        if (missing.isEmpty()) {
+            loadAvatar(user, avatarHash, sections);
+            return;
+        }
+
+        synchronized (PENDING_AVATARS) {
+            PENDING_AVATARS.put(user, new PendingAvatar(avatarHash, sections, missing, System.currentTimeMillis()));
+        }
+
+        new AvatarSectionRequestMessageSender(missing).sendMessage(NewFiguraNetworkManager.currWebSocket);
+    }
+
+    public static void onSectionReceived(String hash, byte type, byte[] data) {
+        if (!hash.equals(hash(type, data))) {
+            FiguraMod.LOGGER.warn("Received avatar section with mismatched hash " + hash);
+            onSectionFailed(hash);
+            return;
+        }
+
+        cache(hash, type, data);
+
+        //load all avatars that were only waiting for this section
+        Map<UUID, PendingAvatar> ready = new HashMap<>();
+        synchronized (PENDING_AVATARS) {
+            Iterator<Map.Entry<UUID, PendingAvatar>> iterator = PENDING_AVATARS.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<UUID, PendingAvatar> entry = iterator.next();
+                PendingAvatar pending = entry.getValue();
+
+                if (pending.missing.remove(hash) && pending.missing.isEmpty()) {
+                    ready.put(entry.getKey(), pending);
+                    iterator.remove();
+                }
+            }
+        }
+
+        ready.forEach((user, pending) -> loadAvatar(user, pending.avatarHash, pending.sections));
+    }
+
+    //a section that can't be used, the avatars waiting for it are fetched again
+    public static void onSectionFailed(String hash) {
+        List<UUID> failed = new ArrayList<>();
+        synchronized (PENDING_AVATARS) {
+            Iterator<Map.Entry<UUID, PendingAvatar>> iterator = PENDING_AVATARS.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<UUID, PendingAvatar> entry = iterator.next();
+                if (entry.getValue().missing.contains(hash)) {
+                    failed.add(entry.getKey());
+                    iterator.remove();
+                }
+            }
+        }
+
+        failed.forEach(AvatarSectionManager::refetch);
+    }
+
+    //called every tick, so avatars whose sections never arrive don't wait forever
+    public static void tick() {
+        long now = System.currentTimeMillis();
+
+        List<UUID> expired = new ArrayList<>();
+        synchronized (PENDING_AVATARS) {
+            Iterator<Map.Entry<UUID, PendingAvatar>> iterator = PENDING_AVATARS.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<UUID, PendingAvatar> entry = iterator.next();
+                if (now - entry.getValue().requestedAt >= SECTION_TIMEOUT_MS) {
+                    expired.add(entry.getKey());
+                    iterator.remove();
+                }
+            }
+        }
+
+        expired.forEach(AvatarSectionManager::refetch);
+    }
+
+    private static void refetch(UUID user) {
+        int retries;
+        synchronized (PENDING_AVATARS) {
+            retries = FETCH_RETRIES.merge(user, 1, Integer::sum);
+            if (retries > MAX_FETCH_RETRIES)
+                FETCH_RETRIES.remove(user);
+        }
+
+        if (retries > MAX_FETCH_RETRIES) {
+            FiguraMod.LOGGER.warn("Giving up on the avatar of " + user + ", its sections could not be downloaded");
+            return;
+        }
+
+        FiguraMod.networkManager.getAvatarData(user);
+    }
+
+    private static void loadAvatar(UUID user, String avatarHash, List<SectionEntry> sections) {
+        try {
+            NbtCompound nbt = new NbtCompound();
+
+            for (SectionEntry entry : sections) {
+                SectionData section;
+                synchronized (SECTION_CACHE) {
+                    section = SECTION_CACHE.get(entry.hash());
+                }
+
+                //evicted while waiting for other sections, fetch the whole avatar again, counting as a retry
+                if (section == null) {
+                    refetch(user);
+                    return;
+                }
+
+                FiguraAvatarContainer.putSection(nbt, entry.name(), FiguraAvatarContainer.decode(section.type(), section.data()));
+            }
+
+            synchronized (PENDING_AVATARS) {
+                FETCH_RETRIES.remove(user);
+            }
+
+            AvatarData pData = AvatarDataManager.getDataForPlayer(user);
+            if (pData == null) return;
+
+            pData.loadFromNbt(FiguraMod.IS_CHEESE ? FiguraMod.cheese : nbt);
+            pData.isLocalAvatar = false;
+            pData.lastHash = avatarHash;
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    //cache
+
+    private static void cache(String hash, byte type, byte[] data) {
+        synchronized (SECTION_CACHE) {
+            if (SECTION_CACHE.containsKey(hash))
+                return;
+
+            SECTION_CACHE.put(hash, new SectionData(hash, type, data));
+            cacheSize += data.length;
+
+            //evict least recently used sections
+            Iterator<SectionData> iterator = SECTION_CACHE.values().iterator();
+            while (cacheSize > MAX_CACHE_SIZE && SECTION_CACHE.size() > 1) {
+                cacheSize -= iterator.next().data().length;
+                iterator.remove();
+            }
+        }
+    }
+
+    public static void clearCache() {
+        synchronized (SECTION_CACHE) {
+            SECTION_CACHE.clear();
+            cacheSize = 0;
+        }
+    }
+
+    public static String hash(byte type, byte[] data) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            md.update(type);
+            md.update(data);
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : md.digest())
+                hex.append(String.format("%02x", b));
+
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -8,11 +8,15 @@ import com.neovisionaries.ws.client.WebSocketAdapter;
 import com.neovisionaries.ws.client.WebSocketFrame;
 import net.blancworks.figura.FiguraMod;
 import net.blancworks.figura.network.messages.MessageHandler;
+import net.blancworks.figura.network.messages.avatar.AvatarManifestUploadResponseHandler;
 import net.blancworks.figura.network.messages.avatar.AvatarProvideResponseHandler;
+import net.blancworks.figura.network.messages.avatar.AvatarSectionMissingResponseHandler;
+import net.blancworks.figura.network.messages.avatar.AvatarSectionProvideResponseHandler;
 import net.blancworks.figura.network.messages.avatar.AvatarUploadResponseHandler;
 import net.blancworks.figura.network.messages.pings.PingMessageHandler;
 import net.blancworks.figura.network.messages.pubsub.ChannelAvatarUpdateHandler;
 import net.blancworks.figura.network.messages.user.UserAvatarHashProvideResponseHandler;
+import net.blancworks.figura.network.messages.user.UserAvatarManifestProvideResponseHandler;
 import net.blancworks.figura.network.messages.user.UserAvatarProvideResponseHandler;
 import net.blancworks.figura.network.messages.utility.ErrorMessageHandler;
 
@@ -52,6 +56,18 @@ public class FiguraNetworkMessageHandler extends WebSocketAdapter {
         add(
                 ErrorMessageHandler::new
         );
+        add(
+                AvatarSectionMissingResponseHandler::new
+        );
+        add(
+                AvatarSectionProvideResponseHandler::new
+        );
+        add(
+                AvatarManifestUploadResponseHandler::new
+        );
+        add(
+                UserAvatarManifestProvideResponseHandler::new
+        );
     }};
 
     private boolean skipNext = false;
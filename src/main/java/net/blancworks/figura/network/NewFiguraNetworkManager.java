@@ -146,6 +146,9 @@ public class NewFiguraNetworkManager implements IFiguraNetwork {
             allSubscriptions.clear();
         }
 
+        //fetch again the avatars whose sections never arrived
+        AvatarSectionManager.tick();
+
         //If the old token we had is old enough, re-auth us.
         Date currTime = new Date();
 
@@ -194,6 +197,12 @@ public class NewFiguraNetworkManager implements IFiguraNetwork {
                 data.writeNbt(nbt);
 
                 try {
+                    //Only upload the sections the server doesn't have, if it supports it
+                    if (AvatarSectionManager.isSupported()) {
+                        AvatarSectionManager.upload(nbt);
+                        return;
+                    }
+
                     //Set up streams.
                     ByteArrayOutputStream baos = new ByteArrayOutputStream();
                     DataOutputStream nbtDataStream = new DataOutputStream(baos);
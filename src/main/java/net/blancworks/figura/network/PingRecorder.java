@@ -0,0 +1,168 @@
+package net.blancworks.figura.network;
+
+import net.blancworks.figura.FiguraMod;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records the raw ping frames sent and received, with timestamps, so a session can be replayed later by {@link PingReplay}.
+ * A frame is the ping message payload (ping count, then id and value of each ping), exactly as it goes over the network.
+ */
+public class PingRecorder {
+    public static final int MAGIC = 0x46505243; //FPRC
+    public static final int VERSION = 1;
+    public static final String EXTENSION = ".fpr";
+
+    public static final byte INCOMING = 0;
+    public static final byte OUTGOING = 1;
+
+    //frames are written on their own thread, so the network thread never waits on the disk
+    private static final ExecutorService WRITE_EXECUTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Figura Ping Recorder");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static DataOutputStream output;
+    private static long startTime;
+
+    public record Frame(long time, byte direction, UUID sender, byte[] payload) {}
+
+    public static Path getFolder() {
+        return FiguraMod.getModContentDirectory().resolve("pings");
+    }
+
+    public static boolean isRecording() {
+        return output != null;
+    }
+
+    public static synchronized void start() {
+        if (output != null || WRITE_EXECUTOR.isShutdown())
+            return;
+
+        try {
+            Path folder = getFolder();
+            if (!Files.exists(folder))
+                Files.createDirectories(folder);
+
+            Path file = folder.resolve("pings-" + new SimpleDateFormat("yyyy_MM_dd-HH_mm_ss").format(new Date()) + EXTENSION);
+            output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+            output.writeInt(MAGIC);
+            output.writeInt(VERSION);
+            startTime = System.nanoTime();
+
+            FiguraMod.LOGGER.info("Recording pings to " + file);
+        } catch (Exception e) {
+            e.printStackTrace();
+            output = null;
+        }
+    }
+
+    public static synchronized void stop() {
+        if (output == null)
+            return;
+
+        DataOutputStream out = output;
+        output = null;
+
+        WRITE_EXECUTOR.execute(() -> {
+            try {
+                out.close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+
+        FiguraMod.LOGGER.info("Stopped recording pings");
+    }
+
+    //called when the game closes, waits for the queued frames to be written, as the daemon thread would otherwise die with them
+    public static void shutdown() {
+        stop();
+        WRITE_EXECUTOR.shutdown();
+
+        try {
+            if (!WRITE_EXECUTOR.awaitTermination(10, TimeUnit.SECONDS))
+                FiguraMod.LOGGER.warn("Timed out writing the ping recording, it may be incomplete");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static synchronized void record(byte direction, UUID sender, byte[] payload) {
+        if (output == null || sender == null || WRITE_EXECUTOR.isShutdown())
+            return;
+
+        DataOutputStream out = output;
+        long time = System.nanoTime() - startTime;
+
+        WRITE_EXECUTOR.execute(() -> {
+            try {
+                out.writeLong(time);
+                out.writeByte(direction);
+                out.writeLong(sender.getMostSignificantBits());
+                out.writeLong(sender.getLeastSignificantBits());
+                out.writeInt(payload.length);
+                out.write(payload);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    public static List<Frame> read(Path file) throws IOException {
+        List<Frame> frames = new ArrayList<>();
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC)
+                throw new IOException("Not a ping recording: " + file);
+
+            int version = in.readInt();
+            if (version != VERSION)
+                throw new IOException("Unsupported ping recording version " + version);
+
+            while (true) {
+                long time;
+                try {
+                    time = in.readLong();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                byte direction = in.readByte();
+                UUID sender = new UUID(in.readLong(), in.readLong());
+                byte[] payload = new byte[in.readInt()];
+                in.readFully(payload);
+
+                frames.add(new Frame(time, direction, sender, payload));
+            }
+        }
+
+        return frames;
+    }
+
+    //the most recent recording, or null if there are none
+    public static Path getLatest() {
+        File[] files = getFolder().toFile().listFiles((dir, name) -> name.endsWith(EXTENSION));
+        if (files == null || files.length == 0)
+            return null;
+
+        File latest = files[0];
+        for (File file : files) {
+            if (file.lastModified() > latest.lastModified())
+                latest = file;
+        }
+
+        return latest.toPath();
+    }
+}
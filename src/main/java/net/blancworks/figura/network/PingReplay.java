@@ -0,0 +1,202 @@
+package net.blancworks.figura.network;
+
+import net.blancworks.figura.FiguraMod;
+import net.blancworks.figura.avatar.AvatarData;
+import net.blancworks.figura.avatar.AvatarDataManager;
+import net.blancworks.figura.lua.CustomScript;
+import net.blancworks.figura.network.messages.pings.PingMessageHandler;
+import net.blancworks.figura.trust.TrustContainer;
+import net.minecraft.client.MinecraftClient;
+import net.minecraft.text.LiteralText;
+import org.luaj.vm2.LuaError;
+
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Feeds a {@link PingRecorder} recording into a loaded script, without a server.
+ * The recording is played on a simulated clock, one tick (50ms) of pings at a time, as fast as the script can handle them.
+ * Each tick is a task on the script's own task chain, so the replay never runs at the same time as its events.
+ */
+public class PingReplay {
+    public static final long TICK_NANOS = 50_000_000L;
+
+    private static volatile boolean running = false;
+
+    public static class Report {
+        public final Path file;
+        public int frames = 0;
+        public int pings = 0;
+        public long bytes = 0;
+        public int errors = 0;
+        public long simulatedNanos = 0;
+        public long decodeNanos = 0;
+        public long wallStart = System.nanoTime();
+        public long wallNanos = 0;
+
+        //per ping name: calls, nanos and instructions
+        public final Map<String, long[]> handlers = new TreeMap<>();
+
+        public Report(Path file) {
+            this.file = file;
+        }
+
+        public double getPingsPerSecond() {
+            return pings / (Math.max(wallNanos, 1) / 1e9);
+        }
+
+        public void log() {
+            double wallSeconds = Math.max(wallNanos, 1) / 1e9;
+
+            FiguraMod.LOGGER.info(String.format("Ping replay of %s: %d frames, %d pings, %d bytes, %d errors", file.getFileName(), frames, pings, bytes, errors));
+            FiguraMod.LOGGER.info(String.format("Simulated %.2fs in %.3fs, %.0f pings/s, %.0f bytes/s", simulatedNanos / 1e9, wallSeconds, getPingsPerSecond(), bytes / wallSeconds));
+            FiguraMod.LOGGER.info(String.format("Decode: %.3fms total, %.2fµs per frame", decodeNanos / 1e6, frames == 0 ? 0d : decodeNanos / 1e3 / frames));
+
+            handlers.forEach((name, stats) -> FiguraMod.LOGGER.info(String.format(
+                    "  %s: %d calls, %.2fµs and %d instructions per call",
+                    name, stats[0], stats[1] / 1e3 / stats[0], stats[2] / stats[0]
+            )));
+        }
+    }
+
+    //replays the local player's own pings from the latest recording, into the local avatar
+    public static void replayLatest() {
+        AvatarData data = AvatarDataManager.localPlayer;
+        if (data == null || data.script == null) {
+            FiguraMod.LOGGER.warn("Ping replay needs a local avatar with a script loaded");
+            return;
+        }
+
+        Path file = PingRecorder.getLatest();
+        if (file == null) {
+            FiguraMod.LOGGER.warn("There are no ping recordings to replay");
+            return;
+        }
+
+        replay(file, data.entityId, data.script).thenAccept(report -> {
+            report.log();
+            String message = String.format("%d pings, %.0f/s", report.pings, report.getPingsPerSecond());
+            MinecraftClient.getInstance().execute(() -> FiguraMod.sendToast("figura.toast.ping_replay.title", new LiteralText(message)));
+        });
+    }
+
+    /**
+     * Replays the frames sent by the given player into the target script.
+     *
+     * @param file the recording
+     * @param sender whose pings to replay, pings ids only make sense for the avatar that sent them
+     * @param script the script handling the pings
+     * @return the report, completed after the last ping was handled
+     */
+    public static CompletableFuture<Report> replay(Path file, UUID sender, CustomScript script) {
+        CompletableFuture<Report> result = new CompletableFuture<>();
+        if (running) {
+            result.completeExceptionally(new IllegalStateException("A ping replay is already running"));
+            return result;
+        }
+
+        running = true;
+        FiguraMod.doTask(() -> {
+            try {
+                List<PingRecorder.Frame> frames = new ArrayList<>();
+                for (PingRecorder.Frame frame : PingRecorder.read(file)) {
+                    if (frame.sender().equals(sender))
+                        frames.add(frame);
+                }
+
+                Report report = new Report(file);
+                if (frames.isEmpty()) {
+                    finish(report, result);
+                    return;
+                }
+
+                //group the frames into simulated ticks, then queue one task per tick
+                long start = frames.get(0).time();
+                int index = 0;
+                CompletableFuture<Void> last = null;
+                while (index < frames.size()) {
+                    long clock = start + report.simulatedNanos + TICK_NANOS;
+                    List<PingRecorder.Frame> tick = new ArrayList<>();
+                    while (index < frames.size() && frames.get(index).time() < clock)
+                        tick.add(frames.get(index++));
+
+                    report.simulatedNanos += TICK_NANOS;
+                    if (!tick.isEmpty())
+                        last = script.queueTask(() -> runTick(script, tick, report));
+                }
+
+                if (last == null) {
+                    finish(report, result);
+                } else {
+                    last.whenComplete((v, e) -> {
+                        if (e != null) e.printStackTrace();
+                        finish(report, result);
+                    });
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+                running = false;
+                result.completeExceptionally(e);
+            }
+        });
+
+        return result;
+    }
+
+    private static void finish(Report report, CompletableFuture<Report> result) {
+        report.wallNanos = System.nanoTime() - report.wallStart;
+        running = false;
+        result.complete(report);
+    }
+
+    private static void runTick(CustomScript script, List<PingRecorder.Frame> frames, Report report) {
+        if (script.scriptError)
+            return;
+
+        script.setInstructionLimitPermission(TrustContainer.Trust.TICK_INST, 0);
+
+        for (PingRecorder.Frame frame : frames) {
+            report.frames++;
+            report.bytes += frame.payload().length;
+
+            List<PingMessageHandler.DecodedPing> pings;
+            long decodeStart = System.nanoTime();
+            try {
+                pings = PingMessageHandler.decode(frame.payload());
+            } catch (Exception e) {
+                report.errors++;
+                continue;
+            } finally {
+                report.decodeNanos += System.nanoTime() - decodeStart;
+            }
+
+            for (PingMessageHandler.DecodedPing decoded : pings) {
+                CustomScript.LuaPing ping = script.resolvePing(decoded.id(), decoded.args(), frame.payload().length);
+                report.pings++;
+                if (ping == null) {
+                    report.errors++;
+                    continue;
+                }
+
+                int instructions = script.scriptGlobals.running.state.bytecodes;
+                long callStart = System.nanoTime();
+                try {
+                    ping.function().call(ping.args());
+                } catch (LuaError e) {
+                    report.errors++;
+                    script.logLuaError(e);
+
+                    //went over the instruction limit, nothing else will run
+                    if (script.scriptError)
+                        return;
+                }
+
+                long[] stats = report.handlers.computeIfAbsent(ping.name(), k -> new long[3]);
+                stats[0]++;
+                stats[1] += System.nanoTime() - callStart;
+                stats[2] += script.scriptGlobals.running.state.bytecodes - instructions;
+            }
+        }
+    }
+}
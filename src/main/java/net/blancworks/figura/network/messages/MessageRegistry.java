@@ -31,6 +31,10 @@ public class MessageRegistry {
         return mapping.isEmpty();
     }
 
+    public boolean hasMessage(String protocolName) {
+        return mapping.containsKey(protocolName);
+    }
+
     public byte getMessageId(String protocolName) {
         return mapping.get(protocolName);
     }
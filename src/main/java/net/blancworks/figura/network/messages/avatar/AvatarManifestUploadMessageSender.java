@@ -0,0 +1,34 @@
+package net.blancworks.figura.network.messages.avatar;
+
+import com.google.common.io.LittleEndianDataOutputStream;
+import net.blancworks.figura.network.AvatarSectionManager.SectionEntry;
+import net.blancworks.figura.network.messages.MessageSender;
+
+import java.io.IOException;
+import java.util.List;
+
+//Uploads the list of sections making the avatar, after all the missing sections were sent.
+public class AvatarManifestUploadMessageSender extends MessageSender {
+
+    private final List<SectionEntry> sections;
+
+    public AvatarManifestUploadMessageSender(List<SectionEntry> sections) {
+        this.sections = sections;
+    }
+
+    @Override
+    public String getProtocolName() {
+        return "figura_v1:avatar_manifest_upload";
+    }
+
+    @Override
+    protected void write(LittleEndianDataOutputStream stream) throws IOException {
+        super.write(stream);
+
+        stream.writeInt(sections.size());
+        for (SectionEntry section : sections) {
+            writeString(section.name(), stream);
+            writeString(section.hash(), stream);
+        }
+    }
+}
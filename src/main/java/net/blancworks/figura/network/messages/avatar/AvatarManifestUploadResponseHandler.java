@@ -0,0 +1,10 @@
+package net.blancworks.figura.network.messages.avatar;
+
+//The server answers a manifest upload the same way as a whole avatar upload
+public class AvatarManifestUploadResponseHandler extends AvatarUploadResponseHandler {
+
+    @Override
+    public String getProtocolName() {
+        return "figura_v1:avatar_manifest_upload";
+    }
+}
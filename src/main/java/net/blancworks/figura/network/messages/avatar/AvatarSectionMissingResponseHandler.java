@@ -0,0 +1,35 @@
+package net.blancworks.figura.network.messages.avatar;
+
+import com.google.common.io.LittleEndianDataInputStream;
+import net.blancworks.figura.network.AvatarSectionManager;
+import net.blancworks.figura.network.messages.MessageHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+//Handles the list of queried avatar sections the server doesn't have
+public class AvatarSectionMissingResponseHandler extends MessageHandler {
+
+    @Override
+    public void handleMessage(LittleEndianDataInputStream stream) throws Exception {
+        super.handleMessage(stream);
+
+        //don't trust the count, a bad packet could allocate anything
+        int count = stream.readInt();
+        if (count < 0 || count > AvatarSectionManager.MAX_SECTION_COUNT)
+            throw new IOException("Invalid avatar section count " + count);
+
+        //the list only grows with the entries actually read
+        List<String> missing = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++)
+            missing.add(readString(stream));
+
+        AvatarSectionManager.onMissingSections(missing);
+    }
+
+    @Override
+    public String getProtocolName() {
+        return "figura_v1:avatar_section_missing";
+    }
+}
@@ -0,0 +1,47 @@
+package net.blancworks.figura.network.messages.avatar;
+
+import com.google.common.io.LittleEndianDataInputStream;
+import net.blancworks.figura.network.AvatarSectionManager;
+import net.blancworks.figura.network.messages.MessageHandler;
+import net.blancworks.figura.parsers.FiguraAvatarContainer;
+
+import java.io.IOException;
+
+//Handles an avatar section requested from the server
+public class AvatarSectionProvideResponseHandler extends MessageHandler {
+
+    @Override
+    public void handleMessage(LittleEndianDataInputStream stream) throws Exception {
+        super.handleMessage(stream);
+
+        String hash = readString(stream);
+        byte type = stream.readByte();
+        boolean deflate = stream.readBoolean();
+        int rawLength = stream.readInt();
+        int length = stream.readInt();
+
+        //don't trust the lengths, a bad packet could allocate anything
+        if (rawLength < 0 || rawLength > AvatarSectionManager.MAX_SECTION_SIZE || length < 0 || length > AvatarSectionManager.MAX_SECTION_SIZE) {
+            AvatarSectionManager.onSectionFailed(hash);
+            throw new IOException("Invalid avatar section size " + length + " (" + rawLength + " inflated)");
+        }
+
+        byte[] payload = new byte[length];
+        stream.readFully(payload);
+
+        byte[] data;
+        try {
+            data = deflate ? FiguraAvatarContainer.inflate(payload, rawLength) : payload;
+        } catch (IOException e) {
+            AvatarSectionManager.onSectionFailed(hash);
+            throw e;
+        }
+
+        AvatarSectionManager.onSectionReceived(hash, type, data);
+    }
+
+    @Override
+    public String getProtocolName() {
+        return "figura_v1:avatar_section_provide";
+    }
+}
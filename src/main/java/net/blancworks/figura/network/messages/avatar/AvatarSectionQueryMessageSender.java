@@ -0,0 +1,31 @@
+package net.blancworks.figura.network.messages.avatar;
+
+import com.google.common.io.LittleEndianDataOutputStream;
+import net.blancworks.figura.network.messages.MessageSender;
+
+import java.io.IOException;
+import java.util.Collection;
+
+//Asks the server which of the avatar sections (by hash) it doesn't have yet.
+public class AvatarSectionQueryMessageSender extends MessageSender {
+
+    private final Collection<String> hashes;
+
+    public AvatarSectionQueryMessageSender(Collection<String> hashes) {
+        this.hashes = hashes;
+    }
+
+    @Override
+    public String getProtocolName() {
+        return "figura_v1:avatar_section_query";
+    }
+
+    @Override
+    protected void write(LittleEndianDataOutputStream stream) throws IOException {
+        super.write(stream);
+
+        stream.writeInt(hashes.size());
+        for (String hash : hashes)
+            writeString(hash, stream);
+    }
+}
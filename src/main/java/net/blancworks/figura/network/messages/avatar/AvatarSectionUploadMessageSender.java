@@ -0,0 +1,45 @@
+package net.blancworks.figura.network.messages.avatar;
+
+import com.google.common.io.LittleEndianDataOutputStream;
+import net.blancworks.figura.network.messages.MessageSender;
+import net.blancworks.figura.parsers.FiguraAvatarContainer;
+import net.blancworks.figura.parsers.FiguraAvatarContainer.SectionData;
+
+import java.io.IOException;
+
+//Uploads a single avatar section the server said it was missing.
+public class AvatarSectionUploadMessageSender extends MessageSender {
+
+    private final String hash;
+    private final SectionData section;
+
+    public AvatarSectionUploadMessageSender(String hash, SectionData section) {
+        this.hash = hash;
+        this.section = section;
+    }
+
+    @Override
+    public String getProtocolName() {
+        return "figura_v1:avatar_section_upload";
+    }
+
+    @Override
+    protected void write(LittleEndianDataOutputStream stream) throws IOException {
+        super.write(stream);
+
+        writeString(hash, stream);
+        stream.writeByte(section.type());
+
+        //only compress when that helps, textures and sounds are already compressed
+        byte[] data = section.data();
+        byte[] compressed = FiguraAvatarContainer.deflate(data);
+        boolean deflate = compressed.length < data.length;
+
+        stream.writeBoolean(deflate);
+        stream.writeInt(data.length);
+
+        byte[] payload = deflate ? compressed : data;
+        stream.writeInt(payload.length);
+        stream.write(payload);
+    }
+}
@@ -4,29 +4,55 @@ import com.google.common.io.LittleEndianDataInputStream;
 import net.blancworks.figura.avatar.AvatarData;
 import net.blancworks.figura.avatar.AvatarDataManager;
 import net.blancworks.figura.lua.api.network.LuaNetworkReadWriter;
+import net.blancworks.figura.network.PingRecorder;
 import net.blancworks.figura.network.messages.pubsub.ChannelMessageHandler;
 import org.luaj.vm2.LuaValue;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+@SuppressWarnings("UnstableApiUsage")
 public class PingMessageHandler extends ChannelMessageHandler {
-    
+
+    public record DecodedPing(short id, LuaValue args) {}
+
     @Override
     public void handleMessage(LittleEndianDataInputStream stream) throws Exception {
         super.handleMessage(stream);
 
         int size = stream.available();
-        short count = (short) Math.max(Math.min(stream.readShort(), 32), 0);
+        byte[] payload = new byte[size];
+        stream.readFully(payload);
+
+        PingRecorder.record(PingRecorder.INCOMING, senderID, payload);
 
         AvatarData data = AvatarDataManager.getDataForPlayer(senderID);
+        if (data != null)
+            data.telemetry.pingBytesIn.add(size);
 
         if (data != null && data.script != null) {
-            for (int i = 0; i < count; i++) {
-                short id = stream.readShort();
-                LuaValue val = LuaNetworkReadWriter.readLuaValue(stream);
-                data.script.handlePing(id, val, size);
-            }
+            for (DecodedPing ping : decode(payload))
+                data.script.handlePing(ping.id(), ping.args(), size);
         }
     }
 
+    //reads the pings out of a ping message payload, shared with the ping replay
+    public static List<DecodedPing> decode(byte[] payload) throws IOException {
+        LittleEndianDataInputStream stream = new LittleEndianDataInputStream(new ByteArrayInputStream(payload));
+        short count = (short) Math.max(Math.min(stream.readShort(), 32), 0);
+
+        List<DecodedPing> pings = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            short id = stream.readShort();
+            LuaValue val = LuaNetworkReadWriter.readLuaValue(stream);
+            pings.add(new DecodedPing(id, val));
+        }
+
+        return pings;
+    }
+
     @Override
     public String getProtocolName() {
         return "figura_v1:ping_handle";
@@ -1,8 +1,11 @@
 package net.blancworks.figura.network.messages.pings;
 
 import com.google.common.io.LittleEndianDataOutputStream;
+import net.blancworks.figura.avatar.AvatarData;
+import net.blancworks.figura.avatar.AvatarDataManager;
 import net.blancworks.figura.lua.CustomScript;
 import net.blancworks.figura.lua.api.network.LuaNetworkReadWriter;
+import net.blancworks.figura.network.PingRecorder;
 import net.blancworks.figura.network.messages.MessageSender;
 
 import java.io.ByteArrayOutputStream;
@@ -51,6 +54,12 @@ public class PingMessageSender extends MessageSender {
 
         stream.writeInt(outData.length);
         stream.write(outData);
+
+        AvatarData data = AvatarDataManager.localPlayer;
+        if (data != null) {
+            data.telemetry.pingBytesOut.add(outData.length + 4);
+            PingRecorder.record(PingRecorder.OUTGOING, data.entityId, outData);
+        }
     }
 
     @Override
@@ -0,0 +1,40 @@
+package net.blancworks.figura.network.messages.user;
+
+import com.google.common.io.LittleEndianDataInputStream;
+import net.blancworks.figura.network.AvatarSectionManager;
+import net.blancworks.figura.network.AvatarSectionManager.SectionEntry;
+import net.blancworks.figura.network.messages.MessageHandler;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+//Sent instead of the whole avatar, listing the sections of the user's avatar
+public class UserAvatarManifestProvideResponseHandler extends MessageHandler {
+
+    @Override
+    public void handleMessage(LittleEndianDataInputStream stream) throws Exception {
+        super.handleMessage(stream);
+
+        UUID targetUser = readUUID(stream);
+        String avatarHash = readString(stream);
+
+        //don't trust the count, a bad packet could allocate anything
+        int count = stream.readInt();
+        if (count < 0 || count > AvatarSectionManager.MAX_SECTION_COUNT)
+            throw new IOException("Invalid avatar section count " + count);
+
+        //the list only grows with the entries actually read
+        List<SectionEntry> sections = new ArrayList<>(Math.min(count, 64));
+        for (int i = 0; i < count; i++)
+            sections.add(new SectionEntry(readString(stream), readString(stream)));
+
+        AvatarSectionManager.onManifest(targetUser, avatarHash, sections);
+    }
+
+    @Override
+    public String getProtocolName() {
+        return "figura_v1:user_avatar_manifest_provide";
+    }
+}
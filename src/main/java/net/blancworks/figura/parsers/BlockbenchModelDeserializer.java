@@ -1,13 +1,15 @@
 package net.blancworks.figura.parsers;
 
-import com.google.gson.*;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import net.blancworks.figura.models.CustomModelPart.ParentType;
 import net.minecraft.nbt.*;
 import net.minecraft.util.math.Vec3f;
 
-import java.util.HashMap;
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.*;
 
 public class BlockbenchModelDeserializer {
 
@@ -72,175 +74,311 @@ public class BlockbenchModelDeserializer {
         }
     }
 
-    public static NbtCompound deserialize(String json, boolean isPlayerModel) throws JsonParseException {
-        NbtCompound retModel = new NbtCompound();
+    //outliner entry, kept until the whole file was read as the groups depends on the meta, elements and animations
+    private static class GroupData {
+        public String name;
+        public String uuid;
+        public boolean visibility = true;
+        public boolean ignoreKeyword = false;
+        public Vec3f origin;
+        public Vec3f rotation;
+        public List<Object> children;
+    }
 
-        JsonObject root = JsonParser.parseString(json).getAsJsonObject();
-        JsonObject meta = root.get("meta").getAsJsonObject();
-        JsonObject resolution = root.get("resolution").getAsJsonObject();
-        JsonArray elements = root.get("elements").getAsJsonArray();
-        JsonArray outliner = root.get("outliner").getAsJsonArray();
+    //element face, read before knowing if the element is a cube or a mesh
+    private static class FaceData {
+        public float[] uv;
+        public Map<String, float[]> meshUv;
+        public List<String> vertices;
+        public boolean hasTexture = false;
+        public Float texture;
+        public Float rotation;
+    }
 
-        //player_model format
-        isPlayerModel = isPlayerModel || (meta.has("model_format") && meta.get("model_format").getAsString().equals("skin"));
+    public static NbtCompound deserialize(String json, boolean isPlayerModel) throws IOException {
+        return deserialize(new StringReader(json), isPlayerModel);
+    }
 
-        //animations
+    /**
+     * Reads a blockbench model from a stream, writing it straight into the avatar nbt.
+     * Embedded textures are skipped without being read, the avatar textures are loaded from their own files.
+     */
+    public static NbtCompound deserialize(Reader json, boolean isPlayerModel) throws IOException {
+        NbtCompound retModel = new NbtCompound();
+
+        Map<String, NbtCompound> elementMap = new HashMap<>();
         Map<String, NbtList> animationMap = new HashMap<>();
-        if (root.has("animations")) {
-            JsonArray animations = root.get("animations").getAsJsonArray();
-
-            //parse animations
-            try {
-                NbtList animationsNbt = parseAnimations(animations, animationMap);
-                retModel.put("anim", animationsNbt);
-            } catch (Exception e) {
-                System.out.println("Failed to load animations");
-                e.printStackTrace();
+        List<Object> outliner = new ArrayList<>();
+
+        JsonReader reader = new JsonReader(json);
+        reader.setLenient(true);
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                //player_model format
+                case "meta" -> isPlayerModel = readMeta(reader) || isPlayerModel;
+                //texture
+                case "resolution" -> retModel.put("uv", readResolution(reader));
+                //sort parts
+                case "elements" -> readElements(reader, elementMap);
+                case "outliner" -> outliner = readOutliner(reader);
+                //animations
+                case "animations" -> retModel.put("anim", parseAnimations(reader, animationMap));
+                default -> reader.skipValue();
             }
         }
+        reader.endObject();
 
-        //texture
-        retModel.put("uv", new NbtList() {{
-            add(NbtFloat.of(resolution.get("width").getAsFloat()));
-            add(NbtFloat.of(resolution.get("height").getAsFloat()));
-        }});
+        //parse outliner, which also place the parts and finishes the model loading
+        retModel.put("parts", buildElements(outliner, elementMap, isPlayerModel, new Vec3f(0f, 0f, 0f), animationMap, new HashSet<>()));
+
+        return retModel;
+    }
 
-        //sort parts
-        Map<String, JsonObject> elementMap = sortElements(elements);
+    private static boolean readMeta(JsonReader reader) throws IOException {
+        boolean skin = false;
 
-        //parse outliner, which also parse the parts and finishes the model loading
-        retModel.put("parts", buildElements(outliner, elementMap, isPlayerModel, new Vec3f(0f, 0f, 0f), animationMap));
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("model_format"))
+                skin = "skin".equals(readString(reader));
+            else
+                reader.skipValue();
+        }
+        reader.endObject();
 
-        return retModel;
+        return skin;
     }
 
-    public static Map<String, JsonObject> sortElements(JsonArray elementContainer) {
-        Map<String, JsonObject> objects = new HashMap<>();
+    private static NbtList readResolution(JsonReader reader) throws IOException {
+        float width = 0f, height = 0f;
 
-        for (JsonElement jsonElement : elementContainer) {
-            if (!jsonElement.isJsonObject())
-                continue;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "width" -> width = readFloat(reader);
+                case "height" -> height = readFloat(reader);
+                default -> reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        NbtList uv = new NbtList();
+        uv.add(NbtFloat.of(width));
+        uv.add(NbtFloat.of(height));
+        return uv;
+    }
 
-            JsonObject obj = jsonElement.getAsJsonObject();
-            if (!obj.has("uuid"))
+    public static void readElements(JsonReader reader, Map<String, NbtCompound> elementMap) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
                 continue;
+            }
+
+            readPart(reader, elementMap);
+        }
+        reader.endArray();
+    }
+
+    public static List<Object> readOutliner(JsonReader reader) throws IOException {
+        List<Object> list = new ArrayList<>();
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            //if the element is a json object, it's a group, otherwise its a part uuid
+            switch (reader.peek()) {
+                case BEGIN_OBJECT -> list.add(readGroup(reader));
+                case STRING -> list.add(reader.nextString());
+                default -> reader.skipValue();
+            }
+        }
+        reader.endArray();
+
+        return list;
+    }
 
-            objects.put(obj.get("uuid").getAsString(), obj);
+    private static GroupData readGroup(JsonReader reader) throws IOException {
+        GroupData group = new GroupData();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name" -> group.name = readString(reader);
+                case "uuid" -> group.uuid = readString(reader);
+                case "visibility" -> group.visibility = readBoolean(reader);
+                case "ignoreKeyword" -> group.ignoreKeyword = readBoolean(reader);
+                case "origin" -> group.origin = readVec3f(reader);
+                case "rotation" -> group.rotation = readVec3f(reader);
+                case "children" -> group.children = readOutliner(reader);
+                default -> reader.skipValue();
+            }
         }
+        reader.endObject();
 
-        return objects;
+        return group;
     }
 
-    public static NbtList parseAnimations(JsonArray animations, Map<String, NbtList> animationMap) {
+    public static NbtList parseAnimations(JsonReader reader, Map<String, NbtList> animationMap) throws IOException {
         NbtList anims = new NbtList();
 
-        for (JsonElement jsonElement : animations) {
-            if (!jsonElement.isJsonObject())
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
                 continue;
+            }
 
-            JsonObject obj = jsonElement.getAsJsonObject();
             NbtCompound anim = new NbtCompound();
+            String animName = "";
+            Map<String, NbtList> animators = new LinkedHashMap<>();
 
             //animation properties
-            NbtString name = NbtString.of(obj.get("name").getAsString());
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    case "name" -> animName = Objects.requireNonNullElse(readString(reader), "");
+                    case "loop" -> {
+                        String loop = readString(reader);
+                        if (loop != null) anim.put("loop", NbtString.of(loop));
+                    }
+                    case "length" -> anim.put("len", NbtFloat.of(readFloat(reader)));
+                    case "override" -> {
+                        if (readBoolean(reader)) anim.put("ovr", NbtByte.of(true));
+                    }
+                    case "anim_time_update" -> putOptionalFloat(anim, "time", reader);
+                    case "blend_weight" -> putOptionalFloat(anim, "bld", reader);
+                    case "start_delay" -> putOptionalFloat(anim, "sdel", reader);
+                    case "loop_delay" -> putOptionalFloat(anim, "ldel", reader);
+                    case "animators" -> readAnimators(reader, animators);
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            NbtString name = NbtString.of(animName);
             anim.put("nm", name);
-            anim.put("loop", NbtString.of(obj.get("loop").getAsString()));
-            anim.put("len", NbtFloat.of(obj.get("length").getAsFloat()));
 
-            boolean override = obj.get("override").getAsBoolean();
-            if (override) anim.put("ovr", NbtByte.of(true));
+            //animators
+            for (Map.Entry<String, NbtList> animator : animators.entrySet()) {
+                NbtCompound animNbt = new NbtCompound();
+                animNbt.put("keyf", animator.getValue());
+                animNbt.put("id", name);
 
-            if (obj.has("anim_time_update")) {
-                try {
-                    anim.put("time", NbtFloat.of(obj.get("anim_time_update").getAsFloat()));
-                } catch (Exception ignored) {}
-            }
-            if (obj.has("blend_weight")) {
-                try {
-                    anim.put("bld", NbtFloat.of(obj.get("blend_weight").getAsFloat()));
-                } catch (Exception ignored) {}
+                animationMap.computeIfAbsent(animator.getKey(), key -> new NbtList()).add(animNbt);
             }
-            if (obj.has("start_delay")) {
-                try {
-                    anim.put("sdel", NbtFloat.of(obj.get("start_delay").getAsFloat()));
-                } catch (Exception ignored) {}
+
+            anims.add(anim);
+        }
+        reader.endArray();
+
+        return anims;
+    }
+
+    private static void readAnimators(JsonReader reader, Map<String, NbtList> animators) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String uuid = reader.nextName();
+            if (uuid.length() < 36 || reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
             }
-            if (obj.has("loop_delay")) {
-                try {
-                    anim.put("ldel", NbtFloat.of(obj.get("loop_delay").getAsFloat()));
-                } catch (Exception ignored) {}
+
+            NbtList keyFrames = new NbtList();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                if (!reader.nextName().equals("keyframes") || reader.peek() != JsonToken.BEGIN_ARRAY) {
+                    reader.skipValue();
+                    continue;
+                }
+
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    if (reader.peek() == JsonToken.BEGIN_OBJECT)
+                        keyFrames.add(readKeyFrame(reader));
+                    else
+                        reader.skipValue();
+                }
+                reader.endArray();
             }
+            reader.endObject();
 
-            //animators
-            if (obj.has("animators")) {
-                JsonObject animators = obj.getAsJsonObject("animators");
-                for (Map.Entry<String, JsonElement> animator : animators.entrySet()) {
-                    if (animator.getKey().length() < 36) continue;
-
-                    JsonObject animObj = animator.getValue().getAsJsonObject();
-                    NbtCompound animNbt = new NbtCompound();
-
-                    //animator properties
-                    NbtList keyFrames = new NbtList();
-                    for (JsonElement keyFrameElement : animObj.get("keyframes").getAsJsonArray()) {
-                        JsonObject keyFrameObj = keyFrameElement.getAsJsonObject();
-                        NbtCompound keyFrame = new NbtCompound();
-
-                        //keyframe properties
-                        keyFrame.put("type", NbtString.of(keyFrameObj.get("channel").getAsString()));
-                        keyFrame.put("int", NbtString.of(keyFrameObj.get("interpolation").getAsString()));
-                        keyFrame.put("time", NbtFloat.of(keyFrameObj.get("time").getAsFloat()));
-
-                        //keyframe pos/scale/rot
-                        JsonObject dataPoints = keyFrameObj.getAsJsonArray("data_points").get(0).getAsJsonObject();
-                        NbtList data = new NbtList();
-                        data.add(NbtFloat.of(tryGetFloat(dataPoints.get("x"))));
-                        data.add(NbtFloat.of(tryGetFloat(dataPoints.get("y"))));
-                        data.add(NbtFloat.of(tryGetFloat(dataPoints.get("z"))));
-
-                        keyFrame.put("data", data);
-                        keyFrames.add(keyFrame);
+            animators.put(uuid, keyFrames);
+        }
+        reader.endObject();
+    }
+
+    private static NbtCompound readKeyFrame(JsonReader reader) throws IOException {
+        NbtCompound keyFrame = new NbtCompound();
+        float x = 0f, y = 0f, z = 0f;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                //keyframe properties
+                case "channel" -> keyFrame.put("type", NbtString.of(Objects.requireNonNullElse(readString(reader), "")));
+                case "interpolation" -> keyFrame.put("int", NbtString.of(Objects.requireNonNullElse(readString(reader), "")));
+                case "time" -> keyFrame.put("time", NbtFloat.of(readFloat(reader)));
+                //keyframe pos/scale/rot, only the first data point is used
+                case "data_points" -> {
+                    if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                        reader.skipValue();
+                        continue;
                     }
 
-                    animNbt.put("keyf", keyFrames);
-                    animNbt.put("id", name);
-
-                    String uuid = animator.getKey();
-                    if (animationMap.containsKey(uuid)) {
-                        NbtList list = animationMap.get(uuid);
-                        list.add(animNbt);
-                    } else {
-                        animationMap.put(animator.getKey(), new NbtList() {{
-                            add(animNbt);
-                        }});
+                    reader.beginArray();
+                    if (reader.hasNext() && reader.peek() == JsonToken.BEGIN_OBJECT) {
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            switch (reader.nextName()) {
+                                case "x" -> x = readFloat(reader);
+                                case "y" -> y = readFloat(reader);
+                                case "z" -> z = readFloat(reader);
+                                default -> reader.skipValue();
+                            }
+                        }
+                        reader.endObject();
                     }
+                    while (reader.hasNext())
+                        reader.skipValue();
+                    reader.endArray();
                 }
+                default -> reader.skipValue();
             }
-
-            anims.add(anim);
         }
+        reader.endObject();
 
-        return anims;
+        NbtList data = new NbtList();
+        data.add(NbtFloat.of(x));
+        data.add(NbtFloat.of(y));
+        data.add(NbtFloat.of(z));
+        keyFrame.put("data", data);
+
+        return keyFrame;
     }
 
-    public static NbtList buildElements(JsonArray group, Map<String, JsonObject> elementMap, boolean overrideAsPlayerModel, Vec3f offset, Map<String, NbtList> animationMap) {
+    public static NbtList buildElements(List<Object> group, Map<String, NbtCompound> elementMap, boolean overrideAsPlayerModel, Vec3f offset, Map<String, NbtList> animationMap, Set<String> placed) {
         NbtList parts = new NbtList();
-        for (JsonElement jsonElement : group) {
+        for (Object element : group) {
             NbtCompound nbt = null;
 
-            //if the element is a json object, it's a group, otherwise its a part
-            if (jsonElement.isJsonObject()) {
+            //groups are read into their own data, parts are referenced by their uuid
+            if (element instanceof GroupData groupData) {
                 try {
-                    nbt = buildGroup(jsonElement.getAsJsonObject(), elementMap, overrideAsPlayerModel, offset, animationMap);
+                    nbt = buildGroup(groupData, elementMap, overrideAsPlayerModel, offset, animationMap, placed);
                 } catch (Exception e) {
                     e.printStackTrace();
                 }
             } else {
-                try {
-                    nbt = buildPart(elementMap.get(jsonElement.getAsString()), offset);
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
+                String uuid = (String) element;
+                NbtCompound part = elementMap.get(uuid);
+
+                //parts are read without offset, so a part used twice needs its own copy
+                if (part != null)
+                    nbt = placePart(placed.add(uuid) ? part : part.copy(), offset);
             }
 
             if (nbt != null)
@@ -250,22 +388,22 @@ public class BlockbenchModelDeserializer {
         return parts;
     }
 
-    public static NbtCompound buildGroup(JsonObject group, Map<String, JsonObject> elementMap, boolean playerModel, Vec3f offset, Map<String, NbtList> animationMap) {
-        if (!group.has("name"))
+    public static NbtCompound buildGroup(GroupData group, Map<String, NbtCompound> elementMap, boolean playerModel, Vec3f offset, Map<String, NbtList> animationMap, Set<String> placed) {
+        if (group.name == null)
             return null;
 
         NbtCompound groupNbt = new NbtCompound();
 
         //name
-        String name = group.get("name").getAsString();
+        String name = group.name;
         groupNbt.put("nm", NbtString.of(name));
 
         //visibility
-        if (group.has("visibility") && !group.get("visibility").getAsBoolean())
+        if (!group.visibility)
             groupNbt.put("vb", NbtByte.of(false));
 
         //parent type
-        if (!group.has("ignoreKeyword") || !group.get("ignoreKeyword").getAsBoolean()) {
+        if (!group.ignoreKeyword) {
             PartData parent = getParentType(name, playerModel);
 
             if (parent.mimic) groupNbt.put("mmc", NbtByte.of(true));
@@ -275,8 +413,8 @@ public class BlockbenchModelDeserializer {
         }
 
         //pivot
-        if (group.has("origin")) {
-            Vec3f corrected = v3fFromJArray(group.get("origin").getAsJsonArray());
+        if (group.origin != null) {
+            Vec3f corrected = group.origin.copy();
             corrected.set(corrected.getX(), corrected.getY(), -corrected.getZ());
 
             Vec3f thisOffset = offset.copy();
@@ -286,18 +424,16 @@ public class BlockbenchModelDeserializer {
         }
 
         //rotation
-        if (group.has("rotation"))
-            groupNbt.put("rot", vec3fToNbt(v3fFromJArray(group.get("rotation").getAsJsonArray())));
+        if (group.rotation != null)
+            groupNbt.put("rot", vec3fToNbt(group.rotation));
 
         //animations
-        String uuid = group.get("uuid").getAsString();
-        if (animationMap.containsKey(uuid))
-            groupNbt.put("anims", animationMap.get(uuid));
+        if (group.uuid != null && animationMap.containsKey(group.uuid))
+            groupNbt.put("anims", animationMap.get(group.uuid));
 
         //children
-        if (group.has("children")) {
-            JsonArray children = group.get("children").getAsJsonArray();
-            NbtList child = buildElements(children, elementMap, playerModel, offset, animationMap);
+        if (group.children != null) {
+            NbtList child = buildElements(group.children, elementMap, playerModel, offset, animationMap, placed);
             if (child.size() > 0) groupNbt.put("chld", child);
         }
 
@@ -329,124 +465,154 @@ public class BlockbenchModelDeserializer {
         return PartData.DEFAULT_PARENT;
     }
 
-    public static NbtCompound buildPart(JsonObject part, Vec3f offset) {
-        if (!part.has("name"))
-            return null;
-
-        boolean mesh = false;
-        String partType;
+    //moves an element read from the elements array to its place in the outliner
+    public static NbtCompound placePart(NbtCompound partNbt, Vec3f offset) {
+        //pivot
+        if (partNbt.contains("piv"))
+            addOffset(partNbt.getList("piv", NbtElement.FLOAT_TYPE), offset);
+
+        //cuboid bounds, meshes are not affected by the offset
+        if (partNbt.getString("pt").equals("cub")) {
+            NbtCompound properties = partNbt.getCompound("props");
+            addOffset(properties.getList("f", NbtElement.FLOAT_TYPE), offset);
+            addOffset(properties.getList("t", NbtElement.FLOAT_TYPE), offset);
+        }
 
-        if (part.has("type")) {
-            partType = part.get("type").getAsString();
+        return partNbt;
+    }
 
-            if (partType.equals("null_object"))
-                return null;
+    private static void addOffset(NbtList list, Vec3f offset) {
+        list.set(0, NbtFloat.of(list.getFloat(0) + offset.getX()));
+        list.set(1, NbtFloat.of(list.getFloat(1) + offset.getY()));
+        list.set(2, NbtFloat.of(list.getFloat(2) + offset.getZ()));
+    }
 
-            mesh = partType.equals("mesh");
+    public static void readPart(JsonReader reader, Map<String, NbtCompound> elementMap) throws IOException {
+        String name = null, type = null, uuid = null;
+        boolean visibility = true;
+        Vec3f origin = null, rotation = null, from = null, to = null;
+        Float inflate = null;
+        Map<String, FaceData> faces = null;
+        Map<String, Vec3f> vertices = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "name" -> name = readString(reader);
+                case "type" -> type = readString(reader);
+                case "uuid" -> uuid = readString(reader);
+                case "visibility" -> visibility = readBoolean(reader);
+                case "origin" -> origin = readVec3f(reader);
+                case "rotation" -> rotation = readVec3f(reader);
+                case "from" -> from = readVec3f(reader);
+                case "to" -> to = readVec3f(reader);
+                case "inflate" -> inflate = readOptionalFloat(reader);
+                case "faces" -> faces = readFaces(reader);
+                case "vertices" -> vertices = readVertices(reader);
+                default -> reader.skipValue();
+            }
         }
+        reader.endObject();
+
+        if (uuid == null || name == null || "null_object".equals(type))
+            return;
 
         NbtCompound partNbt = new NbtCompound();
 
         //name
-        partNbt.put("nm", NbtString.of(part.get("name").getAsString()));
+        partNbt.put("nm", NbtString.of(name));
 
         //visibility
-        if (part.has("visibility") && !part.get("visibility").getAsBoolean())
+        if (!visibility)
             partNbt.put("vb", NbtByte.of(false));
 
-        //pivot
-        if (part.has("origin")) {
-            Vec3f corrected = v3fFromJArray(part.get("origin").getAsJsonArray());
-            corrected.set(corrected.getX(), corrected.getY(), -corrected.getZ());
-            corrected.add(offset);
-            partNbt.put("piv", vec3fToNbt(corrected));
+        //pivot, the group offset is added once the part is placed
+        if (origin != null) {
+            origin.set(origin.getX(), origin.getY(), -origin.getZ());
+            partNbt.put("piv", vec3fToNbt(origin));
         }
 
         //rotation
-        if (part.has("rotation"))
-            partNbt.put("rot", vec3fToNbt(v3fFromJArray(part.get("rotation").getAsJsonArray())));
+        if (rotation != null)
+            partNbt.put("rot", vec3fToNbt(rotation));
 
-        if (mesh) buildMesh(part, partNbt);
-        else buildCuboid(part, partNbt, offset);
+        boolean built;
+        if ("mesh".equals(type)) built = buildMesh(faces, vertices, partNbt);
+        else built = buildCuboid(faces, from, to, inflate, partNbt);
 
-        return partNbt;
+        if (built)
+            elementMap.put(uuid, partNbt);
     }
 
-    public static void buildCuboid(JsonObject partJson, NbtCompound partNbt, Vec3f offset) {
+    public static boolean buildCuboid(Map<String, FaceData> faces, Vec3f from, Vec3f to, Float inflate, NbtCompound partNbt) {
+        if (faces == null || from == null || to == null)
+            return false;
+
         //part type
         partNbt.put("pt", NbtString.of("cub"));
 
         //faces
-        JsonObject facesObject = partJson.get("faces").getAsJsonObject();
         NbtCompound properties = new NbtCompound();
 
-        if (partJson.has("inflate"))
-            properties.put("inf", NbtFloat.of(partJson.get("inflate").getAsFloat()));
-
-        Vec3f from = v3fFromJArray(partJson.get("from").getAsJsonArray());
-        Vec3f to = v3fFromJArray(partJson.get("to").getAsJsonArray());
-
-        from.add(offset);
-        to.add(offset);
+        if (inflate != null)
+            properties.put("inf", NbtFloat.of(inflate));
 
         properties.put("f", vec3fToNbt(from));
         properties.put("t", vec3fToNbt(to));
 
-        properties.put("n", getFaceData(facesObject.get("north")));
-        properties.put("s", getFaceData(facesObject.get("south")));
-        properties.put("e", getFaceData(facesObject.get("east")));
-        properties.put("w", getFaceData(facesObject.get("west")));
-        properties.put("u", getFaceData(facesObject.get("up")));
-        properties.put("d", getFaceData(facesObject.get("down")));
+        String[][] directions = {{"n", "north"}, {"s", "south"}, {"e", "east"}, {"w", "west"}, {"u", "up"}, {"d", "down"}};
+        for (String[] direction : directions) {
+            NbtCompound face = getFaceData(faces.get(direction[1]));
+            if (face == null)
+                return false;
+
+            properties.put(direction[0], face);
+        }
 
         partNbt.put("props", properties);
+        return true;
     }
 
-    public static NbtElement getFaceData(JsonElement element) {
-        JsonObject faceObj = element.getAsJsonObject();
+    public static NbtCompound getFaceData(FaceData faceData) {
+        if (faceData == null || faceData.uv == null || faceData.uv.length < 4)
+            return null;
+
         NbtCompound face = new NbtCompound();
 
         //uv
-        JsonArray uv = faceObj.getAsJsonArray("uv");
-        NbtList uvList = new NbtList() {{
-           add(NbtFloat.of(uv.get(0).getAsFloat()));
-           add(NbtFloat.of(uv.get(1).getAsFloat()));
-           add(NbtFloat.of(uv.get(2).getAsFloat()));
-           add(NbtFloat.of(uv.get(3).getAsFloat()));
-        }};
+        NbtList uvList = new NbtList();
+        for (int i = 0; i < 4; i++)
+            uvList.add(NbtFloat.of(faceData.uv[i]));
 
         //texture
-        JsonElement texture = faceObj.get("texture");
-        if (texture != null) {
-            if (!texture.isJsonNull())
-                face.put("texture", NbtFloat.of(texture.getAsFloat()));
-        } else {
+        if (!faceData.hasTexture)
             face.put("texture", NbtFloat.of(0f));
-        }
+        else if (faceData.texture != null)
+            face.put("texture", NbtFloat.of(faceData.texture));
 
         //rotation
-        if (faceObj.has("rotation"))
-            face.put("rotation", NbtFloat.of(faceObj.get("rotation").getAsFloat()));
+        if (faceData.rotation != null)
+            face.put("rotation", NbtFloat.of(faceData.rotation));
 
         face.put("uv", uvList);
         return face;
     }
 
-    public static void buildMesh(JsonObject partJson, NbtCompound partNbt) {
+    public static boolean buildMesh(Map<String, FaceData> faces, Map<String, Vec3f> vertices, NbtCompound partNbt) {
+        if (faces == null || vertices == null)
+            return false;
+
         //part type
         partNbt.put("pt", NbtString.of("msh"));
 
-        //faces
-        JsonObject facesObject = partJson.get("faces").getAsJsonObject();
-        JsonObject verticesObject = partJson.get("vertices").getAsJsonObject();
         NbtCompound properties = new NbtCompound();
 
         NbtCompound verticesList = new NbtCompound();
         HashMap<String, String> verticesMap = new HashMap<>();
 
         long i = 0;
-        for (Map.Entry<String, JsonElement> entry : verticesObject.entrySet()) {
-            Vec3f pos = v3fFromJArray(entry.getValue().getAsJsonArray());
+        for (Map.Entry<String, Vec3f> entry : vertices.entrySet()) {
+            Vec3f pos = entry.getValue();
             NbtList vertexPos = new NbtList();
             vertexPos.add(NbtFloat.of(-pos.getX()));
             vertexPos.add(NbtFloat.of(-pos.getY()));
@@ -463,43 +629,114 @@ public class BlockbenchModelDeserializer {
         //create data for each face of the mesh
         NbtList meshFacesList = new NbtList();
 
-        facesObject.entrySet().forEach(entry -> {
-            JsonObject faceObject = entry.getValue().getAsJsonObject();
-            NbtList curFaceTag = new NbtList();
+        for (FaceData faceData : faces.values()) {
+            if (faceData.vertices == null)
+                continue;
 
-            //build vertex -> uv map
-            NbtCompound uvs = new NbtCompound();
-            faceObject.getAsJsonObject("uv").entrySet().forEach(uvEntry -> {
-                String vertexName = verticesMap.get(uvEntry.getKey());
-                JsonArray uvEntries = uvEntry.getValue().getAsJsonArray();
+            NbtList curFaceTag = new NbtList();
 
-                NbtList uvList = new NbtList();
-                uvList.add(NbtFloat.of(uvEntries.get(0).getAsFloat()));
-                uvList.add(NbtFloat.of(uvEntries.get(1).getAsFloat()));
-                uvs.put(vertexName, uvList);
-            });
+            //pack id and uv and add to this face nbt
+            for (String vertexName : faceData.vertices) {
+                String key = verticesMap.get(vertexName);
+                if (key == null)
+                    continue;
 
-            //read vertex data then pack id and uv and add to this face nbt
-            faceObject.getAsJsonArray("vertices").forEach(element -> {
                 NbtCompound vertex = new NbtCompound();
-                String key = verticesMap.get(element.getAsString());
-
                 vertex.put("id", NbtString.of(key));
-                vertex.put("uv", uvs.get(key));
+
+                float[] uv = faceData.meshUv == null ? null : faceData.meshUv.get(vertexName);
+                if (uv != null && uv.length >= 2) {
+                    NbtList uvList = new NbtList();
+                    uvList.add(NbtFloat.of(uv[0]));
+                    uvList.add(NbtFloat.of(uv[1]));
+                    vertex.put("uv", uvList);
+                }
 
                 curFaceTag.add(vertex);
-            });
+            }
 
             //add this face to the faces list
             meshFacesList.add(curFaceTag);
-        });
+        }
 
         properties.put("faces", meshFacesList);
         partNbt.put("props", properties);
+        return true;
     }
 
-    public static Vec3f v3fFromJArray(JsonArray array) {
-        return new Vec3f(array.get(0).getAsFloat(), array.get(1).getAsFloat(), array.get(2).getAsFloat());
+    private static Map<String, FaceData> readFaces(JsonReader reader) throws IOException {
+        Map<String, FaceData> faces = new LinkedHashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String faceName = reader.nextName();
+            if (reader.peek() != JsonToken.BEGIN_OBJECT) {
+                reader.skipValue();
+                continue;
+            }
+
+            FaceData face = new FaceData();
+
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.nextName()) {
+                    //cuboids have an uv array, meshes have an uv per vertex
+                    case "uv" -> {
+                        if (reader.peek() == JsonToken.BEGIN_OBJECT) {
+                            face.meshUv = new HashMap<>();
+
+                            reader.beginObject();
+                            while (reader.hasNext())
+                                face.meshUv.put(reader.nextName(), readFloats(reader));
+                            reader.endObject();
+                        } else {
+                            face.uv = readFloats(reader);
+                        }
+                    }
+                    case "texture" -> {
+                        face.hasTexture = true;
+                        face.texture = readOptionalFloat(reader);
+                    }
+                    case "rotation" -> face.rotation = readOptionalFloat(reader);
+                    case "vertices" -> {
+                        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+                            reader.skipValue();
+                            continue;
+                        }
+
+                        face.vertices = new ArrayList<>();
+
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            String vertex = readString(reader);
+                            if (vertex != null) face.vertices.add(vertex);
+                        }
+                        reader.endArray();
+                    }
+                    default -> reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            faces.put(faceName, face);
+        }
+        reader.endObject();
+
+        return faces;
+    }
+
+    private static Map<String, Vec3f> readVertices(JsonReader reader) throws IOException {
+        Map<String, Vec3f> vertices = new LinkedHashMap<>();
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String name = reader.nextName();
+            Vec3f pos = readVec3f(reader);
+            if (pos != null) vertices.put(name, pos);
+        }
+        reader.endObject();
+
+        return vertices;
     }
 
     public static NbtList vec3fToNbt(Vec3f vec) {
@@ -512,11 +749,81 @@ public class BlockbenchModelDeserializer {
         return nbt;
     }
 
-    public static float tryGetFloat(JsonElement element) {
+    //json reading helpers
+
+    public static Vec3f readVec3f(JsonReader reader) throws IOException {
+        float[] values = readFloats(reader);
+        if (values == null || values.length < 3)
+            return null;
+
+        return new Vec3f(values[0], values[1], values[2]);
+    }
+
+    public static float[] readFloats(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+
+        float[] values = new float[4];
+        int size = 0;
+
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (size == values.length)
+                values = Arrays.copyOf(values, size * 2);
+
+            values[size++] = readFloat(reader);
+        }
+        reader.endArray();
+
+        return Arrays.copyOf(values, size);
+    }
+
+    public static float readFloat(JsonReader reader) throws IOException {
+        Float value = readOptionalFloat(reader);
+        return value == null ? 0f : value;
+    }
+
+    //numbers can also be written as strings, and non-numbers (eg molang) are returned as null
+    public static Float readOptionalFloat(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token != JsonToken.NUMBER && token != JsonToken.STRING) {
+            reader.skipValue();
+            return null;
+        }
+
         try {
-            return element.getAsFloat();
-        } catch (Exception ignored) {
-            return 0f;
+            return Float.parseFloat(reader.nextString());
+        } catch (NumberFormatException ignored) {
+            return null;
         }
     }
+
+    private static void putOptionalFloat(NbtCompound nbt, String key, JsonReader reader) throws IOException {
+        Float value = readOptionalFloat(reader);
+        if (value != null) nbt.put(key, NbtFloat.of(value));
+    }
+
+    public static String readString(JsonReader reader) throws IOException {
+        return switch (reader.peek()) {
+            case STRING, NUMBER -> reader.nextString();
+            case BOOLEAN -> String.valueOf(reader.nextBoolean());
+            default -> {
+                reader.skipValue();
+                yield null;
+            }
+        };
+    }
+
+    public static boolean readBoolean(JsonReader reader) throws IOException {
+        return switch (reader.peek()) {
+            case BOOLEAN -> reader.nextBoolean();
+            case STRING -> Boolean.parseBoolean(reader.nextString());
+            default -> {
+                reader.skipValue();
+                yield false;
+            }
+        };
+    }
 }
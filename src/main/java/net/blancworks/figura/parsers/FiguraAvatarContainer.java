@@ -0,0 +1,343 @@
+package net.blancworks.figura.parsers;
+
+import net.minecraft.nbt.*;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Predicate;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Binary avatar container, an alternative to the gzip nbt of the .moon files.
+ * Every top level avatar entry is stored in its own section, so readers only read and decode the sections they need,
+ * like the model and texture before the script and sounds (see {@link #isDeferred}).
+ * Files are read with positional reads on a channel kept open until the container is closed.
+ *
+ * Layout: magic, version, section count, then the section table followed by the section data.
+ * Each table entry has the section name, payload type, flags, data offset, stored and raw length and a crc32 of the stored bytes.
+ */
+public class FiguraAvatarContainer implements Closeable {
+    public static final String EXTENSION = ".sun";
+
+    private static final int MAGIC = 0x46494743; //FIGC
+    private static final short VERSION = 1;
+
+    //payload types
+    private static final byte TYPE_NBT = 0;   //the element wrapped in a compound
+    private static final byte TYPE_TEXT = 1;  //utf-8 script source, without the src_N chunks
+    private static final byte TYPE_BYTES = 2; //raw bytes, like the ogg data of a sound
+
+    //flags
+    private static final byte FLAG_DEFLATE = 1;
+
+    //sections with sub entries, one section per entry (sounds/name)
+    private static final String SOUNDS = "sounds";
+    private static final String SCRIPT = "script";
+
+    //where the sections are read from, the channel of an opened file or the bytes of an in-memory container
+    private final FileChannel channel;
+    private final byte[] bytes;
+    private final long size;
+
+    private final Map<String, Section> sections = new LinkedHashMap<>();
+
+    private record Section(String name, byte type, byte flags, long offset, int storedLength, int rawLength, int checksum) {}
+
+    /**
+     * Uncompressed payload of a section, as written to the container or sent over the network.
+     */
+    public record SectionData(String name, byte type, byte[] data) {}
+
+    private FiguraAvatarContainer(FileChannel channel, byte[] bytes, long size) throws IOException {
+        this.channel = channel;
+        this.bytes = bytes;
+        this.size = size;
+
+        ByteBuffer header = ByteBuffer.wrap(read(0, 8));
+        if (header.getInt() != MAGIC)
+            throw new IOException("Not a figura avatar container");
+
+        short version = header.getShort();
+        if (version > VERSION)
+            throw new IOException("Unsupported avatar container version " + version);
+
+        //the table is read entry by entry, as its size is only known once the names are read
+        int count = header.getShort() & 0xFFFF;
+        long position = 8;
+        for (int i = 0; i < count; i++) {
+            int nameLength = ByteBuffer.wrap(read(position, 2)).getShort() & 0xFFFF;
+            ByteBuffer entry = ByteBuffer.wrap(read(position + 2, nameLength + 22));
+            position += 2 + nameLength + 22;
+
+            byte[] nameBytes = new byte[nameLength];
+            entry.get(nameBytes);
+
+            Section section = new Section(new String(nameBytes, StandardCharsets.UTF_8), entry.get(), entry.get(), entry.getLong(), entry.getInt(), entry.getInt(), entry.getInt());
+            if (section.offset < 0 || section.storedLength < 0 || section.offset + section.storedLength > size)
+                throw new IOException("Section \"" + section.name + "\" is out of bounds");
+
+            sections.put(section.name, section);
+        }
+    }
+
+    //reading
+
+    /**
+     * Opens the given file and reads its section table, the sections itself are only read when requested.
+     * The file stays open until the container is closed, rather than being mapped and locked until the mapping is collected.
+     */
+    public static FiguraAvatarContainer open(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new FiguraAvatarContainer(channel, null, channel.size());
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    public static FiguraAvatarContainer read(byte[] data) throws IOException {
+        return new FiguraAvatarContainer(null, data, data.length);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel != null)
+            channel.close();
+    }
+
+    //the script and sounds aren't needed to show the avatar, so they can be read after the rest
+    public static boolean isDeferred(String name) {
+        return name.equals(SCRIPT) || name.equals(SOUNDS);
+    }
+
+    private byte[] read(long offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset + length > size)
+            throw new EOFException("Avatar container is truncated");
+
+        byte[] result = new byte[length];
+        if (channel == null) {
+            System.arraycopy(bytes, (int) offset, result, 0, length);
+            return result;
+        }
+
+        ByteBuffer buffer = ByteBuffer.wrap(result);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, offset + buffer.position()) < 0)
+                throw new EOFException("Avatar container is truncated");
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the whole avatar nbt, same as the one stored in a .moon file.
+     */
+    public NbtCompound readAvatar() throws IOException {
+        return readAvatar(name -> true);
+    }
+
+    /**
+     * Reads only the sections accepted by the filter into an avatar nbt.
+     * The filter receives the top level name, so "sounds" selects all sounds.
+     */
+    public NbtCompound readAvatar(Predicate<String> filter) throws IOException {
+        NbtCompound nbt = new NbtCompound();
+
+        for (Section section : sections.values()) {
+            String[] path = section.name.split("/", 2);
+            if (!filter.test(path[0]))
+                continue;
+
+            putSection(nbt, section.name, readSection(section));
+        }
+
+        return nbt;
+    }
+
+    /**
+     * Puts a decoded section back in its place of the avatar nbt.
+     */
+    public static void putSection(NbtCompound avatar, String name, NbtElement element) {
+        String[] path = name.split("/", 2);
+        if (path.length == 1) {
+            avatar.put(path[0], element);
+        } else {
+            NbtCompound parent = avatar.getCompound(path[0]);
+            parent.put(path[1], element);
+            avatar.put(path[0], parent);
+        }
+    }
+
+    private NbtElement readSection(Section section) throws IOException {
+        byte[] stored = read(section.offset, section.storedLength);
+
+        CRC32 crc = new CRC32();
+        crc.update(stored);
+        if ((int) crc.getValue() != section.checksum)
+            throw new IOException("Checksum mismatch for section \"" + section.name + "\"");
+
+        byte[] data = (section.flags & FLAG_DEFLATE) != 0 ? inflate(stored, section.rawLength) : stored;
+        return decode(section.type, data);
+    }
+
+    public static NbtElement decode(byte type, byte[] data) throws IOException {
+        return switch (type) {
+            case TYPE_NBT -> NbtIo.read(new DataInputStream(new ByteArrayInputStream(data))).get("v");
+            case TYPE_TEXT -> {
+                NbtCompound script = new NbtCompound();
+                script.putString("src", new String(data, StandardCharsets.UTF_8));
+                yield script;
+            }
+            case TYPE_BYTES -> new NbtByteArray(data);
+            default -> throw new IOException("Unknown avatar section type " + type);
+        };
+    }
+
+    public static byte[] inflate(byte[] data, int rawLength) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+
+            byte[] result = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int read = inflater.inflate(result, length, rawLength - length);
+                if (read == 0 && inflater.needsInput())
+                    break;
+                length += read;
+            }
+
+            if (length != rawLength)
+                throw new IOException("Truncated avatar container section");
+
+            return result;
+        } catch (DataFormatException e) {
+            throw new IOException(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    //writing
+
+    public static void write(NbtCompound avatar, Path path) throws IOException {
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(path))) {
+            write(avatar, out);
+        }
+    }
+
+    /**
+     * Splits the avatar nbt into its sections, the script as a single text and one section per sound.
+     */
+    public static List<SectionData> split(NbtCompound avatar) throws IOException {
+        List<SectionData> sections = new ArrayList<>();
+
+        for (String key : avatar.getKeys()) {
+            NbtElement element = avatar.get(key);
+
+            //the script is stored as a single text
+            if (key.equals(SCRIPT) && element instanceof NbtCompound script) {
+                sections.add(new SectionData(key, TYPE_TEXT, getScriptSource(script).getBytes(StandardCharsets.UTF_8)));
+            }
+            //one section per sound
+            else if (key.equals(SOUNDS) && element instanceof NbtCompound sounds) {
+                for (String sound : sounds.getKeys())
+                    sections.add(new SectionData(key + "/" + sound, TYPE_BYTES, sounds.getByteArray(sound)));
+            }
+            else {
+                NbtCompound wrapper = new NbtCompound();
+                wrapper.put("v", element);
+
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                NbtIo.write(wrapper, new DataOutputStream(bytes));
+
+                sections.add(new SectionData(key, TYPE_NBT, bytes.toByteArray()));
+            }
+        }
+
+        return sections;
+    }
+
+    public static void write(NbtCompound avatar, OutputStream out) throws IOException {
+        List<SectionData> sections = split(avatar);
+
+        //compress sections, keeping them as they are if that doesn't help (eg png and ogg data)
+        int count = sections.size();
+        byte[][] stored = new byte[count][];
+        byte[][] nameBytes = new byte[count][];
+        long tableSize = 8;
+        for (int i = 0; i < count; i++) {
+            byte[] payload = sections.get(i).data;
+            byte[] compressed = deflate(payload);
+            stored[i] = compressed.length < payload.length ? compressed : payload;
+            nameBytes[i] = sections.get(i).name.getBytes(StandardCharsets.UTF_8);
+            tableSize += 2 + nameBytes[i].length + 1 + 1 + 8 + 4 + 4 + 4;
+        }
+
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(MAGIC);
+        data.writeShort(VERSION);
+        data.writeShort(count);
+
+        long offset = tableSize;
+        for (int i = 0; i < count; i++) {
+            CRC32 crc = new CRC32();
+            crc.update(stored[i]);
+
+            data.writeShort(nameBytes[i].length);
+            data.write(nameBytes[i]);
+            data.writeByte(sections.get(i).type);
+            data.writeByte(stored[i] != sections.get(i).data ? FLAG_DEFLATE : 0);
+            data.writeLong(offset);
+            data.writeInt(stored[i].length);
+            data.writeInt(sections.get(i).data.length);
+            data.writeInt((int) crc.getValue());
+
+            offset += stored[i].length;
+        }
+
+        for (byte[] section : stored)
+            data.write(section);
+
+        data.flush();
+    }
+
+    public static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(data.length / 2, 64));
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished())
+                out.write(chunk, 0, deflater.deflate(chunk));
+
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static String getScriptSource(NbtCompound tag) {
+        Set<String> keys = tag.getKeys();
+        if (keys.size() <= 1)
+            return tag.getString("src");
+
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < keys.size(); i++)
+            script.append(tag.getString("src_" + i));
+
+        return script.toString();
+    }
+}
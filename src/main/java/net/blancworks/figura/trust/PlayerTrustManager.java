@@ -11,11 +11,17 @@ import net.minecraft.util.Identifier;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.InputStreamReader;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
 
 public class PlayerTrustManager {
 
@@ -23,6 +29,16 @@ public class PlayerTrustManager {
     public static Map<Identifier, TrustContainer> groups = new LinkedHashMap<>();
     public static Map<Identifier, TrustContainer> players = new HashMap<>();
 
+    //saves are delayed, so multiple changes in a row are written only once
+    public static final long SAVE_DELAY_MS = 1000;
+    private static final ScheduledExecutorService SAVE_EXECUTOR = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Figura Trust Saver");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static ScheduledFuture<?> pendingSave;
+    private static NbtCompound queuedSave;
+
     public static void init() {
         //load from presets file first then load from disk
         loadDefaultGroups();
@@ -54,6 +70,7 @@ public class PlayerTrustManager {
                 groups.put(new Identifier("group", name), container);
             });
 
+            TrustContainer.invalidateAll();
             FiguraMod.LOGGER.debug("Loaded presets from assets");
         } catch (Exception e) {
             FiguraMod.LOGGER.error("Could not load presets from assets");
@@ -134,23 +151,59 @@ public class PlayerTrustManager {
                 players.put(new Identifier("player", name), container);
             }
         });
+
+        TrustContainer.invalidateAll();
     }
 
-    public static void saveToDisk() {
-        try {
-            NbtCompound targetTag = new NbtCompound();
-            writeNbt(targetTag);
+    /**
+     * Queues a save of the trust settings, written on a background thread after {@link #SAVE_DELAY_MS}.
+     * The nbt is built right away, so later changes don't race with the write.
+     */
+    public static synchronized void saveToDisk() {
+        queuedSave = new NbtCompound();
+        writeNbt(queuedSave);
 
-            Path targetPath = FiguraMod.getModContentDirectory();
-            targetPath = targetPath.resolve("trust_settings.nbt");
+        if (pendingSave == null || pendingSave.isDone())
+            pendingSave = SAVE_EXECUTOR.schedule(PlayerTrustManager::writeQueuedSave, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
 
-            if (!Files.exists(targetPath))
-                Files.createFile(targetPath);
+    //writes any queued save right away, used when the game closes
+    public static void flushSave() {
+        ScheduledFuture<?> future;
+        synchronized (PlayerTrustManager.class) {
+            future = pendingSave;
+        }
+
+        if (future != null)
+            future.cancel(false);
 
-            FileOutputStream fs = new FileOutputStream(targetPath.toFile());
-            NbtIo.writeCompressed(targetTag, fs);
+        writeQueuedSave();
+    }
 
-            fs.close();
+    private static void writeQueuedSave() {
+        NbtCompound targetTag;
+        synchronized (PlayerTrustManager.class) {
+            targetTag = queuedSave;
+            queuedSave = null;
+        }
+
+        if (targetTag == null)
+            return;
+
+        try {
+            Path targetPath = FiguraMod.getModContentDirectory().resolve("trust_settings.nbt");
+            Path tempPath = targetPath.resolveSibling("trust_settings.nbt.tmp");
+
+            //write to a temp file first, so a crash mid write can't corrupt the settings
+            try (FileOutputStream fs = new FileOutputStream(tempPath.toFile())) {
+                NbtIo.writeCompressed(targetTag, fs);
+            }
+
+            try {
+                Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tempPath, targetPath, StandardCopyOption.REPLACE_EXISTING);
+            }
         } catch (Exception e) {
             e.printStackTrace();
         }
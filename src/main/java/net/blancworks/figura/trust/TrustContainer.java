@@ -10,6 +10,7 @@ import net.minecraft.util.Identifier;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 
 //Contains trust settings and permissions
 //Used in players and trust groups
@@ -21,6 +22,15 @@ public class TrustContainer {
 
     private final Map<Trust, Integer> trustSettings;
 
+    //bumped on any trust change, since a change in a group affects all of its children
+    private static final AtomicInteger TRUST_VERSION = new AtomicInteger();
+    private static final Trust[] TRUST_VALUES = Trust.values();
+
+    //values resolved through this container and its parents, rebuilt only when the trust version changes
+    private volatile ResolvedTrust resolved;
+
+    private record ResolvedTrust(int version, int[] values) {}
+
     public enum Trust {
         INIT_INST("maxinitinstructions", 0, 32768, 256),
         TICK_INST("maxtickinstructions", 0, 16384, 256),
@@ -29,6 +39,7 @@ public class TrustContainer {
         PARTICLES("maxparticles", 0, 64, 1),
         SOUNDS("maxsfx", 0, 64, 1),
         BB_ANIMATIONS("bbanimations", 0, 256, 16),
+        MEMORY("maxmemory", 0, 16384, 256),
         VANILLA_MODEL_EDIT("allowvanillaedit"),
         NAMEPLATE_EDIT("allownameplateedit"),
         OFFSCREEN_RENDERING("allowoffscreenrendering"),
@@ -98,27 +109,55 @@ public class TrustContainer {
         }
     }
 
-    public Integer getTrust(Trust trust) {
+    public int getTrust(Trust trust) {
+        ResolvedTrust snapshot = this.resolved;
+        if (snapshot == null || snapshot.version != TRUST_VERSION.get())
+            snapshot = resolve();
+
+        return snapshot.values[trust.ordinal()];
+    }
+
+    private ResolvedTrust resolve() {
+        //read the version first, so a change while resolving triggers another resolve
+        int version = TRUST_VERSION.get();
+
+        int[] values = new int[TRUST_VALUES.length];
+        for (Trust trust : TRUST_VALUES)
+            values[trust.ordinal()] = resolveTrust(trust);
+
+        ResolvedTrust snapshot = new ResolvedTrust(version, values);
+        this.resolved = snapshot;
+        return snapshot;
+    }
+
+    private int resolveTrust(Trust trust) {
         Integer setting = this.trustSettings.get(trust);
         if (setting != null) return setting;
-        if (parentID != null && PlayerTrustManager.getContainer(parentID) != null) return PlayerTrustManager.getContainer(parentID).getTrust(trust);
+        if (parentID != null && PlayerTrustManager.getContainer(parentID) != null) return PlayerTrustManager.getContainer(parentID).resolveTrust(trust);
         return 0;
     }
 
+    public static void invalidateAll() {
+        TRUST_VERSION.incrementAndGet();
+    }
+
     public boolean isTrustEmpty() {
         return this.trustSettings.isEmpty();
     }
 
     public void resetAllTrust() {
         this.trustSettings.clear();
+        invalidateAll();
     }
 
     public void resetTrust(Trust trust) {
         this.trustSettings.remove(trust);
+        invalidateAll();
     }
 
     public void setTrust(Trust trust, Integer value) {
         this.trustSettings.put(trust, value);
+        invalidateAll();
     }
 
     public boolean contains(Trust trust) {
@@ -127,6 +166,7 @@ public class TrustContainer {
 
     public void setParent(Identifier parent) {
         this.parentID = parent;
+        invalidateAll();
         try {
             AvatarDataManager.clearPlayer(UUID.fromString(name));
         } catch (Exception ignored) {}
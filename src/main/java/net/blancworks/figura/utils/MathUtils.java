@@ -69,6 +69,15 @@ public class MathUtils {
         return ret;
     }
 
+    //same curve as catmullRomVec3f, for a single axis
+    public static float catmullRom(float before, float start, float end, float after, float delta) {
+        float a = ((-delta + 2f) * delta - 1f) * delta * 0.5f;
+        float b = ((3f * delta - 5f) * delta * delta + 2f) * 0.5f;
+        float c = ((-3f * delta + 4f) * delta + 1f) * delta * 0.5f;
+        float d = (delta - 1f) * delta * delta * 0.5f;
+        return before * a + start * b + end * c + after * d;
+    }
+
     public static Vec3f catmullRomVec3f(Vec3f before, Vec3f start, Vec3f end, Vec3f after, float delta) {
         Vec3d a = new Vec3d(before);
         Vec3d b = new Vec3d(start);
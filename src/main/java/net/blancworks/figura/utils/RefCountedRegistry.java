@@ -0,0 +1,92 @@
+package net.blancworks.figura.utils;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Consumer;
+
+/**
+ * Shares one value per key between any number of owners, creating it on the first acquire and closing it after the last release.
+ * Doesn't know anything about what it stores, so the ref counting can be checked without a game or a GPU.
+ */
+public class RefCountedRegistry<K, V> {
+
+    private static class Entry<V> {
+        private final V value;
+        private int refs = 0;
+
+        private Entry(V value) {
+            this.value = value;
+        }
+    }
+
+    private final Map<K, Entry<V>> entries = new HashMap<>();
+    private final Consumer<V> closer;
+
+    //how many values were created and reused, for debugging
+    private int created = 0;
+    private int reused = 0;
+
+    public RefCountedRegistry(Consumer<V> closer) {
+        this.closer = closer;
+    }
+
+    /**
+     * Gets the value for the key, creating it if nobody holds it yet, and adds a reference to it.
+     * Every acquire must be matched by one {@link #release(Object)}.
+     */
+    public synchronized V acquire(K key, Callable<V> factory) throws Exception {
+        Entry<V> entry = entries.get(key);
+        if (entry == null) {
+            entry = new Entry<>(factory.call());
+            entries.put(key, entry);
+            created++;
+        } else {
+            reused++;
+        }
+
+        entry.refs++;
+        return entry.value;
+    }
+
+    //removes a reference, closing the value when it was the last one
+    public synchronized void release(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null)
+            return;
+
+        if (--entry.refs <= 0) {
+            entries.remove(key);
+            closer.accept(entry.value);
+        }
+    }
+
+    public synchronized int getRefCount(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null ? 0 : entry.refs;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized int getCreated() {
+        return created;
+    }
+
+    public synchronized int getReused() {
+        return reused;
+    }
+
+    public synchronized void forEach(Consumer<V> action) {
+        for (Entry<V> entry : entries.values())
+            action.accept(entry.value);
+    }
+
+    //closes everything, no matter who still holds it
+    public synchronized void clear() {
+        for (Entry<V> entry : entries.values())
+            closer.accept(entry.value);
+        entries.clear();
+    }
+}
@@ -0,0 +1,133 @@
+package net.blancworks.figura.avatar;
+
+import net.blancworks.figura.models.CustomModel;
+import net.blancworks.figura.models.animations.Animation;
+import net.minecraft.nbt.NbtCompound;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AvatarAnimatorTest {
+
+    private static final int AVATARS = 60;
+
+    private final List<AvatarData> avatars = new ArrayList<>();
+    private final Set<AvatarData> culled = Collections.newSetFromMap(new IdentityHashMap<>());
+    private final Set<AvatarData> lodSkipped = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    private final Map<AvatarData, AtomicInteger> evaluations = new ConcurrentHashMap<>();
+    private final Set<Thread> threads = ConcurrentHashMap.newKeySet();
+    private final Map<AvatarData, Integer> limits = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < AVATARS; i++) {
+            AvatarData data = new AvatarData(new UUID(0, i));
+            data.model = new CustomModel(new NbtCompound(), data);
+            data.model.animations.put("idle", new Animation("idle", 1f, Animation.LoopMode.LOOP, 0f, 1f, 0f, 0f, false));
+            avatars.add(data);
+
+            //a sixth of them out of view, another sixth too far away to update this frame
+            if (i % 6 == 0)
+                culled.add(data);
+            else if (i % 6 == 1)
+                lodSkipped.add(data);
+        }
+    }
+
+    private void evaluate(AvatarData data, int limit) {
+        limits.put(data, limit);
+        threads.add(Thread.currentThread());
+        evaluations.computeIfAbsent(data, k -> new AtomicInteger()).incrementAndGet();
+
+        //long enough for the workers to pick up their share
+        try {
+            Thread.sleep(2);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    //a different limit per avatar, so a limit handed to the wrong avatar shows up
+    private static int limit(AvatarData data) {
+        return (int) data.entityId.getLeastSignificantBits();
+    }
+
+    private void animate() {
+        AvatarAnimator.animate(avatars, culled::contains, lodSkipped::contains, AvatarAnimatorTest::limit, this::evaluate);
+    }
+
+    @Test
+    public void avatarsAreSpreadOverTheWorkers() {
+        animate();
+
+        assertTrue(threads.size() > 1, "every avatar was evaluated on " + threads);
+        assertTrue(threads.contains(Thread.currentThread()), "the calling thread should take part");
+    }
+
+    @Test
+    public void visibleAvatarsAreEvaluatedOnce() {
+        animate();
+
+        Set<AvatarData> expected = new HashSet<>(avatars);
+        expected.removeAll(culled);
+        expected.removeAll(lodSkipped);
+
+        assertEquals(AVATARS - culled.size() - lodSkipped.size(), expected.size());
+        assertEquals(expected, evaluations.keySet());
+        for (AtomicInteger count : evaluations.values())
+            assertEquals(1, count.get());
+    }
+
+    @Test
+    public void eachAvatarGetsItsOwnLimit() {
+        animate();
+
+        assertFalse(limits.isEmpty());
+        for (Map.Entry<AvatarData, Integer> entry : limits.entrySet())
+            assertEquals(limit(entry.getKey()), entry.getValue());
+    }
+
+    @Test
+    public void culledAndLodSkippedAvatarsAreNotEvaluated() {
+        animate();
+
+        for (AvatarData data : culled)
+            assertFalse(evaluations.containsKey(data));
+        for (AvatarData data : lodSkipped)
+            assertFalse(evaluations.containsKey(data));
+    }
+
+    @Test
+    public void failingAvatarDoesNotStopTheBatch() {
+        AvatarData failing = avatars.get(2);
+        AvatarAnimator.animate(avatars, culled::contains, lodSkipped::contains, AvatarAnimatorTest::limit, (data, limit) -> {
+            if (data == failing)
+                throw new IllegalStateException("test failure");
+            evaluate(data, limit);
+        });
+
+        assertEquals(AVATARS - culled.size() - lodSkipped.size() - 1, evaluations.size());
+    }
+
+    @Test
+    public void everyFrameEvaluatesEveryVisibleAvatarAgain() {
+        for (int i = 0; i < 5; i++)
+            animate();
+
+        for (AtomicInteger count : evaluations.values())
+            assertEquals(5, count.get());
+    }
+}
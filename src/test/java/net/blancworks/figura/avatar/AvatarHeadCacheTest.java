@@ -0,0 +1,142 @@
+package net.blancworks.figura.avatar;
+
+import net.blancworks.figura.models.animations.Animation;
+import net.blancworks.figura.models.shaders.CountingVertexConsumerProvider;
+import net.minecraft.client.render.VertexConsumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AvatarHeadCacheTest {
+
+    private static final long FRAME_MS = 16;
+
+    private final Object model = new Object();
+    private final Object texture = new Object();
+    private final List<Animation> animations = new ArrayList<>();
+    private final CountingVertexConsumerProvider vcp = new CountingVertexConsumerProvider();
+
+    @BeforeEach
+    public void setUp() {
+        AvatarHeadCache.beginFrame();
+        animations.add(new Animation("idle", 1f, Animation.LoopMode.LOOP, 0f, 1f, 0f, 0f, false));
+    }
+
+    private long signature(double guiScale) {
+        return AvatarHeadCache.computeSignature(model, texture, 0, animations, guiScale);
+    }
+
+    //a single quad stands in for the head, only the counts matter
+    private void renderHead() {
+        //the layer doesn't change the counts, leaving it out keeps the test away from the render system
+        VertexConsumer buffer = vcp.getBuffer(null);
+        for (int i = 0; i < 4; i++)
+            buffer.vertex(0, 0, 0).next();
+        vcp.draw();
+    }
+
+    //runs the frames of one head, rendering it whenever the cache asks to
+    private void runFrames(AvatarHeadCache.Entry entry, int frames, boolean dynamic, long start) {
+        for (int i = 0; i < frames; i++) {
+            AvatarHeadCache.beginFrame();
+            if (AvatarHeadCache.shouldRender(entry, signature(2), dynamic, start + i * FRAME_MS))
+                renderHead();
+        }
+    }
+
+    @Test
+    public void needsRefreshOnChangeOrAfterInterval() {
+        assertTrue(AvatarHeadCache.needsRefresh(true, false, 0));
+        assertFalse(AvatarHeadCache.needsRefresh(false, false, AvatarHeadCache.STATIC_REFRESH_MS - 1));
+        assertTrue(AvatarHeadCache.needsRefresh(false, false, AvatarHeadCache.STATIC_REFRESH_MS));
+        assertFalse(AvatarHeadCache.needsRefresh(false, true, AvatarHeadCache.DYNAMIC_REFRESH_MS - 1));
+        assertTrue(AvatarHeadCache.needsRefresh(false, true, AvatarHeadCache.DYNAMIC_REFRESH_MS));
+    }
+
+    @Test
+    public void signatureIsStableForTheSameState() {
+        assertEquals(signature(2), signature(2));
+    }
+
+    @Test
+    public void signatureChangesWithWhatTheHeadShows() {
+        long base = signature(2);
+
+        assertNotEquals(base, signature(3));
+        assertNotEquals(base, AvatarHeadCache.computeSignature(new Object(), texture, 0, animations, 2));
+        assertNotEquals(base, AvatarHeadCache.computeSignature(model, new Object(), 0, animations, 2));
+        assertNotEquals(base, AvatarHeadCache.computeSignature(model, texture, 1, animations, 2));
+
+        animations.get(0).playState = Animation.PlayState.PLAYING;
+        assertNotEquals(base, signature(2));
+    }
+
+    @Test
+    public void staticHeadRendersOncePerSecond() {
+        //100 frames is 1.6 seconds, the first frame and one refresh
+        runFrames(new AvatarHeadCache.Entry(), 100, false, 0);
+
+        assertEquals(2, vcp.drawCalls);
+        assertEquals(8, vcp.vertices);
+    }
+
+    @Test
+    public void dynamicHeadRendersAtTheCappedRate() {
+        //at 16ms frames the 50ms cap is hit every 4th frame
+        runFrames(new AvatarHeadCache.Entry(), 100, true, 0);
+
+        assertEquals(25, vcp.drawCalls);
+    }
+
+    @Test
+    public void changedHeadRendersRightAway() {
+        AvatarHeadCache.Entry entry = new AvatarHeadCache.Entry();
+        runFrames(entry, 10, false, 0);
+        assertEquals(1, vcp.drawCalls);
+
+        animations.get(0).playState = Animation.PlayState.PLAYING;
+        runFrames(entry, 1, false, 10 * FRAME_MS);
+        assertEquals(2, vcp.drawCalls);
+
+        //nothing changed since, so the next frame reuses the texture
+        runFrames(entry, 1, false, 11 * FRAME_MS);
+        assertEquals(2, vcp.drawCalls);
+    }
+
+    @Test
+    public void refreshesPerFrameAreCapped() {
+        int heads = AvatarHeadCache.MAX_REFRESHES_PER_FRAME * 2;
+        List<AvatarHeadCache.Entry> entries = new ArrayList<>();
+        for (int i = 0; i < heads; i++)
+            entries.add(new AvatarHeadCache.Entry());
+
+        //heads never rendered are not capped
+        for (AvatarHeadCache.Entry entry : entries) {
+            if (AvatarHeadCache.shouldRender(entry, signature(2), false, 0))
+                renderHead();
+        }
+        assertEquals(heads, vcp.drawCalls);
+
+        //every head changed, but only the cap is rendered again this frame
+        vcp.reset();
+        AvatarHeadCache.beginFrame();
+        for (AvatarHeadCache.Entry entry : entries) {
+            if (AvatarHeadCache.shouldRender(entry, signature(3), false, FRAME_MS))
+                renderHead();
+        }
+        assertEquals(AvatarHeadCache.MAX_REFRESHES_PER_FRAME, vcp.drawCalls);
+
+        //and the rest on the next one
+        vcp.reset();
+        AvatarHeadCache.beginFrame();
+        for (AvatarHeadCache.Entry entry : entries) {
+            if (AvatarHeadCache.shouldRender(entry, signature(3), false, 2 * FRAME_MS))
+                renderHead();
+        }
+        assertEquals(heads - AvatarHeadCache.MAX_REFRESHES_PER_FRAME, vcp.drawCalls);
+    }
+}
@@ -0,0 +1,120 @@
+package net.blancworks.figura.models;
+
+import net.blancworks.figura.models.animations.Animation;
+import net.blancworks.figura.models.animations.KeyFrame;
+import net.minecraft.nbt.NbtCompound;
+import net.minecraft.util.math.Vec3f;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.function.LongSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class AnimationAllocationTest {
+
+    private static final int GROUPS = 50;
+    private static final int ANIMATIONS = 10;
+    private static final long FRAME_MS = 16;
+
+    private static final int WARMUP_FRAMES = 2000;
+    private static final int MEASURED_FRAMES = 1000;
+
+    //a few bytes of slack for the measuring itself, one vector per group and frame would be over 800KB
+    private static final long MAX_ALLOCATED_BYTES = 1024;
+
+    private final LongSupplier previousClock = Animation.clock;
+    private long now = 0;
+
+    private CustomModel model;
+    private final List<CustomModelPartGroup> groups = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() {
+        Animation.clock = () -> now;
+
+        model = new CustomModel(new NbtCompound(), null);
+        for (int i = 0; i < GROUPS; i++)
+            groups.add(new CustomModelPartGroup());
+
+        //every animation moves every group, so they all blend on the same accumulators
+        KeyFrame.Interpolation[] interpolations = KeyFrame.Interpolation.values();
+        for (int a = 0; a < ANIMATIONS; a++) {
+            Animation anim = new Animation("anim" + a, 1f + a * 0.25f, Animation.LoopMode.LOOP, 0f, 1f, 0f, 0f, a % 3 == 0);
+            anim.priority = a % 4;
+            anim.replace = a % 5 == 0;
+
+            for (int g = 0; g < GROUPS; g++) {
+                KeyFrame.Interpolation interpolation = interpolations[(a + g) % interpolations.length];
+                anim.keyFrames.put(groups.get(g), List.of(
+                        track(anim.length, KeyFrame.AnimationType.POSITION, interpolation, g),
+                        track(anim.length, KeyFrame.AnimationType.ROTATION, interpolation, g * 2),
+                        track(anim.length, KeyFrame.AnimationType.SCALE, interpolation, 1)
+                ));
+            }
+
+            model.animations.put(anim.name, anim);
+        }
+
+        model.compileAnimations();
+        for (Animation anim : model.animations.values())
+            anim.play();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        Animation.clock = previousClock;
+    }
+
+    private static TreeMap<Float, KeyFrame> track(float length, KeyFrame.AnimationType type, KeyFrame.Interpolation interpolation, float value) {
+        TreeMap<Float, KeyFrame> frames = new TreeMap<>();
+        for (int i = 0; i < 4; i++) {
+            float time = length * i / 3f;
+            frames.put(time, new KeyFrame(time, new Vec3f(value + i, value - i, value * i), type, interpolation));
+        }
+        return frames;
+    }
+
+    private void frame() {
+        now += FRAME_MS;
+        model.clearAnimations();
+        model.renderAnimations(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void playingAnimationsDoNotAllocate() {
+        //allocation counting is a HotSpot extension
+        assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue(threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled());
+
+        //past the start blend and through a few loops, so every path ran and every class is loaded
+        for (int i = 0; i < WARMUP_FRAMES; i++)
+            frame();
+
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < MEASURED_FRAMES; i++)
+            frame();
+        long allocated = threads.getCurrentThreadAllocatedBytes() - before;
+
+        assertTrue(allocated <= MAX_ALLOCATED_BYTES, "animations allocated " + allocated + " bytes over " + MEASURED_FRAMES + " frames");
+    }
+
+    @Test
+    public void everyGroupIsAnimated() {
+        frame();
+        now += 1000;
+        frame();
+
+        assertEquals(ANIMATIONS, model.animations.values().stream().filter(Animation::isPlaying).count());
+        assertTrue(model.animRendered > 0);
+        for (CustomModelPartGroup group : groups)
+            assertTrue(group.wasAnimated);
+    }
+}
@@ -0,0 +1,30 @@
+package net.blancworks.figura.models;
+
+import net.minecraft.util.Identifier;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class TextureRegistryTest {
+
+    private static final byte[] IMAGE = {1, 2, 3, 4};
+
+    @Test
+    public void sameImageGetsTheSameId() {
+        assertEquals(TextureRegistry.getId(IMAGE, FiguraTexture.TextureType.color), TextureRegistry.getId(IMAGE.clone(), FiguraTexture.TextureType.color));
+    }
+
+    @Test
+    public void otherImageOrTypeGetsAnotherId() {
+        Identifier base = TextureRegistry.getId(IMAGE, FiguraTexture.TextureType.color);
+
+        assertNotEquals(base, TextureRegistry.getId(new byte[]{1, 2, 3, 5}, FiguraTexture.TextureType.color));
+        assertNotEquals(base, TextureRegistry.getId(IMAGE, FiguraTexture.TextureType._emission));
+    }
+
+    @Test
+    public void idDoesNotDependOnTheAvatar() {
+        //only the content goes into the id, so every avatar using the image ends up on the same render layers
+        assertTrue(TextureRegistry.getId(IMAGE, FiguraTexture.TextureType.color).getPath().startsWith("avatar_textures/"));
+    }
+}
@@ -0,0 +1,78 @@
+package net.blancworks.figura.models.shaders;
+
+import net.blancworks.figura.models.shaders.FiguraShader.UniformSlot;
+import net.blancworks.figura.models.shaders.ShaderRegistry.ShaderKey;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ShaderRegistryTest {
+
+    private static ShaderKey key(String fragment, List<String> names, List<String> types) {
+        return new ShaderKey("POSITION_TEXTURE", "void main() {}", fragment, 1, names, types);
+    }
+
+    @Test
+    public void sameSourcesMakeEqualKeys() {
+        ShaderKey a = key("void main() {}", List.of("Time"), List.of("float"));
+        ShaderKey b = key("void main() {}", List.of("Time"), List.of("float"));
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a.hash(), b.hash());
+    }
+
+    @Test
+    public void anyDifferenceMakesAnotherKey() {
+        ShaderKey base = key("void main() {}", List.of("Time"), List.of("float"));
+
+        assertNotEquals(base, key("void main() { }", List.of("Time"), List.of("float")));
+        assertNotEquals(base, key("void main() {}", List.of("Tick"), List.of("float")));
+        assertNotEquals(base, key("void main() {}", List.of("Time"), List.of("int")));
+        assertNotEquals(base, new ShaderKey("POSITION_COLOR", "void main() {}", "void main() {}", 1, List.of("Time"), List.of("float")));
+        assertNotEquals(base, new ShaderKey("POSITION_TEXTURE", "void main() {}", "void main() {}", 2, List.of("Time"), List.of("float")));
+    }
+
+    @Test
+    public void keyDoesNotChangeWithTheScriptLists() {
+        List<String> names = new ArrayList<>(List.of("Time"));
+        ShaderKey key = key("void main() {}", names, List.of("float"));
+
+        names.add("Other");
+
+        assertEquals(List.of("Time"), key.uniformNames());
+        assertEquals(key("void main() {}", List.of("Time"), List.of("float")), key);
+    }
+
+    @Test
+    public void avatarsKeepTheirOwnUniformValues() {
+        //a vanilla vec4 followed by a custom float
+        float[] defaults = {1f, 1f, 1f, 1f, 0f};
+        UniformSlot vanilla = new UniformSlot(0, "ColorModulator", 4, 4, 0, false, null);
+        UniformSlot custom = new UniformSlot(1, "Time", 4, 1, 4, true, null);
+
+        ShaderUniformState first = new ShaderUniformState(defaults, 2);
+        ShaderUniformState second = new ShaderUniformState(defaults, 2);
+
+        first.block[custom.offset()] = 5f;
+        first.markStaged(custom.index());
+
+        //the second avatar still has the default, and the defaults weren't touched
+        assertEquals(0f, second.block[custom.offset()]);
+        assertEquals(0f, defaults[custom.offset()]);
+        assertFalse(second.isStaged(custom.index()));
+
+        //custom uniforms are uploaded even when not set, so the second avatar overwrites the first avatar's value
+        assertTrue(FiguraShader.needsUpload(custom, first));
+        assertTrue(FiguraShader.needsUpload(custom, second));
+
+        //vanilla uniforms keep the game's values unless the avatar set them
+        assertFalse(FiguraShader.needsUpload(vanilla, second));
+        second.markStaged(vanilla.index());
+        assertTrue(FiguraShader.needsUpload(vanilla, second));
+        assertFalse(FiguraShader.needsUpload(vanilla, first));
+    }
+}
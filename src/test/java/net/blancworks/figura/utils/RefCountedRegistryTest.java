@@ -0,0 +1,94 @@
+package net.blancworks.figura.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class RefCountedRegistryTest {
+
+    private final List<String> closed = new ArrayList<>();
+    private final RefCountedRegistry<String, String> registry = new RefCountedRegistry<>(closed::add);
+
+    @Test
+    public void equalKeysShareOneValue() throws Exception {
+        String first = registry.acquire("key", () -> "value");
+        String second = registry.acquire("key", () -> "other");
+
+        assertSame(first, second);
+        assertEquals(2, registry.getRefCount("key"));
+        assertEquals(1, registry.getCreated());
+        assertEquals(1, registry.getReused());
+    }
+
+    @Test
+    public void closedAfterLastRelease() throws Exception {
+        registry.acquire("key", () -> "value");
+        registry.acquire("key", () -> "value");
+
+        registry.release("key");
+        assertTrue(closed.isEmpty());
+        assertEquals(1, registry.getRefCount("key"));
+
+        registry.release("key");
+        assertEquals(List.of("value"), closed);
+        assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void releasingUnknownKeyDoesNothing() throws Exception {
+        registry.acquire("key", () -> "value");
+        registry.release("missing");
+
+        assertTrue(closed.isEmpty());
+        assertEquals(1, registry.getRefCount("key"));
+    }
+
+    @Test
+    public void recreatedAfterClose() throws Exception {
+        registry.acquire("key", () -> "first");
+        registry.release("key");
+
+        assertEquals("second", registry.acquire("key", () -> "second"));
+        assertEquals(2, registry.getCreated());
+    }
+
+    @Test
+    public void failedFactoryRegistersNothing() {
+        assertThrows(IllegalStateException.class, () -> registry.acquire("key", () -> {
+            throw new IllegalStateException();
+        }));
+
+        assertEquals(0, registry.size());
+        assertEquals(0, registry.getRefCount("key"));
+    }
+
+    @Test
+    public void forEachVisitsEveryValueOnce() throws Exception {
+        registry.acquire("a", () -> "a");
+        registry.acquire("b", () -> "b");
+        registry.acquire("b", () -> "b");
+
+        List<String> visited = new ArrayList<>();
+        registry.forEach(visited::add);
+
+        assertEquals(2, visited.size());
+        assertTrue(visited.containsAll(List.of("a", "b")));
+        assertTrue(closed.isEmpty());
+    }
+
+    @Test
+    public void clearClosesEverything() throws Exception {
+        registry.acquire("a", () -> "a");
+        registry.acquire("b", () -> "b");
+        registry.acquire("b", () -> "b");
+
+        registry.clear();
+
+        assertEquals(2, closed.size());
+        assertTrue(closed.containsAll(List.of("a", "b")));
+        assertEquals(0, registry.size());
+    }
+}